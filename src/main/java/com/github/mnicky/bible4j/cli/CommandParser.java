@@ -32,10 +32,10 @@ public class CommandParser {
 
     public CommandParser(BibleStorageFactory factory) {
 	this.storage = factory.createBibleStorage();
-	if (!storage.isStorageInitialized()) {
+	if (!storage.isStorageInitialized())
 	    logger.debug("BibleStorage not initialized yet. Initializing.");
-	    storage.initializeStorage();
-	}
+	// also upgrades already initialized storage, if needed
+	storage.initializeStorage();
     }
 
     /**
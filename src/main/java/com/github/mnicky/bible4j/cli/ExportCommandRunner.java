@@ -4,6 +4,7 @@ import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.util.Locale;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,9 +12,11 @@ import org.slf4j.LoggerFactory;
 import com.github.mnicky.bible4j.AppRunner;
 import com.github.mnicky.bible4j.data.BibleVersion;
 import com.github.mnicky.bible4j.parsers.BibleExporter;
+import com.github.mnicky.bible4j.parsers.BinaryBibleExporter;
 import com.github.mnicky.bible4j.parsers.BibleExporterException;
 import com.github.mnicky.bible4j.parsers.OsisBibleExporter;
 import com.github.mnicky.bible4j.storage.BibleStorage;
+import com.github.mnicky.bible4j.storage.BinaryBibleFormat;
 
 /**
  *  This class invokes and controls the application functionality of exporting the Bible.
@@ -23,6 +26,7 @@ class ExportCommandRunner extends CommandRunner {
     private final static Logger logger = LoggerFactory.getLogger(AppRunner.AppLogger.class);
     
     OutputStream output;
+    private String fileName;
     private BibleVersion version;
 
     public ExportCommandRunner(BibleStorage bibleStorage) {
@@ -46,14 +50,20 @@ class ExportCommandRunner extends CommandRunner {
     }
 
     private void exportBible() {
-	BibleExporter exporter = new OsisBibleExporter(bibleStorage);
+	BibleExporter exporter;
+	if (fileName.toLowerCase(new Locale("en")).endsWith(BinaryBibleFormat.FILE_EXTENSION))
+	    exporter = new BinaryBibleExporter(bibleStorage);
+	else
+	    exporter = new OsisBibleExporter(bibleStorage);
+
 	System.out.println("Exporting the Bible...");
 	exporter.exportBible(version, output);
 	System.out.println("Bible exported.");
     }
 
     private OutputStream parseOutputStream(String[] args) throws FileNotFoundException {
-	BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(getFirstValue(args)));
+	fileName = getFirstValue(args);
+	BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(fileName));
 	return out;
     }
 
@@ -64,7 +74,7 @@ class ExportCommandRunner extends CommandRunner {
         System.out.println("\t" + CommandParser.EXPORT_COMMAND + " PATH_TO_FILE " + BIBLE_VERSION_ARGUMENT + " BIBLE_VERSION");
         
         System.out.println();
-        System.out.println("\tPATH_TO_FILE \t path to OSIS file containing the Bible");
+        System.out.println("\tPATH_TO_FILE \t path to OSIS file containing the Bible (or to binary Bible file, if it ends with '" + BinaryBibleFormat.FILE_EXTENSION + "')");
         System.out.println("\tBIBLE_VERSION \t Bible version abbreviation (if no bible version is specified, the first Bible found is used)");
         
         System.out.println();
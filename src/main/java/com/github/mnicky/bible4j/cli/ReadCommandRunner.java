@@ -77,29 +77,27 @@ final class ReadCommandRunner extends CommandRunner {
         
         if (versions.size() <= 1 && positions.size() <= 1) {
             if (isWholeChapter(positions.get(0)))
-        	verseList = bibleStorage.getChapter(positions.get(0), versions.get(0));
+        	verseList = getChapters(versions.get(0));
             else
         	verseList.add(bibleStorage.getVerse(positions.get(0), versions.get(0)));
         }
         else if (versions.size() <= 1 && positions.size() > 1) {
             if (isWholeChapter(positions.get(0)))
-        	for (Position pos : positions)
-        	    verseList.addAll(bibleStorage.getChapter(pos, versions.get(0)));
+        	verseList = getChapters(versions.get(0));
             else
         	verseList = bibleStorage.getVerses(positions, versions.get(0));
         }
         else if (versions.size() > 1 && positions.size() <= 1) {
             if (isWholeChapter(positions.get(0)))
         	for (BibleVersion ver : versions)
-        	    verseList.addAll(bibleStorage.getChapter(positions.get(0), ver));
+        	    verseList.addAll(getChapters(ver));
             else
         	verseList = bibleStorage.compareVerses(positions.get(0), versions);
         }
         else if (versions.size() > 1 && positions.size() > 1) {
             if (isWholeChapter(positions.get(0)))
         	for (BibleVersion ver : versions)
-        	    for (Position pos : positions)
-        		verseList.addAll(bibleStorage.getChapter(pos, ver));
+        	    verseList.addAll(getChapters(ver));
             else
         	verseList = bibleStorage.compareVerses(positions, versions);
         }
@@ -110,6 +108,27 @@ final class ReadCommandRunner extends CommandRunner {
         return verseList;
     }
 
+    /**
+     * Returns the verses of all the chapters in positions, reading each run of consecutive chapters as one passage.
+     */
+    private List<Verse> getChapters(BibleVersion version) {
+	List<Verse> verseList = new ArrayList<Verse>();
+
+	int first = 0;
+	while (first < positions.size()) {
+	    int last = first;
+	    while (last + 1 < positions.size()
+		    && positions.get(last + 1).getBook() == positions.get(last).getBook()
+		    && positions.get(last + 1).getChapterNum() == positions.get(last).getChapterNum() + 1)
+		last++;
+
+	    verseList.addAll(bibleStorage.getPassage(positions.get(first), positions.get(last), version));
+	    first = last + 1;
+	}
+
+	return verseList;
+    }
+
     @Override
     public void printHelp() {
 	System.out.println();
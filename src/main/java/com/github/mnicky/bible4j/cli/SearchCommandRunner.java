@@ -4,13 +4,18 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.github.mnicky.bible4j.Utils;
 import com.github.mnicky.bible4j.data.BibleBook;
 import com.github.mnicky.bible4j.data.BibleVersion;
 import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.search.QueryParser;
 import com.github.mnicky.bible4j.storage.BibleStorage;
 import com.github.mnicky.bible4j.storage.H2DbBibleStorage;
+import com.github.mnicky.bible4j.storage.SearchCounts;
+import com.github.mnicky.bible4j.storage.SearchQuery;
+import com.github.mnicky.bible4j.storage.VerseMatch;
 
 /**
  *  This class invokes and controls the application functionality of searching the Bible text.
@@ -18,10 +23,20 @@ import com.github.mnicky.bible4j.storage.H2DbBibleStorage;
 class SearchCommandRunner extends CommandRunner {
     
     private static final String BIBLE_BOOK_PARAMETER = "-b";
+    private static final String TOP_ARGUMENT = "-top";
+    private static final String COUNT_ARGUMENT = "-count";
+    private static final String FUZZY_ARGUMENT = "-fuzzy";
+    private static final String SUBSTRING_ARGUMENT = "-substring";
+    private static final String REGEX_ARGUMENT = "-regex";
+    private static final String HIGHLIGHT_MARK = "*";
     private List<BibleVersion> versions;
     private List<BibleBook> books;
     private String searchPhrases;
-    private List<Verse> verses;
+    private int top;
+    private boolean countOnly;
+    private boolean fuzzy;
+    private SearchQuery.Mode mode;
+    private List<VerseMatch> verses;
 
     public SearchCommandRunner(BibleStorage bibleStorage) {
 	super(bibleStorage);
@@ -31,30 +46,91 @@ class SearchCommandRunner extends CommandRunner {
     void parseCommandLine(String[] args) {
 	versions = parseVersionsAndReturnNoneIfEmpty(args);
 	books = parseBooks(args);
+	fuzzy = isArgumentPresent(FUZZY_ARGUMENT, args);
+	mode = parseMode(args);
 	searchPhrases = parseSearchPhrases(args);
+	top = parseTop(args);
+	countOnly = isArgumentPresent(COUNT_ARGUMENT, args);
     }
     
     @Override
     void doRequestedAction() {
+	if (countOnly) {
+	    displayCounts(bibleStorage.countVerses(createQuery()));
+	    return;
+	}
 	verses = getVerses();
 	displayFoundVerses();
     }
 
+    private void displayCounts(SearchCounts counts) {
+	if (counts.getTotal() < 1) {
+	    System.out.println("Specified phrase not found.");
+	    displaySuggestion();
+	    return;
+	}
+
+	System.out.println("By Bible versions:");
+	for (Map.Entry<BibleVersion, Integer> entry : counts.getVersionCounts().entrySet())
+	    System.out.println("\t" + entry.getKey().getAbbr() + "\t" + entry.getValue());
+
+	System.out.println("By testaments:");
+	for (Map.Entry<BibleBook.Testament, Integer> entry : counts.getTestamentCounts().entrySet())
+	    System.out.println("\t" + entry.getKey().toString().toLowerCase() + "\t" + entry.getValue());
+
+	System.out.println("By Bible books:");
+	for (Map.Entry<BibleBook, Integer> entry : counts.getBookCounts().entrySet())
+	    System.out.println("\t" + formatName(entry.getKey().getName()) + entry.getValue());
+
+	System.out.println("\n" + counts.getTotal() + " occurences total.");
+    }
+
+    private void displaySuggestion() {
+	String suggestion = bibleStorage.suggestSearchText(createQuery());
+	if (suggestion != null)
+	    System.out.println("Did you mean: " + suggestion + "?");
+    }
+
+    private String formatName(String name) {
+	StringBuilder formatted = new StringBuilder(name);
+	while (formatted.length() < 16)
+	    formatted.append(" ");
+	return formatted.toString();
+    }
+
     private void displayFoundVerses() {
 	if (verses == null)
 	    return;
 	
 	if (verses.size() < 1) {
 	    System.out.println("Specified phrase not found.");
+	    displaySuggestion();
 	    return;
 	}
 	
-	for (Verse verse : verses) {
-	    System.out.println(verse.getBibleVersion().getAbbr() + "  " + formatPosition(verse) + "\t" + verse.getText());
+	for (VerseMatch match : verses) {
+	    Verse verse = match.getVerse();
+	    System.out.println(verse.getBibleVersion().getAbbr() + "  " + formatPosition(verse) + "\t" + highlight(match));
 	}
 	System.out.println("\n" + verses.size() + " occurences total.");
     }
 
+    /**
+     * Returns the text of the verse with the matches enclosed in the highlight marks.
+     * The offsets of the matches come with the found verse, so the text isn't searched again.
+     */
+    private String highlight(VerseMatch match) {
+	String text = match.getVerse().getText();
+	StringBuilder highlighted = new StringBuilder(text.length() + 2 * match.getMatchCount());
+	int last = 0;
+	for (int i = 0; i < match.getMatchCount(); i++) {
+	    highlighted.append(text, last, match.getMatchStart(i)).append(HIGHLIGHT_MARK)
+		       .append(text, match.getMatchStart(i), match.getMatchEnd(i)).append(HIGHLIGHT_MARK);
+	    last = match.getMatchEnd(i);
+	}
+	return highlighted.append(text, last, text.length()).toString();
+    }
+
     private String formatPosition(Verse verse) {
 	StringBuilder pos = new StringBuilder(verse.getPosition().toString()); 
 	while(pos.length() < 12)
@@ -62,26 +138,53 @@ class SearchCommandRunner extends CommandRunner {
 	return pos.toString();
     }
 
-    private List<Verse> getVerses() {
-	List<Verse> verseList = new ArrayList<Verse>();
-	
-	if (versions.isEmpty() && books.isEmpty())
-	    verseList = bibleStorage.searchVersesForText(searchPhrases);
-	
-	else if (versions.isEmpty() && !books.isEmpty())
-	    for (BibleBook book : books)
-		verseList.addAll(bibleStorage.searchVersesForText(searchPhrases, book));
-	
-	else if (!versions.isEmpty() && books.isEmpty())
-	    for (BibleVersion version : versions)
-		verseList.addAll(bibleStorage.searchVersesForText(searchPhrases, version));
-		
-	else if (!versions.isEmpty() && !books.isEmpty())
-	    for (BibleVersion version : versions)
-		for (BibleBook book : books)
-		    verseList.addAll(bibleStorage.searchVersesForText(searchPhrases, book, version));
+    /**
+     * Returns the found verses - all of them ordered by the Bible versions and positions,
+     * or the most relevant ones, the most relevant first, when their number is specified.
+     * All the versions and books are searched by one query.
+     */
+    private List<VerseMatch> getVerses() {
+	SearchQuery query = createQuery();
+	if (top > 0) {
+	    query.setRanked(true);
+	    query.setLimit(top);
+	}
+	return bibleStorage.searchMatches(query);
+    }
+
+    private SearchQuery createQuery() {
+	SearchQuery query = new SearchQuery(searchPhrases);
+	query.setMode(mode);
+	for (BibleVersion version : versions)
+	    query.addBibleVersion(version);
+	for (BibleBook book : books)
+	    query.addBibleBook(book);
+	return query;
+    }
+
+    private int parseTop(String[] args) {
+	if (!isArgumentPresent(TOP_ARGUMENT, args))
+	    return 0;
 	
-	return verseList;
+	String value = getFirstValueOfArgument(TOP_ARGUMENT, args);
+	try {
+	    int count = Integer.parseInt(value);
+	    if (count > 0)
+		return count;
+	} catch (NumberFormatException e) {
+	    // reported below
+	}
+	throw new IllegalArgumentException("Number of the most relevant verses must be a positive number, not '" + value + "'.");
+    }
+
+    private SearchQuery.Mode parseMode(String[] args) {
+	boolean substring = isArgumentPresent(SUBSTRING_ARGUMENT, args);
+	boolean regex = isArgumentPresent(REGEX_ARGUMENT, args);
+	if (substring && regex)
+	    throw new IllegalArgumentException("Only one of the arguments '" + SUBSTRING_ARGUMENT + "' and '" + REGEX_ARGUMENT + "' can be used.");
+	if (substring)
+	    return SearchQuery.Mode.SUBSTRING;
+	return regex ? SearchQuery.Mode.REGEX : SearchQuery.Mode.WORDS;
     }
 
     private String parseSearchPhrases(String[] args) {
@@ -89,6 +192,16 @@ class SearchCommandRunner extends CommandRunner {
 	List<String> phrases = getAllNonArgumentValues(args);
 	
 	for (String phrase : phrases) {
+	    // substrings and regular expressions are searched as they are
+	    if (mode == SearchQuery.Mode.WORDS) {
+		// the shell strips the quotes, so the value consisting of more words was quoted
+		// - as a phrase, unless it's a query with its own syntax
+		if (phrase.trim().contains(" ") && !hasQuerySyntax(phrase))
+		    phrase = "\"" + phrase + "\"";
+		else if (fuzzy && !hasQuerySyntax(phrase) && !phrase.endsWith("*") && !phrase.contains("~"))
+		    phrase = phrase + "~";
+	    }
+
 	    if (searchPhrases.equals(""))
 	    	searchPhrases = phrase;
 	    else 
@@ -98,6 +211,19 @@ class SearchCommandRunner extends CommandRunner {
 	return searchPhrases;
     }
 
+    /**
+     * Returns true if the value contains quotes, parentheses, operators or field filters of the query syntax.
+     */
+    private static boolean hasQuerySyntax(String phrase) {
+	if (phrase.contains("\"") || phrase.contains("(") || phrase.contains(")"))
+	    return true;
+	for (String word : phrase.trim().split("\\s+")) {
+	    if (QueryParser.isOperator(word) || QueryParser.isField(word))
+		return true;
+	}
+	return false;
+    }
+
     private List<BibleBook> parseBooks(String[] args) {
 	List<BibleBook> bookList = new ArrayList<BibleBook>();
         if (isArgumentPresent(BIBLE_BOOK_PARAMETER, args)) {
@@ -111,17 +237,30 @@ class SearchCommandRunner extends CommandRunner {
     public void printHelp() {
 	System.out.println();
 	System.out.println("Usage:");
-        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " PHRASE_TO_SEARCH... [" + BIBLE_BOOK_ARGUMENT + " BIBLE_BOOK...] [" + BIBLE_VERSION_ARGUMENT + " BIBLE_VERSION...]");
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " PHRASE_TO_SEARCH... [" + BIBLE_BOOK_ARGUMENT + " BIBLE_BOOK...] [" + BIBLE_VERSION_ARGUMENT + " BIBLE_VERSION...] [" + TOP_ARGUMENT + " COUNT | " + COUNT_ARGUMENT + "] [" + FUZZY_ARGUMENT + " | " + SUBSTRING_ARGUMENT + " | " + REGEX_ARGUMENT + "]");
         
         System.out.println();
         System.out.println("\tPHRASE_TO_SEARCH \t Phrase to search for (case is ignored)");
         System.out.println("\tBIBLE_BOOK \t\t Bible book (name or abbreviation)");
         System.out.println("\tBIBLE_VERSION \t\t Bible version abbreviation");
+        System.out.println("\tCOUNT \t\t\t Number of the most relevant verses to display");
 
         System.out.println();
         System.out.println("\tYou can search for one word or for occurences of all specified words.");
+        System.out.println("\tWords in quotes are searched as a phrase - next to each other, in the specified order.");
+        System.out.println("\tWords joined by NEAR/n are searched at most n words apart, in any order (NEAR alone means NEAR/" + QueryParser.DEFAULT_NEAR_DISTANCE + ").");
+        System.out.println("\tWords joined by OR are searched as alternatives, words after NOT must not be in the verse; parentheses group the words (e.g. \"(peter OR simon) NOT judas\").");
+        System.out.println("\tWord book:BIBLE_BOOK or version:BIBLE_VERSION matches only the verses of the Bible book or version (e.g. \"love NOT book:john\").");
+        System.out.println("\tWord ending with * matches all the words starting with it (e.g. bless* matches bless, blessed and blessing).");
+        System.out.println("\tWord ending with ~ matches also the words differing in a character or two (e.g. beleive~ matches believe), ~1 or ~2 sets the number of different characters.");
+        System.out.println("\tTo search all the single words this way, use argument '" + FUZZY_ARGUMENT + "'. When nothing is found, similar words found in the Bible are suggested.");
+        System.out.println("\tTo search for any part of the verse text (e.g. a part of a name or punctuation), use argument '" + SUBSTRING_ARGUMENT + "'.");
+        System.out.println("\tTo search for a regular expression in the verse text, use argument '" + REGEX_ARGUMENT + "'.");
         System.out.println("\tTo search only in specific Bible books, use argument '" + BIBLE_BOOK_ARGUMENT + "' and specify one or more Bible books.");
         System.out.println("\tTo search only in specific Bible versions, use argument '" + BIBLE_VERSION_ARGUMENT + "' and specify one or more Bible versions.");
+        System.out.println("\tTo display only the most relevant verses, the most relevant first, use argument '" + TOP_ARGUMENT + "' and specify their number.");
+        System.out.println("\tTo display only the numbers of the found verses by Bible versions, testaments and books, use argument '" + COUNT_ARGUMENT + "'.");
+        System.out.println("\tThe matches in the found verses are marked with " + HIGHLIGHT_MARK + ".");
         System.out.println("\tIt can be mixed freely altogether.");
         
         System.out.println();
@@ -137,6 +276,38 @@ class SearchCommandRunner extends CommandRunner {
         System.out.println();
         System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " jesus john");
         
+        System.out.println();
+        System.out.println("  Search for a phrase:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " \"son of god\"");
+        
+        System.out.println();
+        System.out.println("  Search for words near each other:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " jesus NEAR/3 peter");
+        
+        System.out.println();
+        System.out.println("  Search for alternatives, excluded words and books:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " \"(peter OR simon)\" jesus NOT judas");
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " \"lamb (book:john OR book:rev)\"");
+        System.out.println();
+        System.out.println("  Search for words starting with a prefix:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " bless* israel");
+        
+        System.out.println();
+        System.out.println("  Search for misspelled or archaic words:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " beleive~ " + BIBLE_BOOK_ARGUMENT + " john");
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " saviour shepherd " + FUZZY_ARGUMENT);
+        
+        System.out.println();
+        System.out.println("  Search for a part of the text or a regular expression:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " melech " + SUBSTRING_ARGUMENT);
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " \"[0-9]+ years\" " + REGEX_ARGUMENT);
+        
         System.out.println();
         System.out.println("  Search only in specific Bible books:");
         System.out.println();
@@ -149,6 +320,16 @@ class SearchCommandRunner extends CommandRunner {
         System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " king " + BIBLE_VERSION_ARGUMENT + " kjv");
         System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " son of god " + BIBLE_VERSION_ARGUMENT + " rsv kjv web");
 	
+        System.out.println();
+        System.out.println("  Display only the most relevant verses:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " faith hope love " + TOP_ARGUMENT + " 10");
+	
+        System.out.println();
+        System.out.println("  Display only the numbers of the found verses:");
+        System.out.println();
+        System.out.println("\t" + CommandParser.BIBLE_SEARCH_COMMAND + " grace " + COUNT_ARGUMENT);
+	
         System.out.println();
         System.out.println("  Mixed together:");
         System.out.println();
@@ -5,6 +5,26 @@ package com.github.mnicky.bible4j.data;
  * Class representing position (coordinates) in the Bible. If verse number is not set, it represents the whole chapter.
  */
 public final class Position implements Comparable<Position> {
+
+    /**
+     * The highest chapter number that can be encoded by {@link #getCode()}.
+     */
+    public static final int MAX_CHAPTER_NUM = 1023;
+
+    /**
+     * The highest verse number that can be encoded by {@link #getCode()}.
+     */
+    public static final int MAX_VERSE_NUM = 1023;
+
+    /**
+     * Number of bits of the code holding the verse number.
+     */
+    private static final int VERSE_BITS = 10;
+
+    /**
+     * Number of bits of the code holding the chapter number.
+     */
+    private static final int CHAPTER_BITS = 10;
     
     /**
      * Bible Book.
@@ -93,6 +113,35 @@ public final class Position implements Comparable<Position> {
 	return verseNum;
     }
 
+    /**
+     * Returns the code of this Position - an int packing the ordinal of the Bible book, the chapter number
+     * and the verse number into bit fields. The codes are ordered the same way as the Positions.
+     *
+     * @return code of this Position
+     * @throws IllegalArgumentException when the chapter or verse number can't be encoded
+     */
+    public int getCode() {
+	if (chapterNum < 0 || chapterNum > MAX_CHAPTER_NUM || verseNum < 0 || verseNum > MAX_VERSE_NUM)
+	    throw new IllegalArgumentException("Position " + this + " can't be encoded.");
+
+	return (book.ordinal() << (CHAPTER_BITS + VERSE_BITS)) | (chapterNum << VERSE_BITS) | verseNum;
+    }
+
+    /**
+     * Returns the Position with the specified code.
+     *
+     * @param code code of the Position, as returned by {@link #getCode()}
+     * @return Position with the specified code
+     * @throws IllegalArgumentException when the code is not valid
+     */
+    public static Position fromCode(int code) {
+	int bookOrdinal = code >>> (CHAPTER_BITS + VERSE_BITS);
+	if (bookOrdinal >= BibleBook.values().length)
+	    throw new IllegalArgumentException("Code " + code + " is not a valid Position code.");
+
+	return new Position(BibleBook.values()[bookOrdinal], (code >>> VERSE_BITS) & MAX_CHAPTER_NUM, code & MAX_VERSE_NUM);
+    }
+
     @Override
     public int compareTo(Position p) {
 	
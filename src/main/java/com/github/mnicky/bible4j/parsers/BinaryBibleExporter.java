@@ -0,0 +1,123 @@
+package com.github.mnicky.bible4j.parsers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mnicky.bible4j.AppRunner;
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.storage.BibleStorage;
+import com.github.mnicky.bible4j.storage.BinaryBibleFormat;
+import com.github.mnicky.bible4j.storage.ResultHandler;
+
+/**
+ * Class providing the export of Bible to the binary format defined by {@link BinaryBibleFormat},
+ * which can be read by {@link com.github.mnicky.bible4j.storage.MappedBibleStorage}.
+ */
+public final class BinaryBibleExporter implements BibleExporter {
+
+    private final static Logger logger = LoggerFactory.getLogger(AppRunner.AppLogger.class);
+
+    private BibleStorage storage;
+
+    public BinaryBibleExporter(BibleStorage storage) {
+	this.storage = storage;
+    }
+
+    @Override
+    public void setStorage(BibleStorage storage) {
+	this.storage = storage;
+    }
+
+    @Override
+    public void exportBible(BibleVersion bible, OutputStream output) {
+	BibleVersion version = storage.getBibleVersion(bible.getAbbr());
+	if (version == null)
+	    version = bible;
+
+	BibleBook[] books = BibleBook.values();
+	VerseCollector verses = new VerseCollector();
+	storage.getPassage(new Position(books[0], 0, 0), new Position(books[books.length - 1], 0, 0), version, verses);
+
+	try {
+	    if (verses.exception != null)
+		throw verses.exception;
+
+	    DataOutputStream out = new DataOutputStream(output);
+
+	    out.writeInt(BinaryBibleFormat.MAGIC);
+	    out.writeInt(BinaryBibleFormat.FORMAT_VERSION);
+	    writeString(out, version.getName());
+	    writeString(out, version.getAbbr());
+	    writeString(out, version.getLanguage());
+	    out.writeInt(verses.size);
+
+	    for (int i = 0; i < verses.size; i++)
+		out.writeInt(verses.codes[i]);
+	    for (int i = 0; i <= verses.size; i++)
+		out.writeInt(verses.offsets[i]);
+	    verses.arena.writeTo(out);
+
+	    out.flush();
+
+	} catch (IOException e) {
+	    logger.error("Exception caught when exporting Bible.", e);
+	    throw new BibleExporterException("Exporting error", e);
+	}
+    }
+
+    private void writeString(DataOutputStream out, String string) throws IOException {
+	byte[] bytes = (string != null ? string : "").getBytes(BinaryBibleFormat.ENCODING);
+	out.writeShort(bytes.length);
+	out.write(bytes);
+    }
+
+    /**
+     * Collects the codes of the streamed verses and their texts encoded in the text arena.
+     */
+    private static final class VerseCollector implements ResultHandler<Verse> {
+
+	private int[] codes = new int[1024];
+
+	private int[] offsets = new int[1025];
+
+	private int size = 0;
+
+	private final ByteArrayOutputStream arena = new ByteArrayOutputStream();
+
+	/**
+	 * Exception thrown when encoding the last verse, it stops the streaming.
+	 */
+	private IOException exception = null;
+
+	@Override
+	public boolean handle(Verse verse) {
+	    try {
+		if (size == codes.length) {
+		    codes = Arrays.copyOf(codes, size * 2);
+		    offsets = Arrays.copyOf(offsets, size * 2 + 1);
+		}
+		codes[size] = verse.getPosition().getCode();
+		offsets[size] = arena.size();
+		arena.write(verse.getText().getBytes(BinaryBibleFormat.ENCODING));
+		size++;
+		offsets[size] = arena.size();
+		return true;
+
+	    } catch (IOException e) {
+		exception = e;
+		return false;
+	    }
+	}
+
+    }
+
+}
@@ -5,7 +5,6 @@ import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.List;
 import java.util.Locale;
 
 import javax.xml.stream.XMLOutputFactory;
@@ -22,6 +21,7 @@ import com.github.mnicky.bible4j.data.Position;
 import com.github.mnicky.bible4j.data.Verse;
 import com.github.mnicky.bible4j.storage.BibleStorage;
 import com.github.mnicky.bible4j.storage.H2DbBibleStorage;
+import com.github.mnicky.bible4j.storage.ResultHandler;
 
 /**
  * Class providing the export of Bible to the OSIS format {@link "http://bibletechnologies.net"}
@@ -53,33 +53,12 @@ public final class OsisBibleExporter implements BibleExporter {
 	    writeOsisTextStartElement(bible, writer);
 	    writeHeaderElement(bible, writer);
 
-	    List<Position> chapters = storage.getChapterList(bible);
-	    BibleBook lastBook = null;
+	    // the whole Bible version is read by one ordered query
+	    BibleBook[] books = BibleBook.values();
+	    VerseWriter verseWriter = new VerseWriter(writer);
+	    storage.getPassage(new Position(books[0], 0, 0), new Position(books[books.length - 1], 0, 0), bible, verseWriter);
+	    verseWriter.finish();
 
-	    for (Position chapter : chapters) {
-		List<Verse> verses = storage.getChapter(chapter, bible);
-
-		if (lastBook == null) {
-		    lastBook = chapter.getBook();
-		    writeBookStartElement(writer, lastBook);
-		}
-		else if (!lastBook.equals(chapter.getBook())) {
-		    lastBook = chapter.getBook();
-		    // div#book EndElement
-		    writeEndElement(writer);
-		    writeBookStartElement(writer, lastBook);
-		}
-		writeChapterStartElement(writer, chapter);
-		
-		for (Verse verse : verses)
-		    writeVerseElement(writer, verse);
-
-		// div#chapter EndElement		
-		writeEndElement(writer);
-	    }
-
-	    // div#book EndElement	    
-	    writeEndElement(writer);
 	    // osisText EndElement	    
 	    writeEndElement(writer);
 	    // osis EndElement	    
@@ -104,6 +83,76 @@ public final class OsisBibleExporter implements BibleExporter {
 
     }
 
+    /**
+     * Writes the streamed verses, starting new book and chapter elements whenever the book or chapter changes.
+     */
+    private final class VerseWriter implements ResultHandler<Verse> {
+
+	private final XMLStreamWriter writer;
+
+	private BibleBook lastBook = null;
+
+	private int lastChapterNum = 0;
+
+	/**
+	 * Exception thrown when writing the last verse, it stops the streaming.
+	 */
+	private XMLStreamException exception = null;
+
+	private VerseWriter(XMLStreamWriter writer) {
+	    this.writer = writer;
+	}
+
+	@Override
+	public boolean handle(Verse verse) {
+	    try {
+		Position position = verse.getPosition();
+
+		if (lastBook != position.getBook()) {
+		    if (lastBook != null) {
+			// div#chapter and div#book EndElements
+			writeEndElement(writer);
+			writeEndElement(writer);
+		    }
+		    lastBook = position.getBook();
+		    lastChapterNum = 0;
+		    writeBookStartElement(writer, lastBook);
+		}
+		if (lastChapterNum != position.getChapterNum()) {
+		    if (lastChapterNum != 0)
+			// div#chapter EndElement
+			writeEndElement(writer);
+		    lastChapterNum = position.getChapterNum();
+		    writeChapterStartElement(writer, position);
+		}
+
+		writeVerseElement(writer, verse);
+		return true;
+
+	    } catch (XMLStreamException e) {
+		exception = e;
+		return false;
+	    }
+	}
+
+	/**
+	 * Closes the last chapter and book elements.
+	 *
+	 * @throws XMLStreamException when some verse or the closing elements could not be written
+	 */
+	private void finish() throws XMLStreamException {
+	    if (exception != null)
+		throw exception;
+
+	    if (lastBook != null) {
+		// div#chapter and div#book EndElements
+		writeEndElement(writer);
+		writeEndElement(writer);
+	    }
+	}
+
+    }
+
     private void writeEndElement(XMLStreamWriter writer) throws XMLStreamException {
 	writer.writeEndElement();
 	writer.writeCharacters("\n");
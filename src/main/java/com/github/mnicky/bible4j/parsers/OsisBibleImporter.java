@@ -5,6 +5,8 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import javax.xml.stream.XMLInputFactory;
@@ -31,9 +33,18 @@ import com.github.mnicky.bible4j.storage.H2DbBibleStorage;
 public final class OsisBibleImporter implements BibleImporter {
     
     private final static Logger logger = LoggerFactory.getLogger(AppRunner.AppLogger.class);
+
+    /**
+     * Default number of verses inserted to the storage in one transaction.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
     
     private BibleStorage storage;
 
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private final List<Verse> pendingVerses = new ArrayList<Verse>();
+
     private String currentVerseText = "";
 
     private BibleVersion currentBibleVersion = new BibleVersion("unknown", "unknown", "unknown");
@@ -50,6 +61,17 @@ public final class OsisBibleImporter implements BibleImporter {
 	this.storage = storage;
     }
 
+    /**
+     * Sets the maximal number of verses inserted to the storage in one transaction. Verses are
+     * always inserted at least once per Bible book. If the batch size is less than 1, verses
+     * are inserted only once per Bible book.
+     *
+     * @param batchSize maximal number of verses inserted in one transaction
+     */
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize;
+    }
+
     @Override
     public void importBible(InputStream input) {
 	XMLStreamReader reader = null;
@@ -74,9 +96,7 @@ public final class OsisBibleImporter implements BibleImporter {
 			}
 			
 			parseVerse(reader);
-			storage.insertBibleBook(currentPosition.getBook());
-			storage.insertPosition(currentPosition);
-			storage.insertVerse(new Verse(currentVerseText, currentPosition, currentBibleVersion));
+			addVerse(new Verse(currentVerseText, currentPosition, currentBibleVersion));
 		    }
 
 		}
@@ -84,11 +104,15 @@ public final class OsisBibleImporter implements BibleImporter {
 		reader.next();
 	    }
 	    
+	    insertPendingVerses();
+	    if (bibleVersionInserted)
+		storage.indexBibleVersion(currentBibleVersion);
 	    resetValues();
 	    
 	} catch (XMLStreamException e) {
 	    throw new BibleImporterException("Importing error", e);
 	} finally {
+	    pendingVerses.clear();
 	    if (reader != null)
 		try {
 		    reader.close();
@@ -99,11 +123,31 @@ public final class OsisBibleImporter implements BibleImporter {
 
     }
 
+    private void addVerse(Verse verse) {
+	if (!pendingVerses.isEmpty()
+		&& pendingVerses.get(pendingVerses.size() - 1).getPosition().getBook() != verse.getPosition().getBook())
+	    insertPendingVerses();
+
+	pendingVerses.add(verse);
+
+	if (batchSize > 0 && pendingVerses.size() >= batchSize)
+	    insertPendingVerses();
+    }
+
+    private void insertPendingVerses() {
+	if (pendingVerses.isEmpty())
+	    return;
+	logger.debug("Inserting batch of {} verses", pendingVerses.size());
+	storage.insertVerses(pendingVerses);
+	pendingVerses.clear();
+    }
+
     private void resetValues() {
 	    currentVerseText = "";
 	    currentBibleVersion = new BibleVersion("unknown", "unknown", "unknown");
 	    currentPosition = null;	    
 	    bibleVersionInserted = false;	
+	    pendingVerses.clear();
     }
 
     private void parseWork(BibleStorage storage, XMLStreamReader reader) throws XMLStreamException {
@@ -0,0 +1,46 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.List;
+
+/**
+ * Interface of classes splitting the texts of the verses and the search queries into the terms of the search index.
+ */
+public interface Analyzer {
+
+    /**
+     * Returns the name identifying this analyzer and its settings. The index built with one analyzer
+     * can be searched only with the analyzer of the same name.
+     *
+     * @return name of this analyzer
+     */
+    String getName();
+
+    /**
+     * Returns the terms of the specified text, in the order they occur in the text.
+     *
+     * @param text text to analyze
+     * @return terms of the text
+     */
+    List<String> getTerms(String text);
+
+    /**
+     * Returns the terms of the specified text without the changes making the different forms of a word
+     * the same term (like stemming), used for the words matched by the terms of the index character
+     * by character (like prefixes). The terms are otherwise normalized the same way as by {@link #getTerms(String)}.
+     *
+     * @param text text to analyze
+     * @return terms of the text
+     */
+    List<String> getNormalizedTerms(String text);
+
+    /**
+     * Returns the offsets of the terms in the specified text, used to highlight the matched terms. For each term
+     * returned by {@link #getTerms(String)}, in the same order, there's the offset of its first character
+     * followed by the offset after its last character.
+     *
+     * @param text text to analyze
+     * @return pairs of the start (inclusive) and end (exclusive) offsets of the terms
+     */
+    int[] getTermBounds(String text);
+
+}
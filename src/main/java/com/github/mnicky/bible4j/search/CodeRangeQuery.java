@@ -0,0 +1,46 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Query matching the documents with the codes of their positions from the first code to the last one (both inclusive),
+ * e.g. the verses of one Bible book. The documents are found by the codes, no postings lists are read.
+ */
+final class CodeRangeQuery extends Query {
+
+    private final int firstCode;
+
+    private final int lastCode;
+
+    CodeRangeQuery(int firstCode, int lastCode) {
+	this.firstCode = firstCode;
+	this.lastCode = lastCode;
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	return Collections.emptyList();
+    }
+
+    @Override
+    int[] search(InvertedIndex index, int[] ranges, int[] candidates) {
+	return index.getDocumentsWithCodes(firstCode, lastCode, ranges, candidates);
+    }
+
+    @Override
+    int getCost(InvertedIndex index) {
+	return index.getDocumentCountWithCodes(firstCode, lastCode);
+    }
+
+    @Override
+    int[][] getMatchSpans(InvertedIndex index, int[] documents) {
+	return new int[documents.length][0];
+    }
+
+    @Override
+    public String toString() {
+	return "codes:" + firstCode + "-" + lastCode;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary of the terms answering which terms start with a prefix, the most frequent first, for the type-ahead
+ * of the search queries. For each prefix of more than {@value #MAX_COMPLETIONS} terms, its top terms are computed
+ * in advance; the terms of the other prefixes are few, so they're found in the sorted terms and ordered
+ * at the lookup. Either way, the lookup time doesn't grow with the size of the dictionary.
+ * <p>
+ * The terms with the same frequency are ordered alphabetically. Immutable.
+ */
+final class Completions {
+
+    /**
+     * The highest number of the terms returned for one prefix.
+     */
+    static final int MAX_COMPLETIONS = 10;
+
+    /**
+     * All the terms, in alphabetical order.
+     */
+    private final String[] terms;
+
+    /**
+     * Frequencies of the terms.
+     */
+    private final int[] frequencies;
+
+    /**
+     * Top terms of the prefixes of more than {@value #MAX_COMPLETIONS} terms, by the prefixes.
+     */
+    private final Map<String, String[]> top = new HashMap<String, String[]>();
+
+    /**
+     * Constructs new Completions of the terms.
+     *
+     * @param terms terms in alphabetical order
+     * @param frequencies frequencies of the terms, e.g. the numbers of the documents containing them
+     */
+    Completions(String[] terms, int[] frequencies) {
+	this.terms = terms;
+	this.frequencies = frequencies;
+	if (terms.length > MAX_COMPLETIONS)
+	    addTop(0, terms.length, 0);
+    }
+
+    /**
+     * Computes the top terms of the prefix of the specified length shared by the terms from <code>from</code>
+     * (inclusive) to <code>to</code> (exclusive), and of all the longer prefixes of more than {@value #MAX_COMPLETIONS} terms.
+     */
+    private void addTop(int from, int to, int length) {
+	int[] selected = select(from, to, MAX_COMPLETIONS);
+	String[] completions = new String[selected.length];
+	for (int i = 0; i < selected.length; i++)
+	    completions[i] = terms[selected[i]];
+	top.put(terms[from].substring(0, length), completions);
+
+	// only the first term can end with the prefix, the others are grouped by their next character
+	int start = terms[from].length() == length ? from + 1 : from;
+	while (start < to) {
+	    char next = terms[start].charAt(length);
+	    int end = start + 1;
+	    while (end < to && terms[end].charAt(length) == next)
+		end++;
+	    if (end - start > MAX_COMPLETIONS)
+		addTop(start, end, length + 1);
+	    start = end;
+	}
+    }
+
+    /**
+     * Returns the indexes of at most the specified number of the most frequent terms from <code>from</code>
+     * (inclusive) to <code>to</code> (exclusive), the most frequent first.
+     */
+    private int[] select(int from, int to, int limit) {
+	int[] selected = new int[Math.min(limit, to - from)];
+	int count = 0;
+	for (int i = from; i < to; i++) {
+	    // the terms are visited alphabetically, so the earlier term stays first when the frequencies are the same
+	    if (count == selected.length && frequencies[i] <= frequencies[selected[count - 1]])
+		continue;
+	    int j = count < selected.length ? count++ : count - 1;
+	    while (j > 0 && frequencies[i] > frequencies[selected[j - 1]]) {
+		selected[j] = selected[j - 1];
+		j--;
+	    }
+	    selected[j] = i;
+	}
+	return selected;
+    }
+
+    /**
+     * Returns at most the specified number of the terms starting with the prefix, the most frequent first.
+     *
+     * @param prefix prefix of the terms
+     * @param limit the highest number of the returned terms, at most {@value #MAX_COMPLETIONS} are returned
+     * @return terms starting with the prefix
+     */
+    String[] get(String prefix, int limit) {
+	int count = Math.min(limit, MAX_COMPLETIONS);
+	if (count <= 0)
+	    return new String[0];
+
+	String[] completions = top.get(prefix);
+	if (completions != null)
+	    return Arrays.copyOf(completions, Math.min(count, completions.length));
+
+	// not more terms than MAX_COMPLETIONS start with the prefix
+	int from = lowerBound(prefix);
+	int to = lowerBound(prefix + Character.MAX_VALUE);
+	int[] selected = select(from, to, count);
+	completions = new String[selected.length];
+	for (int i = 0; i < selected.length; i++)
+	    completions[i] = terms[selected[i]];
+	return completions;
+    }
+
+    /**
+     * Returns the index of the first term not lower than the specified string.
+     */
+    private int lowerBound(String string) {
+	int low = 0;
+	int high = terms.length;
+	while (low < high) {
+	    int middle = (low + high) >>> 1;
+	    if (terms[middle].compareTo(string) < 0)
+		low = middle + 1;
+	    else
+		high = middle;
+	}
+	return low;
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Query matching the documents matching all of its required queries and none of its excluded queries.
+ * The required queries are evaluated from the most selective one, each of them restricted to the documents
+ * matching the previous ones; the excluded queries are then subtracted, again from the most selective one.
+ * When there are only the excluded queries, they're subtracted from all the searched documents.
+ * Matches no document when it has no queries.
+ */
+final class ConjunctionQuery extends Query {
+
+    private final List<Query> required;
+
+    private final List<Query> excluded;
+
+    ConjunctionQuery(List<Query> required) {
+	this(required, Collections.<Query>emptyList());
+    }
+
+    ConjunctionQuery(List<Query> required, List<Query> excluded) {
+	this.required = new ArrayList<Query>(required);
+	this.excluded = new ArrayList<Query>(excluded);
+    }
+
+    /**
+     * Returns the terms of the required queries only - the excluded ones never occur in the matching documents.
+     */
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	List<String> terms = new ArrayList<String>();
+	for (Query query : required)
+	    terms.addAll(query.getTerms(index));
+	return terms;
+    }
+
+    @Override
+    int[] search(InvertedIndex index, int[] ranges, int[] candidates) {
+	if (required.isEmpty() && excluded.isEmpty())
+	    return new int[0];
+
+	int[] documents = candidates;
+	for (Query query : getPlan(required, index)) {
+	    documents = query.search(index, ranges, documents);
+	    if (documents.length == 0)
+		return documents;
+	}
+	if (documents == null)
+	    documents = index.getDocuments(ranges);
+
+	for (Query query : getPlan(excluded, index)) {
+	    documents = Postings.difference(documents, query.search(index, ranges, documents));
+	    if (documents.length == 0)
+		break;
+	}
+	return documents;
+    }
+
+    /**
+     * Returns the queries ordered by their cost, from the cheapest (most selective) one.
+     */
+    static List<Query> getPlan(List<Query> queries, final InvertedIndex index) {
+	List<Query> plan = new ArrayList<Query>(queries);
+	Collections.sort(plan, new Comparator<Query>() {
+	    @Override
+	    public int compare(Query query1, Query query2) {
+		int cost1 = query1.getCost(index);
+		int cost2 = query2.getCost(index);
+		return cost1 < cost2 ? -1 : (cost1 == cost2 ? 0 : 1);
+	    }
+	});
+	return plan;
+    }
+
+    @Override
+    int getCost(InvertedIndex index) {
+	if (required.isEmpty())
+	    return excluded.isEmpty() ? 0 : index.getDocumentCount();
+
+	int cost = Integer.MAX_VALUE;
+	for (Query query : required)
+	    cost = Math.min(cost, query.getCost(index));
+	return cost;
+    }
+
+    @Override
+    int[][] getMatchSpans(InvertedIndex index, int[] documents) {
+	int[][] spans = new int[documents.length][0];
+	for (Query query : required)
+	    spans = SpanQuery.unionSpans(spans, query.getMatchSpans(index, documents));
+	return spans;
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder sb = new StringBuilder();
+	for (Query query : required) {
+	    if (sb.length() > 0)
+		sb.append(' ');
+	    sb.append(query);
+	}
+	for (Query query : excluded) {
+	    if (sb.length() > 0)
+		sb.append(' ');
+	    sb.append("NOT ").append(query);
+	}
+	return sb.toString();
+    }
+
+}
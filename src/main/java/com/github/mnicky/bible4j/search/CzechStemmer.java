@@ -0,0 +1,80 @@
+package com.github.mnicky.bible4j.search;
+
+/**
+ * Light {@link Stemmer} of Czech removing the case and the possessive endings and normalizing the alternating
+ * consonants at the end of the stem (the light stemmer by Dolamic and Savoy), so e.g. <code>hospodin</code>,
+ * <code>hospodina</code> and <code>hospodinu</code> are the same term. Needs the diacritics of the term.
+ */
+final class CzechStemmer implements Stemmer {
+
+    private static final String[] ENDINGS_5 = { "atech" };
+
+    private static final String[] ENDINGS_4 = { "ětem", "etem", "atům" };
+
+    private static final String[] ENDINGS_3 = { "ech", "ich", "ích", "ého", "ěmi", "emi", "ému", "ěte", "ete", "ěti", "eti",
+						"ího", "iho", "ími", "ímu", "imu", "ách", "ata", "aty", "ých", "ama", "ami",
+						"ové", "ovi", "ými" };
+
+    private static final String[] ENDINGS_2 = { "em", "es", "ém", "ím", "ům", "at", "ám", "os", "us", "ým", "mi", "ou" };
+
+    private static final String VOWELS = "aeiouůyáéíýě";
+
+    private static final String[] POSSESSIVES = { "ov", "in", "ův" };
+
+    @Override
+    public String stem(String term) {
+	String stem = removePossessive(removeCase(term));
+	return stem.length() > 0 ? normalize(stem) : stem;
+    }
+
+    private static String removeCase(String term) {
+	int length = term.length();
+	if (length > 7 && endsWithAny(term, ENDINGS_5))
+	    return term.substring(0, length - 5);
+	if (length > 6 && endsWithAny(term, ENDINGS_4))
+	    return term.substring(0, length - 4);
+	if (length > 5 && endsWithAny(term, ENDINGS_3))
+	    return term.substring(0, length - 3);
+	if (length > 4 && endsWithAny(term, ENDINGS_2))
+	    return term.substring(0, length - 2);
+	if (length > 3 && VOWELS.indexOf(term.charAt(length - 1)) >= 0)
+	    return term.substring(0, length - 1);
+	return term;
+    }
+
+    private static String removePossessive(String term) {
+	if (term.length() > 5 && endsWithAny(term, POSSESSIVES))
+	    return term.substring(0, term.length() - 2);
+	return term;
+    }
+
+    private static String normalize(String term) {
+	int length = term.length();
+	if (term.endsWith("čt"))
+	    return term.substring(0, length - 2) + "ck";
+	if (term.endsWith("št"))
+	    return term.substring(0, length - 2) + "sk";
+
+	char last = term.charAt(length - 1);
+	if (last == 'c' || last == 'č')
+	    return term.substring(0, length - 1) + "k";
+	if (last == 'z' || last == 'ž')
+	    return term.substring(0, length - 1) + "h";
+
+	// the inserted vowel, e.g. "den" and "dne"
+	if (length > 1 && term.charAt(length - 2) == 'e')
+	    return term.substring(0, length - 2) + last;
+	if (length > 2 && term.charAt(length - 2) == 'ů')
+	    return term.substring(0, length - 2) + "o" + last;
+	return term;
+    }
+
+    private static boolean endsWithAny(String term, String[] endings) {
+	for (String ending : endings) {
+	    if (term.endsWith(ending))
+		return true;
+	}
+	return false;
+    }
+
+}
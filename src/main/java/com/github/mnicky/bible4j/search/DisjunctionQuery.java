@@ -0,0 +1,69 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query matching the documents matching any of its queries. The queries are evaluated from the most selective one;
+ * when the candidates are given, each query is restricted to the candidates not matched by the previous queries.
+ * Matches no document when it has no queries.
+ */
+final class DisjunctionQuery extends Query {
+
+    private final List<Query> queries;
+
+    DisjunctionQuery(List<Query> queries) {
+	this.queries = new ArrayList<Query>(queries);
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	List<String> terms = new ArrayList<String>();
+	for (Query query : queries)
+	    terms.addAll(query.getTerms(index));
+	return terms;
+    }
+
+    @Override
+    int[] search(InvertedIndex index, int[] ranges, int[] candidates) {
+	int[] documents = new int[0];
+	int[] remaining = candidates;
+	for (Query query : ConjunctionQuery.getPlan(queries, index)) {
+	    documents = Postings.union(documents, query.search(index, ranges, remaining));
+	    if (candidates != null) {
+		remaining = Postings.difference(candidates, documents);
+		if (remaining.length == 0)
+		    break;
+	    }
+	}
+	return documents;
+    }
+
+    @Override
+    int getCost(InvertedIndex index) {
+	long cost = 0;
+	for (Query query : queries)
+	    cost += query.getCost(index);
+	return (int) Math.min(cost, index.getDocumentCount());
+    }
+
+    @Override
+    int[][] getMatchSpans(InvertedIndex index, int[] documents) {
+	int[][] spans = new int[documents.length][0];
+	for (Query query : queries)
+	    spans = SpanQuery.unionSpans(spans, query.getMatchSpans(index, documents));
+	return spans;
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder sb = new StringBuilder("(");
+	for (Query query : queries) {
+	    if (sb.length() > 1)
+		sb.append(" OR ");
+	    sb.append(query);
+	}
+	return sb.append(')').toString();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.github.mnicky.bible4j.search;
+
+/**
+ * Light {@link Stemmer} of English removing the plural endings only (<code>nations</code> to <code>nation</code>,
+ * <code>cities</code> to <code>city</code>), so the different words are rarely reduced to the same term.
+ * The short words are kept, they're mostly not plurals (<code>yes</code>, <code>his</code>, <code>was</code>,
+ * <code>lies</code>).
+ */
+final class EnglishStemmer implements Stemmer {
+
+    /**
+     * The longest words kept with their ending <code>s</code>.
+     */
+    private static final int MAX_KEPT_LENGTH = 4;
+
+    /**
+     * The shortest stem left when the ending <code>ies</code> is replaced by <code>y</code>.
+     */
+    private static final int MIN_IES_STEM_LENGTH = 3;
+
+    @Override
+    public String stem(String term) {
+	int length = term.length();
+	if (length <= MAX_KEPT_LENGTH || term.charAt(length - 1) != 's')
+	    return term;
+
+	switch (term.charAt(length - 2)) {
+	    case 'u':
+	    case 's':
+		// e.g. "thus", "cross"
+		return term;
+	    case 'e':
+		if (length - 3 >= MIN_IES_STEM_LENGTH && term.charAt(length - 3) == 'i'
+			&& term.charAt(length - 4) != 'a' && term.charAt(length - 4) != 'e')
+		    return term.substring(0, length - 3) + "y";
+		char beforeEnding = term.charAt(length - 3);
+		if (beforeEnding == 'i' || beforeEnding == 'a' || beforeEnding == 'o' || beforeEnding == 'e')
+		    return term;
+		return term.substring(0, length - 1);
+	    default:
+		return term.substring(0, length - 1);
+	}
+    }
+
+}
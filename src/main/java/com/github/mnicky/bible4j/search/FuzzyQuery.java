@@ -0,0 +1,50 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.List;
+
+/**
+ * Query matching the documents containing any term at most the specified number of edits from the term
+ * of the query. The term is expanded to at most {@link #MAX_EXPANSIONS} terms of the index - the closest ones,
+ * then the ones contained in the most documents. The terms are found by walking the dictionary
+ * with {@link LevenshteinAutomaton}, not by comparing the term with all the terms of the dictionary.
+ */
+final class FuzzyQuery extends MultiTermQuery {
+
+    /**
+     * The highest supported edit distance.
+     */
+    static final int MAX_DISTANCE = 2;
+
+    private final String term;
+
+    private final int distance;
+
+    /**
+     * Constructs new FuzzyQuery.
+     *
+     * @param term term of the query
+     * @param distance the highest number of the edits, from 0 to {@link #MAX_DISTANCE}
+     */
+    FuzzyQuery(String term, int distance) {
+	this.term = term;
+	this.distance = distance;
+    }
+
+    /**
+     * Returns the default edit distance for the term - the longer terms tolerate more edits.
+     */
+    static int getDefaultDistance(String term) {
+	return term.length() <= 4 ? 1 : MAX_DISTANCE;
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	return index.getTermsWithinDistance(term, distance, MAX_EXPANSIONS);
+    }
+
+    @Override
+    public String toString() {
+	return term + "~" + distance;
+    }
+
+}
@@ -0,0 +1,970 @@
+package com.github.mnicky.bible4j.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Search index of the verses of one Bible version. Each verse is a document; the documents are numbered
+ * in the order of the positions of their verses, so the postings lists of the terms
+ * (see {@link Postings}) are ordered by the positions too. Each document also holds the code of its position
+ * (see {@link com.github.mnicky.bible4j.data.Position#getCode()}) and a key identifying the verse
+ * in the storage it was built from (there can be more verses with the same position in one Bible version).
+ * The positions of the terms in the documents are stored too, so the phrases and the proximity of the terms
+ * are matched by the index (see {@link QueryParser} for the syntax of the queries). The offsets of the terms
+ * in the texts are stored for each document, so the matches are highlighted without analyzing the texts again
+ * (see {@link #getMatchOffsets(Query, int[])}).
+ * <p>
+ * The index holds the postings lists of the trigrams of the texts as well (see {@link Trigrams}), so the verses
+ * possibly containing a substring or matching a regular expression are found without reading all the texts
+ * (see {@link #getCandidates(Pattern, int[])}).
+ * <p>
+ * The most frequent terms of the prefixes are computed when the index is built or read, so the words typed
+ * into a search box are completed instantly (see {@link #complete(String, int)}).
+ * <p>
+ * Immutable, so it can be shared between threads.
+ */
+public final class InvertedIndex {
+
+    /**
+     * The first four bytes of the serialized index ("B4I" followed by zero byte).
+     */
+    private static final int MAGIC = 0x42344900;
+
+    /**
+     * Version of the serialized form, changed whenever the form changes.
+     */
+    private static final int FORMAT_VERSION = 6;
+
+    /**
+     * Saturation of the term frequency used by {@link #score(String, int[])}.
+     */
+    private static final double BM25_K1 = 1.2;
+
+    /**
+     * Weight of the document length normalization used by {@link #score(String, int[])}.
+     */
+    private static final double BM25_B = 0.75;
+
+    private final QueryParser parser;
+
+    /**
+     * Codes of the positions of the documents, in ascending order.
+     */
+    private final int[] codes;
+
+    /**
+     * Keys of the documents.
+     */
+    private final int[] keys;
+
+    /**
+     * Numbers of the terms of the documents.
+     */
+    private final int[] lengths;
+
+    /**
+     * Encoded offsets of the terms in the texts of the documents. For each term, there's the difference between
+     * its start and the end of the previous term (or the start of the text) followed by its length, each encoded
+     * as variable-length integer (see {@link Postings}).
+     */
+    private final byte[] bounds;
+
+    /**
+     * Index of the encoded offsets of the terms of each document in the bounds, followed by the length of the bounds.
+     */
+    private final int[] boundsOffsets;
+
+    /**
+     * Average number of the terms of a document.
+     */
+    private final float averageLength;
+
+    /**
+     * Encoded postings lists and positions by their terms.
+     */
+    private final NavigableMap<String, TermPostings> postings;
+
+    /**
+     * Encoded postings lists (without positions) by their trigrams.
+     */
+    private final Map<Long, byte[]> trigrams;
+
+    /**
+     * The most frequent terms by their prefixes, computed when the index is built or read.
+     */
+    private final Completions completions;
+
+    /**
+     * Encoded postings list and positions of one term.
+     */
+    private static final class TermPostings {
+
+	private final byte[] documents;
+
+	private final byte[] positions;
+
+	private TermPostings(byte[] documents, byte[] positions) {
+	    this.documents = documents;
+	    this.positions = positions;
+	}
+
+    }
+
+    private InvertedIndex(Analyzer analyzer, int[] codes, int[] keys, int[] lengths, byte[] bounds, int[] boundsOffsets,
+			  NavigableMap<String, TermPostings> postings, Map<Long, byte[]> trigrams) {
+	this.parser = new QueryParser(analyzer);
+	this.codes = codes;
+	this.keys = keys;
+	this.lengths = lengths;
+	this.bounds = bounds;
+	this.boundsOffsets = boundsOffsets;
+	this.postings = postings;
+	this.trigrams = trigrams;
+
+	long totalLength = 0;
+	for (int length : lengths)
+	    totalLength += length;
+	this.averageLength = lengths.length > 0 ? Math.max(1f, (float) totalLength / lengths.length) : 1f;
+
+	String[] terms = postings.keySet().toArray(new String[postings.size()]);
+	int[] frequencies = new int[terms.length];
+	for (int i = 0; i < terms.length; i++)
+	    frequencies[i] = Postings.count(postings.get(terms[i]).documents);
+	this.completions = new Completions(terms, frequencies);
+    }
+
+    /**
+     * Builder of the InvertedIndex. The verses must be added in the order of their positions.
+     */
+    public static final class Builder {
+
+	private final Analyzer analyzer;
+
+	private int[] codes = new int[1024];
+
+	private int[] keys = new int[1024];
+
+	private int[] lengths = new int[1024];
+
+	private byte[] bounds = new byte[4096];
+
+	private int[] boundsOffsets = new int[1025];
+
+	private int count = 0;
+
+	private final Map<String, Postings.Writer> postings = new TreeMap<String, Postings.Writer>();
+
+	private final Map<Long, Postings.Writer> trigrams = new HashMap<Long, Postings.Writer>();
+
+	/**
+	 * Constructs new Builder, splitting the texts of the verses to terms by the specified analyzer.
+	 *
+	 * @param analyzer analyzer of the texts
+	 */
+	public Builder(Analyzer analyzer) {
+	    this.analyzer = analyzer;
+	}
+
+	/**
+	 * Adds the verse to the index.
+	 *
+	 * @param code code of the position of the verse, not lower than the code of the last added verse
+	 * @param key key identifying the verse
+	 * @param text text of the verse
+	 * @return this builder
+	 * @throws IllegalArgumentException when the verse is added out of the order
+	 */
+	public Builder add(int code, int key, String text) {
+	    if (count > 0 && code < codes[count - 1])
+		throw new IllegalArgumentException("Verses must be added in the order of their positions.");
+
+	    if (count == codes.length) {
+		codes = Arrays.copyOf(codes, count * 2);
+		keys = Arrays.copyOf(keys, count * 2);
+		lengths = Arrays.copyOf(lengths, count * 2);
+		boundsOffsets = Arrays.copyOf(boundsOffsets, count * 2 + 1);
+	    }
+	    List<String> terms = analyzer.getTerms(text);
+	    codes[count] = code;
+	    keys[count] = key;
+	    lengths[count] = terms.size();
+	    addBounds(terms.size(), analyzer.getTermBounds(text));
+
+	    Map<String, List<Integer>> positions = new LinkedHashMap<String, List<Integer>>();
+	    for (int i = 0; i < terms.size(); i++) {
+		List<Integer> termPositions = positions.get(terms.get(i));
+		if (termPositions == null) {
+		    termPositions = new ArrayList<Integer>();
+		    positions.put(terms.get(i), termPositions);
+		}
+		termPositions.add(i);
+	    }
+
+	    for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+		Postings.Writer writer = postings.get(entry.getKey());
+		if (writer == null) {
+		    writer = new Postings.Writer();
+		    postings.put(entry.getKey(), writer);
+		}
+		int[] termPositions = new int[entry.getValue().size()];
+		for (int i = 0; i < termPositions.length; i++)
+		    termPositions[i] = entry.getValue().get(i);
+		writer.add(count, termPositions);
+	    }
+
+	    for (long trigram : Trigrams.of(text)) {
+		Postings.Writer writer = trigrams.get(trigram);
+		if (writer == null) {
+		    writer = new Postings.Writer();
+		    trigrams.put(trigram, writer);
+		}
+		writer.add(count);
+	    }
+
+	    count++;
+	    return this;
+	}
+
+	/**
+	 * Encodes the offsets of the terms of the added verse. When the analyzer doesn't find the offsets
+	 * of all the terms, none are stored and the matches in the verse are not highlighted.
+	 */
+	private void addBounds(int termCount, int[] termBounds) {
+	    int start = boundsOffsets[count];
+	    if (termBounds.length == termCount * 2) {
+		if (start + 5 * termBounds.length > bounds.length)
+		    bounds = Arrays.copyOf(bounds, Math.max(start + 5 * termBounds.length, bounds.length * 2));
+		int lastEnd = 0;
+		for (int i = 0; i < termBounds.length; i += 2) {
+		    start = Postings.writeVarInt(bounds, start, termBounds[i] - lastEnd);
+		    start = Postings.writeVarInt(bounds, start, termBounds[i + 1] - termBounds[i]);
+		    lastEnd = termBounds[i + 1];
+		}
+	    }
+	    boundsOffsets[count + 1] = start;
+	}
+
+	/**
+	 * Returns the index of all the added verses.
+	 *
+	 * @return the built index
+	 */
+	public InvertedIndex build() {
+	    NavigableMap<String, TermPostings> encoded = new TreeMap<String, TermPostings>();
+	    for (Map.Entry<String, Postings.Writer> entry : postings.entrySet())
+		encoded.put(entry.getKey(), new TermPostings(entry.getValue().toByteArray(), entry.getValue().positionsToByteArray()));
+	    Map<Long, byte[]> encodedTrigrams = new HashMap<Long, byte[]>();
+	    for (Map.Entry<Long, Postings.Writer> entry : trigrams.entrySet())
+		encodedTrigrams.put(entry.getKey(), entry.getValue().toByteArray());
+	    return new InvertedIndex(analyzer, Arrays.copyOf(codes, count), Arrays.copyOf(keys, count),
+				     Arrays.copyOf(lengths, count), Arrays.copyOf(bounds, boundsOffsets[count]),
+				     Arrays.copyOf(boundsOffsets, count + 1), encoded, encodedTrigrams);
+	}
+
+    }
+
+    /**
+     * Returns the number of the documents (verses) in this index.
+     *
+     * @return number of the documents
+     */
+    public int getDocumentCount() {
+	return codes.length;
+    }
+
+    /**
+     * Returns the code of the position of the specified document.
+     *
+     * @param document number of the document
+     * @return code of the position
+     */
+    public int getCode(int document) {
+	return codes[document];
+    }
+
+    /**
+     * Returns the key of the specified document.
+     *
+     * @param document number of the document
+     * @return key of the document
+     */
+    public int getKey(int document) {
+	return keys[document];
+    }
+
+    /**
+     * Returns the documents matching the query, in ascending order.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @return numbers of the found documents
+     */
+    public int[] search(String query) {
+	return search(parser.parse(query), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the documents with the codes of their positions from <code>firstCode</code> to <code>lastCode</code>
+     * (both inclusive) matching the query, in ascending order.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @param firstCode the lowest code of the returned documents
+     * @param lastCode the highest code of the returned documents
+     * @return numbers of the found documents
+     */
+    public int[] search(String query, int firstCode, int lastCode) {
+	return search(parser.parse(query), firstCode, lastCode);
+    }
+
+    /**
+     * Returns the documents with the codes of their positions from <code>firstCode</code> to <code>lastCode</code>
+     * (both inclusive) matching the query, in ascending order.
+     *
+     * @param query parsed search query
+     * @param firstCode the lowest code of the returned documents
+     * @param lastCode the highest code of the returned documents
+     * @return numbers of the found documents
+     */
+    public int[] search(Query query, int firstCode, int lastCode) {
+	return search(query, new int[] { firstCode, lastCode });
+    }
+
+    /**
+     * Returns the documents with the codes of their positions in any of the code ranges matching the query,
+     * in ascending order. The ranges are applied while the postings lists are traversed, so the more restricted
+     * search is the cheaper one.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @param codeRanges pairs of the lowest and the highest codes (both inclusive) of the returned documents,
+     *        in any order, possibly overlapping
+     * @return numbers of the found documents
+     */
+    public int[] search(String query, int[] codeRanges) {
+	return search(parser.parse(query), codeRanges);
+    }
+
+    /**
+     * Returns the documents with the codes of their positions in any of the code ranges matching the query,
+     * in ascending order. The <code>version:</code> filters of the query match all the documents of this index
+     * when they name the specified version and no documents otherwise.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @param codeRanges pairs of the lowest and the highest codes (both inclusive) of the returned documents,
+     *        in any order, possibly overlapping
+     * @param version abbreviation of the Bible version of this index
+     * @return numbers of the found documents
+     */
+    public int[] search(String query, int[] codeRanges, String version) {
+	return search(parser.parse(query, version), codeRanges);
+    }
+
+    /**
+     * Returns the documents with the codes of their positions in any of the code ranges matching the query,
+     * in ascending order.
+     *
+     * @param query parsed search query
+     * @param codeRanges pairs of the lowest and the highest codes (both inclusive) of the returned documents,
+     *        in any order, possibly overlapping
+     * @return numbers of the found documents
+     */
+    public int[] search(Query query, int[] codeRanges) {
+	int[] ranges = getDocumentRanges(codeRanges);
+	if (ranges.length == 0)
+	    return new int[0];
+	return query.search(this, ranges, null);
+    }
+
+    /**
+     * Returns the offsets of the terms matched by the query in the texts of the specified documents,
+     * to highlight them.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @param documents ascending documents matching the query
+     * @return for each of the documents, the pairs of the start (inclusive) and end (exclusive) offsets
+     *         of the matches, ascending and non-overlapping
+     */
+    public int[][] getMatchOffsets(String query, int[] documents) {
+	return getMatchOffsets(parser.parse(query), documents);
+    }
+
+    /**
+     * Returns the offsets of the terms matched by the query in the texts of the specified documents,
+     * to highlight them. Only the positions of the terms of the query in these documents are decoded,
+     * the texts themselves are not needed. Adjacent and overlapping matches are merged.
+     *
+     * @param query parsed search query
+     * @param documents ascending documents matching the query
+     * @return for each of the documents, the pairs of the start (inclusive) and end (exclusive) offsets
+     *         of the matches, ascending and non-overlapping
+     */
+    public int[][] getMatchOffsets(Query query, int[] documents) {
+	int[][] spans = query.getMatchSpans(this, documents);
+	int[][] offsets = new int[documents.length][];
+	for (int d = 0; d < documents.length; d++) {
+	    int[] termBounds = getTermBounds(documents[d]);
+	    int[] documentOffsets = new int[spans[d].length];
+	    int count = 0;
+	    for (int i = 0; i < spans[d].length; i += 2) {
+		int last = spans[d][i + 1];
+		if (2 * last + 1 >= termBounds.length)
+		    continue;
+		int start = termBounds[2 * spans[d][i]];
+		int end = termBounds[2 * last + 1];
+		if (count > 0 && start <= documentOffsets[count - 1])
+		    documentOffsets[count - 1] = Math.max(documentOffsets[count - 1], end);
+		else {
+		    documentOffsets[count++] = start;
+		    documentOffsets[count++] = end;
+		}
+	    }
+	    offsets[d] = Arrays.copyOf(documentOffsets, count);
+	}
+	return offsets;
+    }
+
+    /**
+     * Returns the pairs of the start and end offsets of the terms of the document (no offsets if they're not stored).
+     */
+    private int[] getTermBounds(int document) {
+	int[] offset = { boundsOffsets[document] };
+	if (offset[0] == boundsOffsets[document + 1])
+	    return new int[0];
+
+	int[] termBounds = new int[lengths[document] * 2];
+	int lastEnd = 0;
+	for (int i = 0; i < termBounds.length; i += 2) {
+	    termBounds[i] = lastEnd + Postings.readVarInt(bounds, offset);
+	    termBounds[i + 1] = termBounds[i] + Postings.readVarInt(bounds, offset);
+	    lastEnd = termBounds[i + 1];
+	}
+	return termBounds;
+    }
+
+    /**
+     * Returns the documents with the codes of their positions in any of the code ranges whose texts may match
+     * the pattern, in ascending order - the ones containing all the trigrams of the literals every match
+     * of the pattern must contain. The texts of the returned documents must be matched to find the real matches;
+     * when the pattern has no literals long enough, all the documents in the ranges are returned.
+     *
+     * @param pattern pattern to search for by {@link java.util.regex.Matcher#find()}
+     * @param codeRanges pairs of the lowest and the highest codes (both inclusive) of the returned documents,
+     *        in any order, possibly overlapping
+     * @return numbers of the documents possibly matching the pattern
+     */
+    public int[] getCandidates(Pattern pattern, int[] codeRanges) {
+	int[] ranges = getDocumentRanges(codeRanges);
+	List<byte[]> lists = new ArrayList<byte[]>();
+	for (String literal : Trigrams.getRequiredLiterals(pattern)) {
+	    for (long trigram : Trigrams.of(literal)) {
+		byte[] list = trigrams.get(trigram);
+		if (list == null)
+		    return new int[0];
+		lists.add(list);
+	    }
+	}
+
+	if (lists.isEmpty())
+	    return getDocuments(ranges);
+
+	// from the shortest list, so the intersections are the cheapest
+	Collections.sort(lists, new Comparator<byte[]>() {
+	    @Override
+	    public int compare(byte[] list1, byte[] list2) {
+		int count1 = Postings.count(list1);
+		int count2 = Postings.count(list2);
+		return count1 < count2 ? -1 : (count1 == count2 ? 0 : 1);
+	    }
+	});
+	int[] documents = Postings.restrict(Postings.decode(lists.get(0)), ranges);
+	for (int i = 1; i < lists.size() && documents.length > 0; i++)
+	    documents = Postings.intersect(documents, Postings.decode(lists.get(i)));
+	return documents;
+    }
+
+    /**
+     * Returns all the documents from the ranges (see {@link Query#search(InvertedIndex, int[], int[])}), in ascending order.
+     */
+    int[] getDocuments(int[] ranges) {
+	int count = 0;
+	for (int i = 0; i < ranges.length; i += 2)
+	    count += ranges[i + 1] - ranges[i];
+	int[] documents = new int[count];
+	int next = 0;
+	for (int i = 0; i < ranges.length; i += 2) {
+	    for (int document = ranges[i]; document < ranges[i + 1]; document++)
+		documents[next++] = document;
+	}
+	return documents;
+    }
+
+    /**
+     * Returns the documents from the ranges (see {@link Query#search(InvertedIndex, int[], int[])}) with the codes
+     * from <code>firstCode</code> to <code>lastCode</code> (both inclusive), in ascending order. When the candidates
+     * aren't null, only the candidates are returned. The documents are ordered by the codes, so no postings are read.
+     */
+    int[] getDocumentsWithCodes(int firstCode, int lastCode, int[] ranges, int[] candidates) {
+	int from = lowerBound(firstCode);
+	int to = upperBound(lastCode);
+	if (from >= to)
+	    return new int[0];
+	if (candidates != null)
+	    return Postings.restrict(candidates, new int[] { from, to });
+
+	int[] clipped = new int[ranges.length];
+	int length = 0;
+	for (int i = 0; i < ranges.length; i += 2) {
+	    int start = Math.max(ranges[i], from);
+	    int end = Math.min(ranges[i + 1], to);
+	    if (start < end) {
+		clipped[length++] = start;
+		clipped[length++] = end;
+	    }
+	}
+	return getDocuments(Arrays.copyOf(clipped, length));
+    }
+
+    /**
+     * Returns the number of the documents with the codes from <code>firstCode</code> to <code>lastCode</code> (both inclusive).
+     */
+    int getDocumentCountWithCodes(int firstCode, int lastCode) {
+	return Math.max(0, upperBound(lastCode) - lowerBound(firstCode));
+    }
+
+    /**
+     * Returns the ascending non-overlapping pairs of the first document (inclusive) and the document after
+     * the last one (exclusive) of the code ranges.
+     */
+    private int[] getDocumentRanges(int[] codeRanges) {
+	if (codeRanges.length % 2 != 0)
+	    throw new IllegalArgumentException("Code ranges must be pairs of the lowest and the highest code.");
+
+	// the first document in the upper half, so the pairs sort by it
+	long[] pairs = new long[codeRanges.length / 2];
+	int count = 0;
+	for (int i = 0; i < codeRanges.length; i += 2) {
+	    int from = lowerBound(codeRanges[i]);
+	    int to = upperBound(codeRanges[i + 1]);
+	    if (from < to)
+		pairs[count++] = ((long) from << 32) | to;
+	}
+	Arrays.sort(pairs, 0, count);
+
+	int[] ranges = new int[count * 2];
+	int length = 0;
+	for (int i = 0; i < count; i++) {
+	    int from = (int) (pairs[i] >>> 32);
+	    int to = (int) pairs[i];
+	    if (length > 0 && from <= ranges[length - 1])
+		ranges[length - 1] = Math.max(ranges[length - 1], to);
+	    else {
+		ranges[length++] = from;
+		ranges[length++] = to;
+	    }
+	}
+	return Arrays.copyOf(ranges, length);
+    }
+
+    /**
+     * Returns the relevance scores of the documents for the query, computed by the Okapi BM25 formula
+     * from the frequencies of the terms of the query in the documents and in this index.
+     * Higher score means more relevant document.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @param documents ascending documents
+     * @return scores of the documents
+     */
+    public float[] score(String query, int[] documents) {
+	float[] scores = new float[documents.length];
+	for (String term : new LinkedHashSet<String>(parser.parse(query).getTerms(this))) {
+	    TermPostings termPostings = postings.get(term);
+	    if (termPostings == null)
+		continue;
+
+	    int[] termDocuments = Postings.decode(termPostings.documents);
+	    int[] frequencies = Postings.decodeFrequencies(termDocuments, termPostings.positions, documents);
+	    // rare terms weigh more than the common ones
+	    double idf = Math.log(1 + (codes.length - termDocuments.length + 0.5) / (termDocuments.length + 0.5));
+	    for (int i = 0; i < documents.length; i++) {
+		int tf = frequencies[i];
+		if (tf > 0) {
+		    // the repeated occurrences count less and less, the long documents count less
+		    double norm = BM25_K1 * (1 - BM25_B + BM25_B * lengths[documents[i]] / averageLength);
+		    scores[i] += (float) (idf * tf * (BM25_K1 + 1) / (tf + norm));
+		}
+	    }
+	}
+	return scores;
+    }
+
+    /**
+     * Returns the query with its words not found in this index replaced by the most similar words which are found,
+     * or null if there's no such word to replace. A word is replaced by the term at most {@value FuzzyQuery#MAX_DISTANCE}
+     * edits from it - the closest one, then the one contained in the most documents. The words searched as prefixes
+     * or fuzzily, the operators and the field filters are kept.
+     *
+     * @param query search query (see {@link QueryParser})
+     * @return corrected query or null
+     */
+    public String suggest(String query) {
+	StringBuilder suggestion = new StringBuilder();
+	boolean corrected = false;
+	int i = 0;
+	while (i < query.length()) {
+	    if (!Character.isLetterOrDigit(query.charAt(i))) {
+		suggestion.append(query.charAt(i++));
+		continue;
+	    }
+
+	    int end = QueryParser.getWordEnd(query, i);
+	    String token = query.substring(i, end);
+	    if (QueryParser.isOperator(token) || QueryParser.isField(token)) {
+		suggestion.append(query, i, end);
+		i = end;
+		continue;
+	    }
+
+	    end = i;
+	    while (end < query.length() && Character.isLetterOrDigit(query.charAt(end)))
+		end++;
+	    String word = query.substring(i, end);
+	    boolean expanded = end < query.length() && (query.charAt(end) == '*' || query.charAt(end) == '~');
+	    i = end;
+
+	    List<String> terms = parser.getAnalyzer().getTerms(word);
+	    if (!expanded && terms.size() == 1 && getDocumentFrequency(terms.get(0)) == 0) {
+		List<String> similar = getTermsWithinDistance(terms.get(0), FuzzyQuery.MAX_DISTANCE, 1);
+		if (!similar.isEmpty()) {
+		    suggestion.append(similar.get(0));
+		    corrected = true;
+		    continue;
+		}
+	    }
+	    suggestion.append(word);
+	}
+	return corrected ? suggestion.toString() : null;
+    }
+
+    /**
+     * Returns the terms of this index starting with the prefix of a word, the ones contained in the most documents first
+     * (the terms with the same number of documents alphabetically). The prefix is normalized by the analyzer
+     * of this index but not stemmed, like the prefix searched by <code>word*</code> (see {@link QueryParser}).
+     * The returned terms are the terms of the index, e.g. the stems of the words for the languages with a stemmer.
+     *
+     * @param prefix prefix of a word
+     * @param limit the highest number of the returned terms, at most {@value Completions#MAX_COMPLETIONS} are returned
+     * @return terms starting with the prefix, none when the prefix isn't a prefix of one word
+     */
+    public List<String> complete(String prefix, int limit) {
+	List<String> normalized = parser.getAnalyzer().getNormalizedTerms(prefix);
+	if (normalized.size() != 1)
+	    return Collections.emptyList();
+	return Arrays.asList(completions.get(normalized.get(0), limit));
+    }
+
+    /**
+     * Returns the number of the documents containing the term.
+     *
+     * @param term term of this index
+     * @return number of the documents containing the term, 0 if there's no such term
+     */
+    public int getDocumentFrequency(String term) {
+	TermPostings termPostings = postings.get(term);
+	return termPostings != null ? Postings.count(termPostings.documents) : 0;
+    }
+
+    /**
+     * Returns the documents from the ranges (see {@link Query#search(InvertedIndex, int[], int[])}) containing
+     * all the terms, in ascending order. When the candidates aren't null, only the candidates are returned.
+     */
+    int[] getDocuments(List<String> terms, int[] ranges, int[] candidates) {
+	List<byte[]> lists = new ArrayList<byte[]>();
+	for (String term : new LinkedHashSet<String>(terms)) {
+	    TermPostings termPostings = postings.get(term);
+	    if (termPostings == null)
+		return new int[0];
+	    lists.add(termPostings.documents);
+	}
+
+	// the shortest list limits the result, so the others are only probed for its documents
+	Collections.sort(lists, new Comparator<byte[]>() {
+	    @Override
+	    public int compare(byte[] list1, byte[] list2) {
+		return Postings.count(list1) - Postings.count(list2);
+	    }
+	});
+
+	int[] result = candidates;
+	for (byte[] list : lists) {
+	    if (result == null)
+		result = Postings.restrict(Postings.decode(list), ranges);
+	    else if (result.length > 0) {
+		int[] documents = Postings.decode(list);
+		result = result.length <= documents.length ? Postings.intersect(result, documents) : Postings.intersect(documents, result);
+	    }
+	}
+	return result != null ? result : new int[0];
+    }
+
+    /**
+     * Returns the documents from the ranges (see {@link Query#search(InvertedIndex, int[], int[])}) containing
+     * any of the terms, in ascending order. When the candidates aren't null, only the candidates are returned.
+     * The postings lists are merged in one bit set of the documents.
+     */
+    int[] getDocumentsWithAnyTerm(List<String> terms, int[] ranges, int[] candidates) {
+	BitSet found = new BitSet(codes.length);
+	for (String term : terms) {
+	    TermPostings termPostings = postings.get(term);
+	    if (termPostings == null)
+		continue;
+
+	    int[] documents = Postings.decode(termPostings.documents);
+	    if (candidates != null)
+		documents = candidates.length <= documents.length ? Postings.intersect(candidates, documents) : Postings.intersect(documents, candidates);
+	    else
+		documents = Postings.restrict(documents, ranges);
+	    for (int document : documents)
+		found.set(document);
+	}
+
+	int[] result = new int[found.cardinality()];
+	int i = 0;
+	for (int document = found.nextSetBit(0); document >= 0; document = found.nextSetBit(document + 1))
+	    result[i++] = document;
+	return result;
+    }
+
+    /**
+     * Returns at most the specified number of the terms starting with the prefix, the ones contained
+     * in the most documents, in alphabetical order.
+     */
+    List<String> getTermsWithPrefix(String prefix, int limit) {
+	// all the terms starting with the prefix sort between the prefix and the prefix followed by the highest character
+	SortedMap<String, TermPostings> matching = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+	if (matching.size() <= limit)
+	    return new ArrayList<String>(matching.keySet());
+
+	final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+	for (Map.Entry<String, TermPostings> entry : matching.entrySet())
+	    frequencies.put(entry.getKey(), Postings.count(entry.getValue().documents));
+	// the sort is stable, so the terms with the same frequency stay in alphabetical order
+	List<String> terms = new ArrayList<String>(matching.keySet());
+	Collections.sort(terms, new Comparator<String>() {
+	    @Override
+	    public int compare(String term1, String term2) {
+		return frequencies.get(term2) - frequencies.get(term1);
+	    }
+	});
+	terms = terms.subList(0, limit);
+	Collections.sort(terms);
+	return terms;
+    }
+
+    /**
+     * Returns at most the specified number of the terms at most the specified number of edits from the word,
+     * the closest ones and then the ones contained in the most documents, in alphabetical order.
+     * The sorted dictionary is walked like a trie by {@link LevenshteinAutomaton}, so the terms
+     * with a prefix too far from the word are skipped together.
+     */
+    List<String> getTermsWithinDistance(String word, int maxDistance, int limit) {
+	LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, maxDistance);
+	final Map<String, Integer> distances = new HashMap<String, Integer>();
+
+	// states[i] is the state after reading the first i characters of the term
+	int[][] states = new int[32][];
+	states[0] = automaton.start();
+	String previous = "";
+	String term = postings.isEmpty() ? null : postings.firstKey();
+	while (term != null) {
+	    // the states of the prefix shared with the previous term are still valid
+	    int common = 0;
+	    while (common < previous.length() && common < term.length() && previous.charAt(common) == term.charAt(common))
+		common++;
+
+	    int read = common;
+	    while (read < term.length()) {
+		if (read + 1 == states.length)
+		    states = Arrays.copyOf(states, states.length * 2);
+		states[read + 1] = automaton.step(states[read], term.charAt(read));
+		read++;
+		if (!automaton.canMatch(states[read]))
+		    break;
+	    }
+
+	    if (read < term.length() || !automaton.canMatch(states[read])) {
+		// no term starting with the read characters matches
+		previous = term.substring(0, read);
+		term = postings.higherKey(previous + Character.MAX_VALUE);
+		continue;
+	    }
+
+	    if (automaton.isMatch(states[read]))
+		distances.put(term, automaton.getDistance(states[read]));
+	    previous = term;
+	    term = postings.higherKey(term);
+	}
+
+	List<String> terms = new ArrayList<String>(distances.keySet());
+	if (terms.size() > limit) {
+	    Collections.sort(terms, new Comparator<String>() {
+		@Override
+		public int compare(String term1, String term2) {
+		    int distance1 = distances.get(term1);
+		    int distance2 = distances.get(term2);
+		    if (distance1 != distance2)
+			return distance1 - distance2;
+		    int frequency1 = getDocumentFrequency(term1);
+		    int frequency2 = getDocumentFrequency(term2);
+		    return frequency1 != frequency2 ? frequency2 - frequency1 : term1.compareTo(term2);
+		}
+	    });
+	    terms = terms.subList(0, limit);
+	}
+	Collections.sort(terms);
+	return terms;
+    }
+
+    /**
+     * Returns the positions of the term in each of the specified documents (no positions for the documents not containing the term).
+     */
+    int[][] getPositions(String term, int[] documents) {
+	TermPostings termPostings = postings.get(term);
+	if (termPostings == null)
+	    return Postings.decodePositions(new int[0], new byte[0], documents);
+	return Postings.decodePositions(Postings.decode(termPostings.documents), termPostings.positions, documents);
+    }
+
+    /**
+     * Returns the first document with the code not lower than the specified one.
+     */
+    private int lowerBound(int code) {
+	int low = 0;
+	int high = codes.length;
+	while (low < high) {
+	    int middle = (low + high) >>> 1;
+	    if (codes[middle] < code)
+		low = middle + 1;
+	    else
+		high = middle;
+	}
+	return low;
+    }
+
+    /**
+     * Returns the first document with the code higher than the specified one.
+     */
+    private int upperBound(int code) {
+	return code == Integer.MAX_VALUE ? codes.length : lowerBound(code + 1);
+    }
+
+    /**
+     * Writes this index to the output stream.
+     *
+     * @param output output stream
+     * @throws IOException when the index could not be written
+     */
+    public void writeTo(OutputStream output) throws IOException {
+	DataOutputStream out = new DataOutputStream(output);
+	out.writeInt(MAGIC);
+	out.writeInt(FORMAT_VERSION);
+	out.writeUTF(parser.getAnalyzer().getName());
+
+	out.writeInt(codes.length);
+	for (int i = 0; i < codes.length; i++) {
+	    out.writeInt(codes[i]);
+	    out.writeInt(keys[i]);
+	    out.writeInt(lengths[i]);
+	    out.writeInt(boundsOffsets[i + 1] - boundsOffsets[i]);
+	}
+	out.write(bounds);
+
+	out.writeInt(postings.size());
+	for (Map.Entry<String, TermPostings> entry : postings.entrySet()) {
+	    out.writeUTF(entry.getKey());
+	    out.writeInt(entry.getValue().documents.length);
+	    out.write(entry.getValue().documents);
+	    out.writeInt(entry.getValue().positions.length);
+	    out.write(entry.getValue().positions);
+	}
+
+	out.writeInt(trigrams.size());
+	for (Map.Entry<Long, byte[]> entry : trigrams.entrySet()) {
+	    out.writeLong(entry.getKey());
+	    out.writeInt(entry.getValue().length);
+	    out.write(entry.getValue());
+	}
+	out.flush();
+    }
+
+    /**
+     * Reads the index written by {@link #writeTo(OutputStream)}.
+     *
+     * @param input input stream
+     * @param analyzer analyzer the index was built with
+     * @return the read index
+     * @throws IOException when the index could not be read or is written in an unknown format
+     */
+    public static InvertedIndex readFrom(InputStream input, Analyzer analyzer) throws IOException {
+	DataInputStream in = new DataInputStream(input);
+	if (in.readInt() != MAGIC)
+	    throw new IOException("Not a search index.");
+	int formatVersion = in.readInt();
+	if (formatVersion != FORMAT_VERSION)
+	    throw new IOException("Unsupported version " + formatVersion + " of the search index.");
+	String analyzerName = in.readUTF();
+	if (!analyzerName.equals(analyzer.getName()))
+	    throw new IOException("Search index was built with analyzer " + analyzerName + ", not " + analyzer.getName() + ".");
+
+	int count = in.readInt();
+	int[] codes = new int[count];
+	int[] keys = new int[count];
+	int[] lengths = new int[count];
+	int[] boundsOffsets = new int[count + 1];
+	for (int i = 0; i < count; i++) {
+	    codes[i] = in.readInt();
+	    keys[i] = in.readInt();
+	    lengths[i] = in.readInt();
+	    boundsOffsets[i + 1] = boundsOffsets[i] + in.readInt();
+	}
+	byte[] bounds = new byte[boundsOffsets[count]];
+	in.readFully(bounds);
+
+	int termCount = in.readInt();
+	NavigableMap<String, TermPostings> postings = new TreeMap<String, TermPostings>();
+	for (int i = 0; i < termCount; i++) {
+	    String term = in.readUTF();
+	    byte[] documents = new byte[in.readInt()];
+	    in.readFully(documents);
+	    byte[] positions = new byte[in.readInt()];
+	    in.readFully(positions);
+	    postings.put(term, new TermPostings(documents, positions));
+	}
+
+	int trigramCount = in.readInt();
+	Map<Long, byte[]> trigrams = new HashMap<Long, byte[]>();
+	for (int i = 0; i < trigramCount; i++) {
+	    long trigram = in.readLong();
+	    byte[] documents = new byte[in.readInt()];
+	    in.readFully(documents);
+	    trigrams.put(trigram, documents);
+	}
+
+	return new InvertedIndex(analyzer, codes, keys, lengths, bounds, boundsOffsets, postings, trigrams);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.github.mnicky.bible4j.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * {@link Analyzer} for the texts in one language. The text is normalized to Unicode NFC form and split
+ * into the runs of letters and digits, which are converted to lower case by the rules of the language,
+ * stemmed by the light stemmer of the language (English and Czech are supported, the words of the other
+ * languages are not stemmed) and stripped of the diacritics, so e.g. <code>Hospodin</code>,
+ * <code>Hospodina</code> and <code>hospodinu</code> are the same term. Immutable, so it can be shared between threads.
+ */
+public final class LanguageAnalyzer implements Analyzer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final String language;
+
+    private final Locale locale;
+
+    private final Stemmer stemmer;
+
+    /**
+     * Constructs new LanguageAnalyzer for the language.
+     *
+     * @param language code of the language (e.g. <code>en</code> or <code>cs</code>, as in the <code>xml:lang</code>
+     *        attribute of OSIS); the region after <code>-</code> or <code>_</code> is ignored
+     */
+    public LanguageAnalyzer(String language) {
+	String code = language == null ? "" : language.trim().toLowerCase(new Locale("en"));
+	int region = code.indexOf('-') >= 0 ? code.indexOf('-') : code.indexOf('_');
+	if (region >= 0)
+	    code = code.substring(0, region);
+
+	this.language = code;
+	this.locale = new Locale(code);
+	if (code.equals("en") || code.equals("eng"))
+	    this.stemmer = new EnglishStemmer();
+	else if (code.equals("cs") || code.equals("cz") || code.equals("ces") || code.equals("cze"))
+	    this.stemmer = new CzechStemmer();
+	else
+	    this.stemmer = null;
+    }
+
+    @Override
+    public String getName() {
+	return "language:" + language;
+    }
+
+    @Override
+    public List<String> getTerms(String text) {
+	return analyze(text, true);
+    }
+
+    @Override
+    public List<String> getNormalizedTerms(String text) {
+	return analyze(text, false);
+    }
+
+    /**
+     * The terms are found in the text itself, not in its normalized form, so the offsets are the ones of the text.
+     * The normalization only composes the characters, so it doesn't change where the terms are.
+     */
+    @Override
+    public int[] getTermBounds(String text) {
+	int[] bounds = new int[text.length() + 1];
+	int count = 0;
+	boolean inTerm = false;
+	for (int i = 0; i <= text.length(); i++) {
+	    boolean isTermChar = i < text.length() && isTermChar(text.charAt(i));
+	    if (isTermChar != inTerm)
+		bounds[count++] = i;
+	    inTerm = isTermChar;
+	}
+	return Arrays.copyOf(bounds, count);
+    }
+
+    private List<String> analyze(String text, boolean stem) {
+	String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+	List<String> terms = new ArrayList<String>();
+	int start = -1;
+	for (int i = 0; i <= normalized.length(); i++) {
+	    boolean inTerm = i < normalized.length() && isTermChar(normalized.charAt(i));
+	    if (inTerm && start < 0)
+		start = i;
+	    else if (!inTerm && start >= 0) {
+		String term = normalized.substring(start, i).toLowerCase(locale);
+		// the stemmers need the diacritics
+		if (stem && stemmer != null)
+		    term = stemmer.stem(term);
+		terms.add(fold(term));
+		start = -1;
+	    }
+	}
+	return terms;
+    }
+
+    /**
+     * Returns true if the character is a part of a term - a letter, a digit or a combining mark
+     * left after the normalization.
+     */
+    private static boolean isTermChar(char c) {
+	if (Character.isLetterOrDigit(c))
+	    return true;
+	int type = Character.getType(c);
+	return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK;
+    }
+
+    /**
+     * Returns the term without the diacritics.
+     */
+    private static String fold(String term) {
+	for (int i = 0; i < term.length(); i++) {
+	    if (term.charAt(i) >= 0x80)
+		return COMBINING_MARKS.matcher(Normalizer.normalize(term, Normalizer.Form.NFD)).replaceAll("");
+	}
+	return term;
+    }
+
+    @Override
+    public String toString() {
+	return getName();
+    }
+
+}
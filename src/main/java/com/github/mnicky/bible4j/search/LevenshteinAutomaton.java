@@ -0,0 +1,79 @@
+package com.github.mnicky.bible4j.search;
+
+/**
+ * Automaton accepting the terms at most the specified number of edits (insertions, deletions and substitutions
+ * of one character) from a word. The state after reading some characters is the row of the edit distances
+ * of these characters from the prefixes of the word, with the distances higher than the maximal one
+ * cut down to the maximal one plus one, so there's a finite number of the states. The state tells
+ * whether the read characters are accepted and whether any of their continuations can be, so the terms
+ * of a sorted dictionary can be walked like a trie, skipping all the terms with a prefix which can't match.
+ * Immutable, so it can be shared between threads.
+ */
+final class LevenshteinAutomaton {
+
+    private final String word;
+
+    private final int maxDistance;
+
+    /**
+     * Constructs new LevenshteinAutomaton.
+     *
+     * @param word the word the accepted terms are similar to
+     * @param maxDistance the highest number of the edits of the accepted terms
+     */
+    LevenshteinAutomaton(String word, int maxDistance) {
+	this.word = word;
+	this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Returns the state before reading any character.
+     */
+    int[] start() {
+	int[] state = new int[word.length() + 1];
+	for (int i = 0; i < state.length; i++)
+	    state[i] = Math.min(i, maxDistance + 1);
+	return state;
+    }
+
+    /**
+     * Returns the state after reading the character in the specified state.
+     */
+    int[] step(int[] state, char c) {
+	int[] next = new int[state.length];
+	next[0] = Math.min(state[0] + 1, maxDistance + 1);
+	for (int i = 1; i < state.length; i++) {
+	    int substitution = state[i - 1] + (word.charAt(i - 1) == c ? 0 : 1);
+	    int deletion = next[i - 1] + 1;
+	    int insertion = state[i] + 1;
+	    next[i] = Math.min(Math.min(substitution, deletion), Math.min(insertion, maxDistance + 1));
+	}
+	return next;
+    }
+
+    /**
+     * Returns true if the characters read to get to the state are accepted.
+     */
+    boolean isMatch(int[] state) {
+	return state[state.length - 1] <= maxDistance;
+    }
+
+    /**
+     * Returns true if the characters read to get to the state or some of their continuations are accepted.
+     */
+    boolean canMatch(int[] state) {
+	for (int distance : state) {
+	    if (distance <= maxDistance)
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Returns the edit distance of the characters read to get to the accepting state from the word.
+     */
+    int getDistance(int[] state) {
+	return state[state.length - 1];
+    }
+
+}
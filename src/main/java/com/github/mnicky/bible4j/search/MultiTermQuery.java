@@ -0,0 +1,67 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Query matching the documents containing any of the terms of the index it expands to (see {@link #getTerms(InvertedIndex)}),
+ * at most {@link #MAX_EXPANSIONS} of them. The postings lists of the terms are merged in one pass.
+ */
+abstract class MultiTermQuery extends SpanQuery {
+
+    /**
+     * The highest number of the terms the query is expanded to.
+     */
+    static final int MAX_EXPANSIONS = 128;
+
+    @Override
+    int[] getCandidates(InvertedIndex index, int[] ranges, int[] candidates) {
+	return index.getDocumentsWithAnyTerm(getTerms(index), ranges, candidates);
+    }
+
+    @Override
+    int[] search(InvertedIndex index, int[] ranges, int[] candidates) {
+	// the positions are not needed to match the terms
+	return getCandidates(index, ranges, candidates);
+    }
+
+    @Override
+    int[][] getSpans(InvertedIndex index, int[] documents) {
+	List<String> terms = getTerms(index);
+	int[][][] positions = new int[terms.size()][][];
+	for (int t = 0; t < terms.size(); t++)
+	    positions[t] = index.getPositions(terms.get(t), documents);
+
+	int[][] spans = new int[documents.length][];
+	for (int d = 0; d < documents.length; d++) {
+	    int length = 0;
+	    for (int t = 0; t < terms.size(); t++)
+		length += positions[t][d].length;
+
+	    // each position is in at most one of the terms
+	    int[] documentPositions = new int[length];
+	    int count = 0;
+	    for (int t = 0; t < terms.size(); t++) {
+		System.arraycopy(positions[t][d], 0, documentPositions, count, positions[t][d].length);
+		count += positions[t][d].length;
+	    }
+	    Arrays.sort(documentPositions);
+
+	    spans[d] = new int[length * 2];
+	    for (int i = 0; i < length; i++) {
+		spans[d][2 * i] = documentPositions[i];
+		spans[d][2 * i + 1] = documentPositions[i];
+	    }
+	}
+	return spans;
+    }
+
+    @Override
+    int getCost(InvertedIndex index) {
+	int cost = 0;
+	for (String term : getTerms(index))
+	    cost = (int) Math.min(Integer.MAX_VALUE, (long) cost + index.getDocumentFrequency(term));
+	return cost;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Query matching the documents where the spans of two queries are at most the specified number of positions
+ * apart, in any order. The distance of two adjacent spans is 1. The matching span covers both the spans.
+ */
+final class NearQuery extends SpanQuery {
+
+    private final SpanQuery left;
+
+    private final SpanQuery right;
+
+    private final int distance;
+
+    NearQuery(SpanQuery left, SpanQuery right, int distance) {
+	this.left = left;
+	this.right = right;
+	this.distance = distance;
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	List<String> terms = new ArrayList<String>(left.getTerms(index));
+	terms.addAll(right.getTerms(index));
+	return terms;
+    }
+
+    @Override
+    int[] getCandidates(InvertedIndex index, int[] ranges, int[] candidates) {
+	// the more selective operand restricts the other one
+	SpanQuery first = left.getCost(index) <= right.getCost(index) ? left : right;
+	SpanQuery second = first == left ? right : left;
+	int[] documents = first.getCandidates(index, ranges, candidates);
+	return documents.length > 0 ? second.getCandidates(index, ranges, documents) : documents;
+    }
+
+    @Override
+    int getCost(InvertedIndex index) {
+	return Math.min(left.getCost(index), right.getCost(index));
+    }
+
+    @Override
+    int[][] getSpans(InvertedIndex index, int[] documents) {
+	int[][] leftSpans = left.getSpans(index, documents);
+	int[][] rightSpans = right.getSpans(index, documents);
+
+	int[][] spans = new int[documents.length][];
+	for (int d = 0; d < documents.length; d++) {
+	    int[] l = leftSpans[d];
+	    int[] r = rightSpans[d];
+	    int[] documentSpans = new int[l.length * r.length / 2];
+	    int count = 0;
+	    for (int i = 0; i < l.length; i += 2) {
+		for (int j = 0; j < r.length; j += 2) {
+		    int gap;
+		    if (r[j] > l[i + 1])
+			gap = r[j] - l[i + 1];
+		    else if (l[i] > r[j + 1])
+			gap = l[i] - r[j + 1];
+		    else
+			continue;
+		    if (gap <= distance) {
+			documentSpans[count++] = Math.min(l[i], r[j]);
+			documentSpans[count++] = Math.max(l[i + 1], r[j + 1]);
+		    }
+		}
+	    }
+	    spans[d] = sortSpans(Arrays.copyOf(documentSpans, count));
+	}
+	return spans;
+    }
+
+    /**
+     * The terms of both the operands are highlighted, not the words between them.
+     */
+    @Override
+    int[][] getMatchSpans(InvertedIndex index, int[] documents) {
+	return unionSpans(left.getMatchSpans(index, documents), right.getMatchSpans(index, documents));
+    }
+
+    @Override
+    public String toString() {
+	return left + " NEAR/" + distance + " " + right;
+    }
+
+}
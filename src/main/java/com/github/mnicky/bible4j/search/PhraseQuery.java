@@ -0,0 +1,65 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Query matching the documents containing the terms next to each other, in the specified order.
+ */
+final class PhraseQuery extends SpanQuery {
+
+    private final List<String> terms;
+
+    /**
+     * Constructs new PhraseQuery.
+     *
+     * @param terms terms of the phrase, at least one
+     */
+    PhraseQuery(List<String> terms) {
+	this.terms = new ArrayList<String>(terms);
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	return terms;
+    }
+
+    @Override
+    int[][] getSpans(InvertedIndex index, int[] documents) {
+	// positions.get(i)[d] are the positions of the i-th term in the d-th document
+	List<int[][]> positions = new ArrayList<int[][]>();
+	for (String term : terms)
+	    positions.add(index.getPositions(term, documents));
+
+	int[][] spans = new int[documents.length][];
+	for (int d = 0; d < documents.length; d++) {
+	    int[] starts = positions.get(0)[d];
+	    int[] documentSpans = new int[starts.length * 2];
+	    int count = 0;
+	    for (int start : starts) {
+		boolean matches = true;
+		for (int i = 1; i < terms.size() && matches; i++)
+		    matches = Arrays.binarySearch(positions.get(i)[d], start + i) >= 0;
+		if (matches) {
+		    documentSpans[count++] = start;
+		    documentSpans[count++] = start + terms.size() - 1;
+		}
+	    }
+	    spans[d] = Arrays.copyOf(documentSpans, count);
+	}
+	return spans;
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder sb = new StringBuilder("\"");
+	for (String term : terms) {
+	    if (sb.length() > 1)
+		sb.append(' ');
+	    sb.append(term);
+	}
+	return sb.append('"').toString();
+    }
+
+}
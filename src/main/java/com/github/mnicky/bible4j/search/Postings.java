@@ -0,0 +1,321 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Arrays;
+
+/**
+ * Class encoding the postings lists - ascending lists of the numbers of the documents containing a term.
+ * The list is encoded as the number of the documents followed by the differences between the consecutive
+ * document numbers (the first one is the difference from 0), each as variable-length integer
+ * (7 bits in each byte, the highest bit set in all the bytes except the last one).
+ * <p>
+ * The positions of the term in the documents (the indexes of the term among the terms of the document)
+ * are encoded separately, so the queries not needing them don't have to read them. For each document
+ * of the postings list, there's the number of the positions followed by the differences between
+ * the consecutive positions (the first one is the difference from 0), encoded the same way.
+ */
+final class Postings {
+
+    /**
+     * This is a static library class, so cannot be instantiated.
+     */
+    private Postings() {
+
+    }
+
+    /**
+     * Encoder of one postings list and the positions of its term. The document numbers must be added in ascending order.
+     */
+    static final class Writer {
+
+	private byte[] deltas = new byte[16];
+
+	private int length = 0;
+
+	private int count = 0;
+
+	private int lastDocument = 0;
+
+	private byte[] positions = new byte[16];
+
+	private int positionsLength = 0;
+
+	/**
+	 * Adds the document without any positions to the postings list.
+	 *
+	 * @param document number of the document, higher than the last added one
+	 * @throws IllegalArgumentException when the document number is not higher than the last added one
+	 */
+	void add(int document) {
+	    add(document, new int[0]);
+	}
+
+	/**
+	 * Adds the document to the postings list.
+	 *
+	 * @param document number of the document, higher than the last added one
+	 * @param termPositions positions of the term in the document, in ascending order
+	 * @throws IllegalArgumentException when the document number is not higher than the last added one
+	 */
+	void add(int document, int[] termPositions) {
+	    if (count > 0 && document <= lastDocument)
+		throw new IllegalArgumentException("Documents must be added in ascending order.");
+
+	    if (length + 5 > deltas.length)
+		deltas = Arrays.copyOf(deltas, deltas.length * 2);
+	    length = writeVarInt(deltas, length, document - lastDocument);
+	    lastDocument = document;
+	    count++;
+
+	    int needed = positionsLength + 5 * (termPositions.length + 1);
+	    if (needed > positions.length)
+		positions = Arrays.copyOf(positions, Math.max(needed, positions.length * 2));
+	    positionsLength = writeVarInt(positions, positionsLength, termPositions.length);
+	    int lastPosition = 0;
+	    for (int position : termPositions) {
+		positionsLength = writeVarInt(positions, positionsLength, position - lastPosition);
+		lastPosition = position;
+	    }
+	}
+
+	/**
+	 * Returns the encoded postings list.
+	 *
+	 * @return encoded postings list
+	 */
+	byte[] toByteArray() {
+	    byte[] encoded = new byte[varIntLength(count) + length];
+	    int offset = writeVarInt(encoded, 0, count);
+	    System.arraycopy(deltas, 0, encoded, offset, length);
+	    return encoded;
+	}
+
+	/**
+	 * Returns the encoded positions of the term in the documents of the postings list.
+	 *
+	 * @return encoded positions
+	 */
+	byte[] positionsToByteArray() {
+	    return Arrays.copyOf(positions, positionsLength);
+	}
+
+    }
+
+    /**
+     * Decodes the postings list.
+     *
+     * @param postings encoded postings list
+     * @return ascending document numbers
+     */
+    static int[] decode(byte[] postings) {
+	int[] offset = { 0 };
+	int[] documents = new int[readVarInt(postings, offset)];
+	int document = 0;
+	for (int i = 0; i < documents.length; i++) {
+	    document += readVarInt(postings, offset);
+	    documents[i] = document;
+	}
+	return documents;
+    }
+
+    /**
+     * Returns the number of the documents in the encoded postings list, without decoding it.
+     *
+     * @param postings encoded postings list
+     * @return number of the documents
+     */
+    static int count(byte[] postings) {
+	return readVarInt(postings, new int[] { 0 });
+    }
+
+    /**
+     * Decodes the positions of the term in the specified documents. The positions of the other documents
+     * of the postings list are skipped without decoding.
+     *
+     * @param termDocuments decoded postings list of the term
+     * @param positions encoded positions of the term
+     * @param documents ascending documents
+     * @return ascending positions of the term for each of the specified documents (empty for the documents
+     *         not contained in the postings list)
+     */
+    static int[][] decodePositions(int[] termDocuments, byte[] positions, int[] documents) {
+	int[][] result = new int[documents.length][];
+	int[] offset = { 0 };
+	int next = 0;
+	for (int i = 0; i < termDocuments.length && next < documents.length; i++) {
+	    while (next < documents.length && documents[next] < termDocuments[i])
+		result[next++] = new int[0];
+
+	    int count = readVarInt(positions, offset);
+	    if (next == documents.length || termDocuments[i] != documents[next]) {
+		for (int j = 0; j < count; j++)
+		    skipVarInt(positions, offset);
+		continue;
+	    }
+
+	    int[] documentPositions = new int[count];
+	    int position = 0;
+	    for (int j = 0; j < count; j++) {
+		position += readVarInt(positions, offset);
+		documentPositions[j] = position;
+	    }
+	    result[next++] = documentPositions;
+	}
+	while (next < documents.length)
+	    result[next++] = new int[0];
+	return result;
+    }
+
+    /**
+     * Returns the numbers of the occurrences of the term in the specified documents, without decoding the positions.
+     *
+     * @param termDocuments decoded postings list of the term
+     * @param positions encoded positions of the term
+     * @param documents ascending documents
+     * @return numbers of the occurrences of the term in each of the specified documents
+     */
+    static int[] decodeFrequencies(int[] termDocuments, byte[] positions, int[] documents) {
+	int[] result = new int[documents.length];
+	int[] offset = { 0 };
+	int next = 0;
+	for (int i = 0; i < termDocuments.length && next < documents.length; i++) {
+	    while (next < documents.length && documents[next] < termDocuments[i])
+		next++;
+
+	    int count = readVarInt(positions, offset);
+	    if (next < documents.length && termDocuments[i] == documents[next])
+		result[next++] = count;
+	    for (int j = 0; j < count; j++)
+		skipVarInt(positions, offset);
+	}
+	return result;
+    }
+
+    /**
+     * Returns the documents of the ascending list in the ranges - ascending non-overlapping pairs
+     * of the first document (inclusive) and the document after the last one (exclusive).
+     */
+    static int[] restrict(int[] documents, int[] ranges) {
+	int[] result = new int[documents.length];
+	int count = 0;
+	int start = 0;
+	for (int i = 0; i < ranges.length && start < documents.length; i += 2) {
+	    start = lowerBound(documents, start, ranges[i]);
+	    int end = lowerBound(documents, start, ranges[i + 1]);
+	    System.arraycopy(documents, start, result, count, end - start);
+	    count += end - start;
+	    start = end;
+	}
+	return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the index of the first document of the ascending list from the index <code>from</code> on
+     * not lower than the specified one.
+     */
+    private static int lowerBound(int[] documents, int from, int document) {
+	int index = Arrays.binarySearch(documents, from, documents.length, document);
+	return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Returns the documents of the first (shorter) ascending list found in the second one.
+     */
+    static int[] intersect(int[] shorter, int[] longer) {
+	int[] result = new int[shorter.length];
+	int count = 0;
+	int from = 0;
+	for (int document : shorter) {
+	    int index = Arrays.binarySearch(longer, from, longer.length, document);
+	    if (index >= 0) {
+		result[count++] = document;
+		from = index + 1;
+	    }
+	    else
+		from = -index - 1;
+	}
+	return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the documents found in any of the ascending lists, in ascending order.
+     */
+    static int[] union(int[] documents1, int[] documents2) {
+	int[] result = new int[documents1.length + documents2.length];
+	int count = 0;
+	int i = 0;
+	int j = 0;
+	while (i < documents1.length || j < documents2.length) {
+	    if (j == documents2.length || (i < documents1.length && documents1[i] < documents2[j]))
+		result[count++] = documents1[i++];
+	    else if (i == documents1.length || documents2[j] < documents1[i])
+		result[count++] = documents2[j++];
+	    else {
+		result[count++] = documents1[i++];
+		j++;
+	    }
+	}
+	return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the documents of the first ascending list not found in the second one.
+     */
+    static int[] difference(int[] documents, int[] excluded) {
+	int[] result = new int[documents.length];
+	int count = 0;
+	int j = 0;
+	for (int document : documents) {
+	    while (j < excluded.length && excluded[j] < document)
+		j++;
+	    if (j == excluded.length || excluded[j] != document)
+		result[count++] = document;
+	}
+	return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Writes the non-negative value as variable-length integer at the offset, returning the offset after it.
+     * There must be at least 5 bytes left.
+     */
+    static int writeVarInt(byte[] bytes, int offset, int value) {
+	while ((value & ~0x7F) != 0) {
+	    bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+	    value >>>= 7;
+	}
+	bytes[offset++] = (byte) value;
+	return offset;
+    }
+
+    private static int varIntLength(int value) {
+	int length = 1;
+	while ((value & ~0x7F) != 0) {
+	    value >>>= 7;
+	    length++;
+	}
+	return length;
+    }
+
+    /**
+     * Reads the variable-length integer at offset[0] and moves offset[0] after it.
+     */
+    static int readVarInt(byte[] bytes, int[] offset) {
+	int value = 0;
+	int shift = 0;
+	byte b;
+	do {
+	    b = bytes[offset[0]++];
+	    value |= (b & 0x7F) << shift;
+	    shift += 7;
+	} while ((b & 0x80) != 0);
+	return value;
+    }
+
+    /**
+     * Moves offset[0] after the variable-length integer at offset[0].
+     */
+    private static void skipVarInt(byte[] bytes, int[] offset) {
+	while ((bytes[offset[0]++] & 0x80) != 0)
+	    ;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.List;
+
+/**
+ * Query matching the documents containing any term starting with the prefix. The prefix is expanded
+ * to at most {@link #MAX_EXPANSIONS} terms of the index - the ones contained in the most documents,
+ * so even the short prefixes are searched fast.
+ */
+final class PrefixQuery extends MultiTermQuery {
+
+    private final String prefix;
+
+    PrefixQuery(String prefix) {
+	this.prefix = prefix;
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	return index.getTermsWithPrefix(prefix, MAX_EXPANSIONS);
+    }
+
+    @Override
+    public String toString() {
+	return prefix + "*";
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.List;
+
+/**
+ * Query evaluated on the postings lists of an {@link InvertedIndex}. Queries are created by {@link QueryParser}.
+ * Immutable, so it can be shared between threads.
+ */
+public abstract class Query {
+
+    /**
+     * Only the classes of this package can extend Query.
+     */
+    Query() {
+
+    }
+
+    /**
+     * Returns all the terms of the index this query matches, used to rank the matching documents.
+     *
+     * @param index searched index
+     * @return terms of this query
+     */
+    abstract List<String> getTerms(InvertedIndex index);
+
+    /**
+     * Returns the documents from the specified ranges matching this query, in ascending order.
+     * When the candidates aren't null, only the candidates are returned.
+     *
+     * @param index searched index
+     * @param ranges ascending non-overlapping pairs of the first searched document (inclusive)
+     *        and the document after the last searched one (exclusive)
+     * @param candidates ascending documents the result is restricted to or null
+     * @return ascending matching documents
+     */
+    abstract int[] search(InvertedIndex index, int[] ranges, int[] candidates);
+
+    /**
+     * Returns the estimate of the number of the documents matching this query, used to evaluate
+     * the most selective queries first.
+     *
+     * @param index searched index
+     * @return the highest possible number of the matching documents
+     */
+    abstract int getCost(InvertedIndex index);
+
+    /**
+     * Returns the spans of the terms matched by this query in the specified documents, used to highlight
+     * the matches. The spans of a document are the pairs of the positions of their first and last terms,
+     * ordered by the first positions, possibly overlapping.
+     *
+     * @param index searched index
+     * @param documents ascending documents matching this query
+     * @return the spans for each of the documents
+     */
+    abstract int[][] getMatchSpans(InvertedIndex index, int[] documents);
+
+}
@@ -0,0 +1,389 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.mnicky.bible4j.Utils;
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.Position;
+
+/**
+ * Parser of the search queries. The query consists of words, quoted phrases, operators and field filters:
+ * <ul>
+ * <li><code>son god</code> (or <code>son AND god</code>) matches the verses containing all the words</li>
+ * <li><code>"son of god"</code> matches the verses containing the words next to each other, in this order</li>
+ * <li><code>jesus NEAR/3 peter</code> matches the verses where the words are at most 3 words apart
+ * (NEAR/1 means next to each other), in any order; NEAR without the distance means NEAR/{@value #DEFAULT_NEAR_DISTANCE}.
+ * The operands of NEAR can be phrases too and NEAR operators can be chained.</li>
+ * <li><code>bless*</code> matches the verses containing any word starting with <code>bless</code>
+ * (at most {@value MultiTermQuery#MAX_EXPANSIONS} of the most frequent ones)</li>
+ * <li><code>beleive~</code> matches the verses containing any word at most 1 edit (insertion, deletion or substitution
+ * of a character) from the word for the words up to 4 characters, 2 edits for the longer ones; <code>beleive~1</code>
+ * specifies the highest number of the edits (at most {@value FuzzyQuery#MAX_DISTANCE})</li>
+ * <li><code>peter OR simon</code> matches the verses containing any of the operands</li>
+ * <li><code>love NOT hate</code> matches the verses containing <code>love</code> but not <code>hate</code>;
+ * the query consisting only of the excluded operands matches all the verses without them</li>
+ * <li><code>(peter OR simon) jesus</code> groups the operands</li>
+ * <li><code>book:john</code> matches the verses of the book, specified by its abbreviation or its name
+ * (e.g. <code>book:song_of_songs</code>); <code>version:kjv</code> matches the verses of the Bible version</li>
+ * </ul>
+ * NOT binds tighter than AND, which binds tighter than OR, so <code>a b OR c NOT d</code> means
+ * <code>(a AND b) OR (c AND NOT d)</code>. The query is compiled into a tree of the unions, intersections and differences
+ * of the postings lists, evaluated from the most selective operands.
+ * <p>
+ * The prefix and fuzzy words can be the operands of NEAR too, but not the parts of a phrase.
+ * The words are split into terms by the analyzer, so a word consisting of more terms (e.g. <code>don't</code>)
+ * is searched as a phrase (even when it ends with <code>*</code> or <code>~</code>). The operators must be in upper case
+ * and the field names in lower case, otherwise they're words.
+ */
+public final class QueryParser {
+
+    /**
+     * Distance of the operands of NEAR operator without specified distance.
+     */
+    public static final int DEFAULT_NEAR_DISTANCE = 5;
+
+    static final Pattern NEAR_OPERATOR = Pattern.compile("NEAR(?:/(\\d+))?");
+
+    private static final String AND = "AND";
+
+    private static final String OR = "OR";
+
+    private static final String NOT = "NOT";
+
+    private static final String VERSION_FIELD = "version";
+
+    /**
+     * Field filter - the name of the field and the value.
+     */
+    private static final Pattern FIELD = Pattern.compile("(book|" + VERSION_FIELD + "):(.+)");
+
+    /**
+     * Suffix of the word searched as a prefix.
+     */
+    private static final String WILDCARD = "*";
+
+    /**
+     * Suffix of the word searched fuzzily, with optional highest number of the edits.
+     */
+    private static final Pattern FUZZY_SUFFIX = Pattern.compile("~(\\d*)$");
+
+    private final Analyzer analyzer;
+
+    /**
+     * Constructs new QueryParser, splitting the words to terms by the specified analyzer.
+     *
+     * @param analyzer analyzer of the words, the same one the searched index was built with
+     */
+    public QueryParser(Analyzer analyzer) {
+	this.analyzer = analyzer;
+    }
+
+    /**
+     * Returns the analyzer splitting the words to terms.
+     *
+     * @return analyzer of the words
+     */
+    public Analyzer getAnalyzer() {
+	return analyzer;
+    }
+
+    /**
+     * Parses the query. Never fails - the characters without meaning in the query syntax are treated
+     * as the parts of the words, an unterminated phrase or group ends with the query, an unmatched closing
+     * parenthesis is ignored and an operator missing any of its operands is ignored. An unknown book matches
+     * no verses. The <code>version:</code> filters match all the verses (see {@link #parse(String, String)}).
+     *
+     * @param query query to parse
+     * @return parsed query
+     */
+    public Query parse(String query) {
+	return parse(query, null);
+    }
+
+    /**
+     * Parses the query searched in the index of the specified Bible version, so its <code>version:</code> filters
+     * match all the verses when they name this version (ignoring case) and no verses otherwise.
+     * Never fails, like {@link #parse(String)}.
+     *
+     * @param query query to parse
+     * @param version abbreviation of the Bible version of the searched index; null to match all the versions
+     * @return parsed query
+     */
+    public Query parse(String query, String version) {
+	Tokens tokens = new Tokens(tokenize(query), version);
+	List<Query> clauses = new ArrayList<Query>();
+	while (tokens.hasNext()) {
+	    if (tokens.peek().equals(")")) {
+		tokens.next();
+		continue;
+	    }
+	    Query clause = parseOr(tokens);
+	    if (clause != null)
+		clauses.add(clause);
+	}
+	return clauses.size() == 1 ? clauses.get(0) : new ConjunctionQuery(clauses);
+    }
+
+    /**
+     * Parses the operands joined by OR, up to the end of the group. Returns null if there are no operands.
+     */
+    private Query parseOr(Tokens tokens) {
+	List<Query> clauses = new ArrayList<Query>();
+	while (true) {
+	    Query clause = parseAnd(tokens);
+	    if (clause != null)
+		clauses.add(clause);
+	    if (!tokens.hasNext() || !tokens.peek().equals(OR))
+		break;
+	    tokens.next();
+	}
+
+	if (clauses.isEmpty())
+	    return null;
+	return clauses.size() == 1 ? clauses.get(0) : new DisjunctionQuery(clauses);
+    }
+
+    /**
+     * Parses the required and excluded operands, up to OR or the end of the group. Returns null if there are no operands.
+     */
+    private Query parseAnd(Tokens tokens) {
+	List<Query> required = new ArrayList<Query>();
+	List<Query> excluded = new ArrayList<Query>();
+	// the last operand, if it's required and can be the first operand of NEAR
+	SpanQuery previous = null;
+	boolean negated = false;
+	int nearDistance = -1;
+
+	while (tokens.hasNext() && !tokens.peek().equals(")") && !tokens.peek().equals(OR)) {
+	    String token = tokens.peek();
+	    Matcher near = NEAR_OPERATOR.matcher(token);
+	    if (token.equals(AND)) {
+		tokens.next();
+		continue;
+	    }
+	    if (token.equals(NOT)) {
+		tokens.next();
+		negated = !negated;
+		continue;
+	    }
+	    if (near.matches()) {
+		tokens.next();
+		nearDistance = near.group(1) != null ? parseDistance(near.group(1)) : DEFAULT_NEAR_DISTANCE;
+		continue;
+	    }
+
+	    Query clause = parsePrimary(tokens);
+	    if (clause == null)
+		continue;
+
+	    if (negated) {
+		excluded.add(clause);
+		previous = null;
+	    }
+	    else if (nearDistance >= 0 && previous != null && clause instanceof SpanQuery) {
+		required.remove(required.size() - 1);
+		previous = new NearQuery(previous, (SpanQuery) clause, nearDistance);
+		required.add(previous);
+	    }
+	    else {
+		required.add(clause);
+		previous = clause instanceof SpanQuery ? (SpanQuery) clause : null;
+	    }
+	    negated = false;
+	    nearDistance = -1;
+	}
+
+	if (required.isEmpty() && excluded.isEmpty())
+	    return null;
+	return required.size() == 1 && excluded.isEmpty() ? required.get(0) : new ConjunctionQuery(required, excluded);
+    }
+
+    /**
+     * Parses the group, the phrase, the field filter or the word. Returns null if it has no terms.
+     */
+    private Query parsePrimary(Tokens tokens) {
+	String token = tokens.next();
+	if (token.equals("(")) {
+	    Query group = parseOr(tokens);
+	    if (tokens.hasNext() && tokens.peek().equals(")"))
+		tokens.next();
+	    return group;
+	}
+	if (token.startsWith("\""))
+	    return toSpanQuery(analyzer.getTerms(token.substring(1)));
+
+	Matcher field = FIELD.matcher(token);
+	if (field.matches())
+	    return parseField(field.group(1), field.group(2), tokens.version);
+
+	String operand = token;
+	boolean prefix = operand.endsWith(WILDCARD);
+	boolean fuzzy = false;
+	String fuzzyDistance = "";
+	Matcher suffix = FUZZY_SUFFIX.matcher(operand);
+	if (suffix.find()) {
+	    fuzzy = true;
+	    fuzzyDistance = suffix.group(1);
+	    operand = operand.substring(0, suffix.start());
+	}
+
+	// the prefixes are not stemmed, a stem of a prefix isn't always a prefix of the stems
+	List<String> prefixTerms = prefix ? analyzer.getNormalizedTerms(operand) : null;
+	List<String> terms = analyzer.getTerms(operand);
+	if (prefix && prefixTerms.size() == 1)
+	    return new PrefixQuery(prefixTerms.get(0));
+	if (fuzzy && terms.size() == 1) {
+	    int distance = fuzzyDistance.length() > 0 ? Math.min(parseDistance(fuzzyDistance), FuzzyQuery.MAX_DISTANCE)
+		    : FuzzyQuery.getDefaultDistance(terms.get(0));
+	    return new FuzzyQuery(terms.get(0), distance);
+	}
+	return toSpanQuery(terms);
+    }
+
+    /**
+     * Returns the query matching the documents passing the field filter.
+     */
+    private static Query parseField(String name, String value, String version) {
+	if (name.equals(VERSION_FIELD)) {
+	    if (version == null || version.equalsIgnoreCase(value))
+		return new CodeRangeQuery(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	    return new DisjunctionQuery(Collections.<Query>emptyList());
+	}
+
+	BibleBook book = getBook(value);
+	if (book == null)
+	    return new DisjunctionQuery(Collections.<Query>emptyList());
+	return new CodeRangeQuery(new Position(book, 0, 0).getCode(),
+				  new Position(book, Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM).getCode());
+    }
+
+    /**
+     * Returns the Bible book with the abbreviation or the name, or null if there's no such book.
+     */
+    private static BibleBook getBook(String value) {
+	try {
+	    return Utils.getBibleBookNameByAbbr(value);
+	} catch (IllegalArgumentException e) {
+	    // not an abbreviation, try the name
+	}
+	try {
+	    return BibleBook.getBibleBookByName(value);
+	} catch (IllegalArgumentException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Splits the query into the words, the phrases (starting by the quote, without the closing one) and the parentheses.
+     */
+    private static List<String> tokenize(String query) {
+	List<String> tokens = new ArrayList<String>();
+	int i = 0;
+	while (i < query.length()) {
+	    char c = query.charAt(i);
+	    if (Character.isWhitespace(c))
+		i++;
+	    else if (c == '(' || c == ')') {
+		tokens.add(String.valueOf(c));
+		i++;
+	    }
+	    else if (c == '"') {
+		int end = query.indexOf('"', i + 1);
+		if (end < 0)
+		    end = query.length();
+		tokens.add(query.substring(i, end));
+		i = end + 1;
+	    }
+	    else {
+		int end = getWordEnd(query, i);
+		tokens.add(query.substring(i, end));
+		i = end;
+	    }
+	}
+	return tokens;
+    }
+
+    /**
+     * Returns the index after the word starting at the index - the word ends by a whitespace, a quote or a parenthesis.
+     */
+    static int getWordEnd(String query, int index) {
+	int end = index;
+	while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && "\"()".indexOf(query.charAt(end)) < 0)
+	    end++;
+	return end;
+    }
+
+    /**
+     * Returns true if the word is an operator - AND, OR, NOT or NEAR with optional distance.
+     *
+     * @param word word of the query
+     * @return true if the word is an operator
+     */
+    public static boolean isOperator(String word) {
+	return word.equals(AND) || word.equals(OR) || word.equals(NOT) || NEAR_OPERATOR.matcher(word).matches();
+    }
+
+    /**
+     * Returns true if the word is a field filter, e.g. <code>book:john</code>.
+     *
+     * @param word word of the query
+     * @return true if the word is a field filter
+     */
+    public static boolean isField(String word) {
+	return FIELD.matcher(word).matches();
+    }
+
+    private static int parseDistance(String distance) {
+	try {
+	    return Integer.parseInt(distance);
+	} catch (NumberFormatException e) {
+	    return Integer.MAX_VALUE;
+	}
+    }
+
+    /**
+     * Returns the query matching the terms or null if there are no terms.
+     */
+    private static SpanQuery toSpanQuery(List<String> terms) {
+	if (terms.isEmpty())
+	    return null;
+	if (terms.size() == 1)
+	    return new TermQuery(terms.get(0));
+	return new PhraseQuery(terms);
+    }
+
+    /**
+     * Tokens of the parsed query with the Bible version the query is parsed for.
+     */
+    private static final class Tokens {
+
+	private final List<String> tokens;
+
+	private final String version;
+
+	private int next = 0;
+
+	Tokens(List<String> tokens, String version) {
+	    this.tokens = tokens;
+	    this.version = version;
+	}
+
+	boolean hasNext() {
+	    return next < tokens.size();
+	}
+
+	String peek() {
+	    return tokens.get(next);
+	}
+
+	String next() {
+	    return tokens.get(next++);
+	}
+
+    }
+
+}
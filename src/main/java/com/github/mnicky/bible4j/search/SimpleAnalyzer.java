@@ -0,0 +1,53 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link Analyzer} splitting the text into the runs of letters and digits, converted to lower case.
+ */
+public final class SimpleAnalyzer implements Analyzer {
+
+    @Override
+    public String getName() {
+	return "simple";
+    }
+
+    @Override
+    public List<String> getNormalizedTerms(String text) {
+	return getTerms(text);
+    }
+
+    @Override
+    public int[] getTermBounds(String text) {
+	int[] bounds = new int[text.length() + 1];
+	int count = 0;
+	boolean inTerm = false;
+	for (int i = 0; i <= text.length(); i++) {
+	    boolean isTermChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+	    if (isTermChar != inTerm)
+		bounds[count++] = i;
+	    inTerm = isTermChar;
+	}
+	return Arrays.copyOf(bounds, count);
+    }
+
+    @Override
+    public List<String> getTerms(String text) {
+	List<String> terms = new ArrayList<String>();
+	int start = -1;
+	for (int i = 0; i <= text.length(); i++) {
+	    boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+	    if (inTerm && start < 0)
+		start = i;
+	    else if (!inTerm && start >= 0) {
+		terms.add(text.substring(start, i).toLowerCase(new Locale("en")));
+		start = -1;
+	    }
+	}
+	return terms;
+    }
+
+}
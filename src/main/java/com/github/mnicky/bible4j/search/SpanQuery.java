@@ -0,0 +1,95 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Arrays;
+
+/**
+ * Query matching the spans of consecutive terms of the documents. The spans of a document are encoded
+ * as the pairs of the positions of their first and last terms, ordered by the first positions.
+ * The documents not containing the terms needed by the query are ruled out by the postings lists first
+ * (see {@link #getCandidates(InvertedIndex, int[], int[])}), so the positions are decoded only for the remaining ones.
+ */
+abstract class SpanQuery extends Query {
+
+    /**
+     * Returns the documents from the ranges containing the terms needed by this query, in ascending order.
+     * When the candidates aren't null, only the candidates are returned. By default the documents containing
+     * all the terms of this query.
+     *
+     * @param index searched index
+     * @param ranges ranges of the searched documents (see {@link Query#search(InvertedIndex, int[], int[])})
+     * @param candidates ascending documents the result is restricted to or null
+     * @return ascending documents which can match this query
+     */
+    int[] getCandidates(InvertedIndex index, int[] ranges, int[] candidates) {
+	return index.getDocuments(getTerms(index), ranges, candidates);
+    }
+
+    /**
+     * Returns the spans matching this query in the specified documents, which are the candidates of this query.
+     *
+     * @param index searched index
+     * @param documents ascending documents
+     * @return the spans for each of the documents
+     */
+    abstract int[][] getSpans(InvertedIndex index, int[] documents);
+
+    @Override
+    int[] search(InvertedIndex index, int[] ranges, int[] candidates) {
+	int[] documents = getCandidates(index, ranges, candidates);
+	int[][] spans = getSpans(index, documents);
+
+	int[] result = new int[documents.length];
+	int count = 0;
+	for (int i = 0; i < documents.length; i++) {
+	    if (spans[i].length > 0)
+		result[count++] = documents[i];
+	}
+	return Arrays.copyOf(result, count);
+    }
+
+    @Override
+    int[][] getMatchSpans(InvertedIndex index, int[] documents) {
+	return getSpans(index, documents);
+    }
+
+    /**
+     * Returns the spans of both the span arrays for each document, ordered by their first positions.
+     */
+    static int[][] unionSpans(int[][] spans1, int[][] spans2) {
+	int[][] spans = new int[spans1.length][];
+	for (int d = 0; d < spans.length; d++) {
+	    spans[d] = Arrays.copyOf(spans1[d], spans1[d].length + spans2[d].length);
+	    System.arraycopy(spans2[d], 0, spans[d], spans1[d].length, spans2[d].length);
+	    sortSpans(spans[d]);
+	}
+	return spans;
+    }
+
+    /**
+     * Sorts the spans by their first positions (and by their last positions when the first ones are the same).
+     *
+     * @return the sorted spans
+     */
+    static int[] sortSpans(int[] spans) {
+	if (spans.length <= 2)
+	    return spans;
+	long[] pairs = new long[spans.length / 2];
+	for (int i = 0; i < pairs.length; i++)
+	    pairs[i] = ((long) spans[2 * i] << 32) | (spans[2 * i + 1] & 0xFFFFFFFFL);
+	Arrays.sort(pairs);
+	for (int i = 0; i < pairs.length; i++) {
+	    spans[2 * i] = (int) (pairs[i] >>> 32);
+	    spans[2 * i + 1] = (int) pairs[i];
+	}
+	return spans;
+    }
+
+    @Override
+    int getCost(InvertedIndex index) {
+	int cost = Integer.MAX_VALUE;
+	for (String term : getTerms(index))
+	    cost = Math.min(cost, index.getDocumentFrequency(term));
+	return cost;
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.github.mnicky.bible4j.search;
+
+/**
+ * Interface of classes reducing the inflected forms of the words of one language to the same term.
+ */
+interface Stemmer {
+
+    /**
+     * Returns the stem of the lower-cased term.
+     *
+     * @param term lower-cased term with diacritics
+     * @return stem of the term
+     */
+    String stem(String term);
+
+}
@@ -0,0 +1,47 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Query matching the documents containing one term.
+ */
+final class TermQuery extends SpanQuery {
+
+    private final String term;
+
+    TermQuery(String term) {
+	this.term = term;
+    }
+
+    @Override
+    List<String> getTerms(InvertedIndex index) {
+	return Collections.singletonList(term);
+    }
+
+    @Override
+    int[] search(InvertedIndex index, int[] ranges, int[] candidates) {
+	// the positions are not needed to match a single term
+	return getCandidates(index, ranges, candidates);
+    }
+
+    @Override
+    int[][] getSpans(InvertedIndex index, int[] documents) {
+	int[][] positions = index.getPositions(term, documents);
+	int[][] spans = new int[documents.length][];
+	for (int i = 0; i < documents.length; i++) {
+	    spans[i] = new int[positions[i].length * 2];
+	    for (int j = 0; j < positions[i].length; j++) {
+		spans[i][2 * j] = positions[i][j];
+		spans[i][2 * j + 1] = positions[i][j];
+	    }
+	}
+	return spans;
+    }
+
+    @Override
+    public String toString() {
+	return term;
+    }
+
+}
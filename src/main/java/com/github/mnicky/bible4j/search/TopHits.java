@@ -0,0 +1,116 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collector of the best scored documents of one or more indexes, keeping at most the specified number of them
+ * in a heap, so the memory and the time don't grow with the number of all the matching documents.
+ * The documents with the same score are ordered by their indexes (sources) and then by their numbers.
+ * Not thread-safe.
+ */
+public final class TopHits {
+
+    /**
+     * One scored document.
+     */
+    public static final class Hit {
+
+	private final float score;
+
+	private final int source;
+
+	private final int document;
+
+	private Hit(float score, int source, int document) {
+	    this.score = score;
+	    this.source = source;
+	    this.document = document;
+	}
+
+	public float getScore() {
+	    return score;
+	}
+
+	/**
+	 * Returns the number identifying the index the document is from.
+	 *
+	 * @return number of the index
+	 */
+	public int getSource() {
+	    return source;
+	}
+
+	public int getDocument() {
+	    return document;
+	}
+
+    }
+
+    /**
+     * Orders the hits from the best one.
+     */
+    private static final Comparator<Hit> BEST_FIRST = new Comparator<Hit>() {
+	@Override
+	public int compare(Hit hit1, Hit hit2) {
+	    if (hit1.score != hit2.score)
+		return hit1.score > hit2.score ? -1 : 1;
+	    if (hit1.source != hit2.source)
+		return hit1.source < hit2.source ? -1 : 1;
+	    return hit1.document < hit2.document ? -1 : (hit1.document == hit2.document ? 0 : 1);
+	}
+    };
+
+    private final int capacity;
+
+    /**
+     * Heap of the collected hits with the worst one on the top.
+     */
+    private final PriorityQueue<Hit> heap;
+
+    /**
+     * Constructs new TopHits keeping at most the specified number of hits.
+     *
+     * @param capacity the highest number of the kept hits, 0 for no limit
+     * @throws IllegalArgumentException when the capacity is negative
+     */
+    public TopHits(int capacity) {
+	if (capacity < 0)
+	    throw new IllegalArgumentException("Capacity must not be negative.");
+	this.capacity = capacity;
+	this.heap = new PriorityQueue<Hit>(capacity > 0 ? Math.min(capacity, 1024) : 1024, Collections.reverseOrder(BEST_FIRST));
+    }
+
+    /**
+     * Adds the scored document, unless there's already enough better ones.
+     *
+     * @param score score of the document
+     * @param source number identifying the index of the document
+     * @param document number of the document
+     */
+    public void add(float score, int source, int document) {
+	if (capacity > 0 && heap.size() >= capacity) {
+	    Hit worst = heap.peek();
+	    if (score < worst.score || (score == worst.score && (source > worst.source
+		    || (source == worst.source && document > worst.document))))
+		return;
+	    heap.poll();
+	}
+	heap.add(new Hit(score, source, document));
+    }
+
+    /**
+     * Returns the collected hits, from the best one.
+     *
+     * @return the best hits
+     */
+    public List<Hit> getHits() {
+	List<Hit> hits = new ArrayList<Hit>(heap);
+	Collections.sort(hits, BEST_FIRST);
+	return hits;
+    }
+
+}
@@ -0,0 +1,337 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Class computing the trigrams of the texts - all the triples of the consecutive characters, including the spaces
+ * and the punctuation - and the literal strings every match of a regular expression must contain, so the texts
+ * possibly matching the expression are the ones having all the trigrams of the literals.
+ * <p>
+ * The characters of the trigrams are compared case-insensitively, so the trigrams narrow the case-insensitive
+ * searches too. Each trigram is encoded as a long - the three characters in its lowest 48 bits.
+ */
+final class Trigrams {
+
+    /**
+     * This is a static library class, so cannot be instantiated.
+     */
+    private Trigrams() {
+
+    }
+
+    /**
+     * Returns the distinct trigrams of the text, in ascending order.
+     *
+     * @param text text
+     * @return encoded trigrams
+     */
+    static long[] of(String text) {
+	if (text.length() < 3)
+	    return new long[0];
+
+	long[] trigrams = new long[text.length() - 2];
+	long trigram = ((long) fold(text.charAt(0)) << 16) | fold(text.charAt(1));
+	for (int i = 2; i < text.length(); i++) {
+	    trigram = ((trigram << 16) | fold(text.charAt(i))) & 0xFFFFFFFFFFFFL;
+	    trigrams[i - 2] = trigram;
+	}
+	Arrays.sort(trigrams);
+
+	int count = 0;
+	for (int i = 0; i < trigrams.length; i++) {
+	    if (i == 0 || trigrams[i] != trigrams[i - 1])
+		trigrams[count++] = trigrams[i];
+	}
+	return Arrays.copyOf(trigrams, count);
+    }
+
+    /**
+     * Returns the character the same for all its upper-case and lower-case variants.
+     */
+    private static char fold(char c) {
+	return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Returns the literal strings found in every match of the pattern. The analysis is conservative - the literals
+     * inside the alternations, the optional parts and the character classes are left out, and no literals are
+     * returned for the patterns in the comments mode or with canonical equivalence.
+     *
+     * @param pattern regular expression
+     * @return literals of every match, possibly none
+     */
+    static List<String> getRequiredLiterals(Pattern pattern) {
+	if ((pattern.flags() & Pattern.LITERAL) != 0)
+	    return Collections.singletonList(pattern.pattern());
+	if ((pattern.flags() & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0)
+	    return Collections.emptyList();
+
+	List<String> literals = new ArrayList<String>();
+	if (!addRequiredLiterals(pattern.pattern(), literals))
+	    return Collections.emptyList();
+	return literals;
+    }
+
+    /**
+     * Adds the literals found in every match of the regular expression to the list. Returns false when
+     * the expression turns on the comments mode, so its literals can't be told.
+     */
+    private static boolean addRequiredLiterals(String regex, List<String> literals) {
+	if (hasAlternation(regex))
+	    return true;
+
+	StringBuilder run = new StringBuilder();
+	int i = 0;
+	while (i < regex.length()) {
+	    char c = regex.charAt(i);
+	    // whether the atom just passed is the last character of the run
+	    boolean literal = false;
+
+	    if (c == '\\') {
+		if (i + 1 == regex.length())
+		    break;
+		char next = regex.charAt(i + 1);
+		if (next == 'Q') {
+		    int end = regex.indexOf("\\E", i + 2);
+		    if (end < 0)
+			end = regex.length();
+		    String quoted = regex.substring(i + 2, end);
+		    run.append(quoted);
+		    literal = quoted.length() > 0;
+		    i = Math.min(regex.length(), end + 2);
+		}
+		else if (Character.isLetterOrDigit(next)) {
+		    flush(run, literals);
+		    i = skipEscape(regex, i);
+		}
+		else {
+		    run.append(next);
+		    literal = true;
+		    i += 2;
+		}
+	    }
+	    else if (c == '[') {
+		flush(run, literals);
+		i = skipClass(regex, i);
+	    }
+	    else if (c == '(') {
+		flush(run, literals);
+		int end = skipGroup(regex, i);
+		int contentStart = i + 1;
+		if (regex.startsWith("?", contentStart)) {
+		    if (regex.startsWith("?=", contentStart) || regex.startsWith("?!", contentStart)
+			    || regex.startsWith("?<=", contentStart) || regex.startsWith("?<!", contentStart)) {
+			// lookaround - matches no characters
+			i = end;
+			continue;
+		    }
+		    int flagsEnd = contentStart + 1;
+		    while (flagsEnd < end - 1 && regex.charAt(flagsEnd) != ':' && regex.charAt(flagsEnd) != ')'
+			    && regex.charAt(flagsEnd) != '<' && regex.charAt(flagsEnd) != '>')
+			flagsEnd++;
+		    String flags = regex.substring(contentStart + 1, flagsEnd);
+		    if (flags.indexOf('x') >= 0 && (flags.indexOf('-') < 0 || flags.indexOf('x') < flags.indexOf('-')))
+			return false;
+		    char kind = regex.charAt(flagsEnd);
+		    if (kind == ')') {
+			// flags of the rest of the expression
+			i = end;
+			continue;
+		    }
+		    if (kind == '<')
+			contentStart = regex.indexOf('>', flagsEnd) + 1;
+		    else
+			contentStart = flagsEnd + 1;
+		}
+		if (!isOptional(regex, end) && !addRequiredLiterals(regex.substring(contentStart, end - 1), literals))
+		    return false;
+		i = end;
+	    }
+	    else if (c == '.' || c == '^' || c == '$') {
+		flush(run, literals);
+		i++;
+	    }
+	    else {
+		run.append(c);
+		literal = true;
+		i++;
+	    }
+
+	    if (i < regex.length() && isQuantifier(regex.charAt(i))) {
+		if (literal && isOptional(regex, i))
+		    run.setLength(run.length() - 1);
+		flush(run, literals);
+		i = skipQuantifier(regex, i);
+	    }
+	}
+	flush(run, literals);
+	return true;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+	if (run.length() >= 3)
+	    literals.add(run.toString());
+	run.setLength(0);
+    }
+
+    /**
+     * Returns true if the expression has the alternation outside of its groups and character classes.
+     */
+    private static boolean hasAlternation(String regex) {
+	int i = 0;
+	while (i < regex.length()) {
+	    char c = regex.charAt(i);
+	    if (c == '|')
+		return true;
+	    else if (c == '\\')
+		i = regex.startsWith("\\Q", i) ? skipQuoted(regex, i) : i + 2;
+	    else if (c == '[')
+		i = skipClass(regex, i);
+	    else if (c == '(')
+		i = skipGroup(regex, i);
+	    else
+		i++;
+	}
+	return false;
+    }
+
+    private static boolean isQuantifier(char c) {
+	return c == '?' || c == '*' || c == '+' || c == '{';
+    }
+
+    /**
+     * Returns true if the quantifier at the index allows no occurrences of the preceding atom.
+     */
+    private static boolean isOptional(String regex, int index) {
+	if (index >= regex.length())
+	    return false;
+	char c = regex.charAt(index);
+	if (c == '?' || c == '*')
+	    return true;
+	if (c == '{') {
+	    int i = index + 1;
+	    while (i < regex.length() && regex.charAt(i) == '0')
+		i++;
+	    return i > index + 1 && (i == regex.length() || !Character.isDigit(regex.charAt(i)));
+	}
+	return false;
+    }
+
+    /**
+     * Returns the index after the quantifier (including its lazy or possessive suffix) at the index.
+     */
+    private static int skipQuantifier(String regex, int index) {
+	int i = index;
+	if (regex.charAt(i) == '{') {
+	    int end = regex.indexOf('}', i);
+	    i = end < 0 ? regex.length() : end + 1;
+	}
+	else
+	    i++;
+	if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+'))
+	    i++;
+	return i;
+    }
+
+    /**
+     * Returns the index after the escape sequence starting by the backslash followed by a letter or a digit at the index.
+     */
+    private static int skipEscape(String regex, int index) {
+	int i = index + 2;
+	switch (regex.charAt(index + 1)) {
+	    case 'x':
+		if (regex.startsWith("{", i))
+		    return skipTo(regex, i, '}');
+		return Math.min(regex.length(), i + 2);
+	    case 'u':
+		return Math.min(regex.length(), i + 4);
+	    case '0':
+		for (int j = 0; j < 3 && i < regex.length() && regex.charAt(i) >= '0' && regex.charAt(i) <= '7'; j++)
+		    i++;
+		return i;
+	    case 'p':
+	    case 'P':
+		if (regex.startsWith("{", i))
+		    return skipTo(regex, i, '}');
+		return Math.min(regex.length(), i + 1);
+	    case 'N':
+		return skipTo(regex, i, '}');
+	    case 'c':
+		return Math.min(regex.length(), i + 1);
+	    case 'k':
+		return skipTo(regex, i, '>');
+	    default:
+		if (Character.isDigit(regex.charAt(index + 1))) {
+		    while (i < regex.length() && Character.isDigit(regex.charAt(i)))
+			i++;
+		}
+		return i;
+	}
+    }
+
+    private static int skipTo(String regex, int index, char last) {
+	int end = regex.indexOf(last, index);
+	return end < 0 ? regex.length() : end + 1;
+    }
+
+    /**
+     * Returns the index after the quoted part starting by <code>\Q</code> at the index.
+     */
+    private static int skipQuoted(String regex, int index) {
+	int end = regex.indexOf("\\E", index + 2);
+	return end < 0 ? regex.length() : end + 2;
+    }
+
+    /**
+     * Returns the index after the character class starting at the index.
+     */
+    private static int skipClass(String regex, int index) {
+	int i = index + 1;
+	if (i < regex.length() && regex.charAt(i) == '^')
+	    i++;
+	if (i < regex.length() && regex.charAt(i) == ']')
+	    i++;
+	int depth = 1;
+	while (i < regex.length()) {
+	    char c = regex.charAt(i);
+	    if (c == '\\')
+		i = regex.startsWith("\\Q", i) ? skipQuoted(regex, i) : i + 2;
+	    else {
+		if (c == '[')
+		    depth++;
+		else if (c == ']' && --depth == 0)
+		    return i + 1;
+		i++;
+	    }
+	}
+	return regex.length();
+    }
+
+    /**
+     * Returns the index after the group starting at the index.
+     */
+    private static int skipGroup(String regex, int index) {
+	int i = index + 1;
+	int depth = 1;
+	while (i < regex.length()) {
+	    char c = regex.charAt(i);
+	    if (c == '\\')
+		i = regex.startsWith("\\Q", i) ? skipQuoted(regex, i) : i + 2;
+	    else if (c == '[')
+		i = skipClass(regex, i);
+	    else {
+		if (c == '(')
+		    depth++;
+		else if (c == ')' && --depth == 0)
+		    return i + 1;
+		i++;
+	    }
+	}
+	return regex.length();
+    }
+
+}
@@ -24,16 +24,43 @@ public interface BibleStorage {
     public boolean isStorageInitialized();
     
     //TODO: change createStorage() to return void
+    /**
+     * Creates the structures of this storage if they don't exist yet. When the storage is already
+     * initialized, upgrades it in place (e.g. creates the indexes missing in older storages) and returns null.
+     *
+     * @return numbers of updates of the statements creating the storage or null if it was already initialized
+     * @throws BibleStorageException when the storage could not be initialized
+     */
     int[] initializeStorage();
 
     void insertVerse(Verse verse);
 
+    /**
+     * Inserts all the specified verses in one transaction, together with the Bible books
+     * and positions they need. The Bible version of the verses must be already inserted.
+     *
+     * @param verses verses to insert
+     * @throws BibleStorageException when verses could not be inserted
+     */
+    void insertVerses(List<Verse> verses);
+
     void insertBibleVersion(BibleVersion version);
 
     void insertPosition(Position position);
 
     void insertBibleBook(BibleBook book);
 
+    /**
+     * Builds the search index of the verses of the specified Bible version and stores it with this storage,
+     * replacing the previous one. Inserting verses invalidates the index of their Bible version and the searches
+     * build the missing indexes themselves, so this only moves the work of building the index
+     * to a convenient time (e.g. to the end of the import of the Bible version).
+     *
+     * @param version Bible version to index
+     * @throws BibleStorageException when the index could not be built or stored
+     */
+    void indexBibleVersion(BibleVersion version);
+
     BibleVersion getBibleVersion(String abbr);
     
     List<BibleVersion> getAllBibleVersions();
@@ -47,9 +74,56 @@ public interface BibleStorage {
     
     //chapter is represented by Position object with ignored verse number information
     List<Verse> getChapter(Position chapter, BibleVersion version);
+
+    /**
+     * Passes the verses of the specified chapter to the handler, ordered by their positions,
+     * without collecting them in memory.
+     *
+     * @param chapter chapter (verse number is ignored)
+     * @param version Bible version
+     * @param handler handler of the verses
+     * @throws BibleStorageException when the verses could not be retrieved
+     */
+    void getChapter(Position chapter, BibleVersion version, ResultHandler<Verse> handler);
     
     List<Position> getChapterList(BibleVersion version);
 
+    /**
+     * Passes the chapters of the specified Bible version to the handler, ordered by their positions,
+     * without collecting them in memory.
+     *
+     * @param version Bible version
+     * @param handler handler of the chapters (with verse number 0)
+     * @throws BibleStorageException when the chapters could not be retrieved
+     */
+    void getChapterList(BibleVersion version, ResultHandler<Position> handler);
+
+    /**
+     * Returns all the verses of the specified Bible version from the position <code>from</code> to the position
+     * <code>to</code> (both inclusive), ordered by their positions. The passage can span more chapters and books.
+     * Verse number 0 of <code>to</code> means the end of its chapter, chapter number 0 of <code>to</code>
+     * means the end of its book.
+     *
+     * @param from the first position of the passage
+     * @param to the last position of the passage
+     * @param version Bible version
+     * @return verses of the passage
+     * @throws BibleStorageException when the passage could not be retrieved
+     */
+    List<Verse> getPassage(Position from, Position to, BibleVersion version);
+
+    /**
+     * Passes the verses of the passage to the handler, without collecting them in memory.
+     * The passage is specified as in {@link #getPassage(Position, Position, BibleVersion)}.
+     *
+     * @param from the first position of the passage
+     * @param to the last position of the passage
+     * @param version Bible version
+     * @param handler handler of the verses
+     * @throws BibleStorageException when the passage could not be retrieved
+     */
+    void getPassage(Position from, Position to, BibleVersion version, ResultHandler<Verse> handler);
+
     List<Verse> compareVerses(Position position, List<BibleVersion> versions);
 
     List<Verse> compareVerses(List<Position> positions, List<BibleVersion> versions);
@@ -68,14 +142,144 @@ public interface BibleStorage {
 
     List<Bookmark> getBookmarks();
 
+    /**
+     * Passes all the bookmarks to the handler, without collecting them in memory.
+     *
+     * @param handler handler of the bookmarks
+     * @throws BibleStorageException when the bookmarks could not be retrieved
+     */
+    void getBookmarks(ResultHandler<Bookmark> handler);
+
     List<Bookmark> getBookmarks(BibleVersion version);
+
+    /**
+     * Passes the bookmarks of the specified Bible version to the handler, without collecting them in memory.
+     *
+     * @param version Bible version
+     * @param handler handler of the bookmarks
+     * @throws BibleStorageException when the bookmarks could not be retrieved
+     */
+    void getBookmarks(BibleVersion version, ResultHandler<Bookmark> handler);
     
     List<Verse> searchVersesForText(String text);
+
+    /**
+     * Passes the verses containing the specified text to the handler, ordered by their Bible versions
+     * and positions, without collecting them in memory. The overloads with Bible book and Bible version
+     * restrict the search the same way as the methods returning lists.
+     *
+     * @param text text to search for
+     * @param handler handler of the found verses
+     * @throws BibleStorageException when the verses could not be searched
+     */
+    void searchVersesForText(String text, ResultHandler<Verse> handler);
     
     List<Verse> searchVersesForText(String text, BibleVersion version);
+
+    void searchVersesForText(String text, BibleVersion version, ResultHandler<Verse> handler);
     
     List<Verse> searchVersesForText(String text, BibleBook book);
+
+    void searchVersesForText(String text, BibleBook book, ResultHandler<Verse> handler);
     
     List<Verse> searchVersesForText(String text, BibleBook book, BibleVersion version);
 
+    void searchVersesForText(String text, BibleBook book, BibleVersion version, ResultHandler<Verse> handler);
+
+    /**
+     * Returns the verses matching the search query - ordered by their relevance to the text of the query
+     * when the query is ranked, otherwise by their Bible versions (in the order of the versions of the query,
+     * if specified) and positions.
+     *
+     * @param query search query
+     * @return verses matching the query
+     * @throws IllegalArgumentException when the query is a regular expression and it is not valid
+     * @throws BibleStorageException when the verses could not be searched
+     */
+    List<Verse> searchVerses(SearchQuery query);
+
+    /**
+     * Passes the verses matching the search query to the handler in the same order as {@link #searchVerses(SearchQuery)}
+     * returns them, without collecting them in memory. Only the found verses passed to the handler are retrieved.
+     *
+     * @param query search query
+     * @param handler handler of the found verses
+     * @throws IllegalArgumentException when the query is a regular expression and it is not valid
+     * @throws BibleStorageException when the verses could not be searched
+     */
+    void searchVerses(SearchQuery query, ResultHandler<Verse> handler);
+
+    /**
+     * Returns the verses matching the search query in the same order as {@link #searchVerses(SearchQuery)},
+     * with the offsets of the matches of the query in their texts, to highlight them. The offsets of the matched
+     * words are taken from the search indexes, the texts are not analyzed again.
+     *
+     * @param query search query
+     * @return verses matching the query with the offsets of the matches
+     * @throws IllegalArgumentException when the query is a regular expression and it is not valid
+     * @throws BibleStorageException when the verses could not be searched
+     */
+    List<VerseMatch> searchMatches(SearchQuery query);
+
+    /**
+     * Passes the verses matching the search query with the offsets of the matches to the handler in the same order
+     * as {@link #searchMatches(SearchQuery)} returns them, without collecting them in memory.
+     *
+     * @param query search query
+     * @param handler handler of the found verses
+     * @throws IllegalArgumentException when the query is a regular expression and it is not valid
+     * @throws BibleStorageException when the verses could not be searched
+     */
+    void searchMatches(SearchQuery query, ResultHandler<VerseMatch> handler);
+
+    /**
+     * Returns the numbers of the verses matching the search query by the Bible versions, books and testaments,
+     * counted in the search indexes without retrieving the verses (only the verses possibly matching the substring
+     * or regular expression query are retrieved). The offset, the limit and the ranking of the query are ignored.
+     *
+     * @param query search query
+     * @return numbers of the matching verses
+     * @throws IllegalArgumentException when the query is a regular expression and it is not valid
+     * @throws BibleStorageException when the verses could not be counted
+     */
+    SearchCounts countVerses(SearchQuery query);
+
+    /**
+     * Returns the text of the search query with the words not found in the searched Bible versions replaced
+     * by the most similar words which are found (at most two edits of a character away), if the corrected text
+     * matches some verses. Useful when the query matches no verses, e.g. because of a typo or an old spelling.
+     * Only the queries of words (see {@link SearchQuery.Mode#WORDS}) are corrected.
+     *
+     * @param query search query
+     * @return corrected text of the query or null if there's no correction matching some verses
+     * @throws BibleStorageException when the correction could not be searched
+     */
+    String suggestSearchText(SearchQuery query);
+
+    /**
+     * Returns the terms of the search indexes of the Bible versions starting with the prefix of a word,
+     * the ones found in the most verses first - the completions of the word being typed into a search box.
+     * The most frequent terms of the prefixes are computed with the indexes, so no verses are searched.
+     * The terms are normalized (e.g. lower case), for the languages with a stemmer they're the stems of the words.
+     *
+     * @param prefix prefix of a word
+     * @param limit the highest number of the returned terms (at most 10 are returned)
+     * @param versions Bible versions to complete the word from; all the stored ones if empty
+     * @return terms starting with the prefix, possibly none
+     * @throws BibleStorageException when the terms could not be retrieved
+     */
+    List<String> completeSearchTerm(String prefix, int limit, List<BibleVersion> versions);
+
+    /**
+     * Returns the terms of the search indexes of the Bible versions in the language starting with the prefix of a word,
+     * the ones found in the most verses first (see {@link #completeSearchTerm(String, int, List)}).
+     *
+     * @param prefix prefix of a word
+     * @param limit the highest number of the returned terms (at most 10 are returned)
+     * @param language language of the Bible versions to complete the word from (ignoring case); all the stored ones if null
+     * @return terms starting with the prefix, possibly none
+     * @throws BibleStorageException when the terms could not be retrieved
+     */
+    List<String> completeSearchTerm(String prefix, int limit, String language);
+
 }
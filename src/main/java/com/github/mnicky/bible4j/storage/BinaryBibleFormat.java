@@ -0,0 +1,47 @@
+package com.github.mnicky.bible4j.storage;
+
+/**
+ * Class defining the binary format of one Bible version, read by {@link MappedBibleStorage}.
+ * All the numbers are big-endian, all the strings are encoded in UTF-8.
+ * <p>
+ * The file consists of:
+ * <ul>
+ * <li>header: {@link #MAGIC} (int), {@link #FORMAT_VERSION} (int), name, abbreviation and language of the Bible version
+ * (each as unsigned short length followed by the bytes of the string) and the number of the verses (int)</li>
+ * <li>position index: codes of the positions of the verses (see {@link com.github.mnicky.bible4j.data.Position#getCode()}),
+ * in ascending order (int for each verse)</li>
+ * <li>text offsets: offset of the text of each verse in the text arena, followed by the length of the arena
+ * (int for each verse plus one)</li>
+ * <li>text arena: texts of the verses, in the order of their positions</li>
+ * </ul>
+ */
+public final class BinaryBibleFormat {
+
+    /**
+     * This is a static library class, so cannot be instantiated.
+     */
+    private BinaryBibleFormat() {
+
+    }
+
+    /**
+     * The first four bytes of the file ("B4J" followed by zero byte).
+     */
+    public static final int MAGIC = 0x42344A00;
+
+    /**
+     * Version of the format, changed whenever the format changes.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Extension of the files in this format.
+     */
+    public static final String FILE_EXTENSION = ".b4j";
+
+    /**
+     * Encoding of the strings.
+     */
+    public static final String ENCODING = "utf-8";
+
+}
@@ -1,5 +1,8 @@
 package com.github.mnicky.bible4j.storage;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -7,9 +10,18 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.h2.fulltext.FullText;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,27 +32,151 @@ import com.github.mnicky.bible4j.data.Bookmark;
 import com.github.mnicky.bible4j.data.Note;
 import com.github.mnicky.bible4j.data.Position;
 import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.search.Analyzer;
+import com.github.mnicky.bible4j.search.InvertedIndex;
+import com.github.mnicky.bible4j.search.LanguageAnalyzer;
 import static com.github.mnicky.bible4j.storage.H2DbNaming.*;
 
 /**
  * {@link BibleStorage} backed by <a href="http://h2database.com">H2 database</a>.
+ * Each operation borrows a connection from a pool of connections, so H2DbBibleStorage
+ * using a pool of more connections can be shared between threads.
  */
 public final class H2DbBibleStorage implements BibleStorage {
     
     private final static Logger logger = LoggerFactory.getLogger(AppRunner.AppLogger.class);
 
     /**
-     * Connection to H2 database.
+     * Pool of connections to H2 database.
      */
-    private final Connection dbConnection;
+    private final H2DbConnectionPool pool;
+
+    /**
+     * Id returned for Bible books, versions and coordinates that are not stored in the database.
+     * No row has this id, so queries using it find nothing and inserts using it fail.
+     */
+    private static final int NO_ID = -1;
+
+    /**
+     * Maximal number of positions looked up by one query, to keep the queries of long passages reasonably sized.
+     */
+    private static final int MAX_POSITIONS_PER_QUERY = 500;
+
+    /**
+     * Cache of ids of the Bible books stored in the database.
+     */
+    private final Map<BibleBook, Integer> bookIds = new ConcurrentHashMap<BibleBook, Integer>();
+
+    /**
+     * Cache of ids of the Bible versions stored in the database, by their lower-cased abbreviation.
+     */
+    private final Map<String, Integer> versionIds = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Cache of ids of the coordinates stored in the database, by the codes of their positions.
+     */
+    private final Map<Integer, Integer> coordIds = new ConcurrentHashMap<Integer, Integer>();
+
+    /**
+     * Cache of the search indexes of the Bible versions, by the ids of the versions.
+     */
+    private final Map<Integer, InvertedIndex> searchIndexes = new ConcurrentHashMap<Integer, InvertedIndex>();
+
+    /**
+     * Locks of the search indexes, by the ids of the versions. An index is built and deleted only under its lock,
+     * so it's built once by concurrent searches and a stale index is never cached after the verses changed.
+     */
+    private final ConcurrentMap<Integer, Object> searchIndexLocks = new ConcurrentHashMap<Integer, Object>();
 
     /**
      * Constructs new H2DbBibleStorage with specified connection to H2 database.
-     * 
+     * Such H2DbBibleStorage is not supposed to be shared between threads.
+     *
      * @param dbConnection conection to H2 database
      */
     public H2DbBibleStorage(Connection dbConnection) {
-	this.dbConnection = dbConnection;
+	this(new H2DbConnectionPool(dbConnection));
+    }
+
+    /**
+     * Constructs new H2DbBibleStorage with specified pool of connections to H2 database.
+     *
+     * @param pool pool of connections to H2 database
+     */
+    H2DbBibleStorage(H2DbConnectionPool pool) {
+	this.pool = pool;
+    }
+
+    /**
+     * Returns the id of the specified Bible book in the database or NO_ID if the book isn't stored.
+     */
+    private int getBookId(H2DbStatementCache statements, BibleBook book) throws SQLException {
+	Integer id = bookIds.get(book);
+	if (id != null)
+	    return id;
+
+	int bookId = querySingleId(statements, H2DbQuery.BOOK_ID, book.getName());
+	if (bookId != NO_ID)
+	    bookIds.put(book, bookId);
+	return bookId;
+    }
+
+    /**
+     * Returns the id of the Bible version with the specified abbreviation in the database or NO_ID if the version isn't stored.
+     */
+    private int getVersionId(H2DbStatementCache statements, String abbr) throws SQLException {
+	String key = abbr.toLowerCase(new Locale("en"));
+	Integer id = versionIds.get(key);
+	if (id != null)
+	    return id;
+
+	int versionId = querySingleId(statements, H2DbQuery.VERSION_ID, key);
+	if (versionId != NO_ID)
+	    versionIds.put(key, versionId);
+	return versionId;
+    }
+
+    /**
+     * Returns the id of the specified coordinates in the database or NO_ID if the coordinates aren't stored.
+     */
+    private int getCoordId(H2DbStatementCache statements, Position position) throws SQLException {
+	Integer key = position.getCode();
+	Integer id = coordIds.get(key);
+	if (id != null)
+	    return id;
+
+	int coordId = querySingleId(statements, H2DbQuery.COORD_ID, key);
+	if (coordId != NO_ID)
+	    coordIds.put(key, coordId);
+	return coordId;
+    }
+
+    private int querySingleId(H2DbStatementCache statements, H2DbQuery query, Object... params) throws SQLException {
+	ResultSet rs = null;
+	PreparedStatement st = null;
+	int id = NO_ID;
+	try {
+	    st = statements.get(query);
+	    for (int i = 0; i < params.length; i++)
+		st.setObject(i + 1, params[i]);
+	    rs = commitQuery(st);
+	    while (rs.next())
+		id = rs.getInt(1);
+
+	} finally {
+	    if (rs != null)
+		rs.close();
+	}
+	return id;
+    }
+
+    /**
+     * Reads the verse from the current row of the result set. The verse text is expected in the specified column,
+     * followed by the code of its position and the name, abbreviation and language of its Bible version.
+     */
+    private static Verse readVerse(ResultSet rs, int column) throws SQLException {
+	return new Verse(rs.getString(column), Position.fromCode(rs.getInt(column + 1)),
+			 new BibleVersion(rs.getString(column + 2), rs.getString(column + 3), rs.getString(column + 4)));
     }
 
     /**
@@ -51,7 +187,7 @@ public final class H2DbBibleStorage implements BibleStorage {
     @Override
     public void close() {
 	try {
-	    this.dbConnection.close();
+	    pool.close();
 	} catch (SQLException e) {
 	    logger.error("Exception caught when closing this BibleStorage:", this, e);
 	    throw new BibleStorageException("BibleStorage could not be closed", e);
@@ -75,7 +211,6 @@ public final class H2DbBibleStorage implements BibleStorage {
 		con.rollback();
 	    throw e;
 	} finally {
-		st.close();
 	    if (con != null)
 		con.setAutoCommit(true);
 	}
@@ -133,14 +268,13 @@ public final class H2DbBibleStorage implements BibleStorage {
 
 	return rows;
     }
-    
-    private boolean tableExists(String tableName) throws SQLException {
+
+    private boolean tableExists(H2DbStatementCache statements, String tableName) throws SQLException {
 	ResultSet rs = null;
 	PreparedStatement st = null;
 	int count = 0;
 	try {
-	    st = dbConnection
-		    .prepareStatement("SELECT COUNT(`TABLE_NAME`) FROM `INFORMATION_SCHEMA`.`TABLES` WHERE `TABLE_SCHEMA` = 'PUBLIC' AND `TABLE_NAME` = ?");
+	    st = statements.get(H2DbQuery.TABLE_COUNT);
 	    st.setString(1, tableName);
 	    rs = commitQuery(st);
 	    while (rs.next())
@@ -149,41 +283,69 @@ public final class H2DbBibleStorage implements BibleStorage {
 	} finally {
 	    if (rs != null)
 		rs.close();
-	    if (st != null)
-		st.close();
+	}
+	return (count > 0);
+    }
+
+    private boolean notNullColumnExists(H2DbStatementCache statements, String tableName, String columnName) throws SQLException {
+	ResultSet rs = null;
+	PreparedStatement st = null;
+	int count = 0;
+	try {
+	    st = statements.get(H2DbQuery.NOT_NULL_COLUMN_COUNT);
+	    st.setString(1, tableName);
+	    st.setString(2, columnName);
+	    rs = commitQuery(st);
+	    while (rs.next())
+		count = rs.getInt(1);
+
+	} finally {
+	    if (rs != null)
+		rs.close();
 	}
 	return (count > 0);
     }
     
     public boolean isStorageInitialized() {
-	try {	    
-	    if (tableExists(VERSIONS_BARE) && tableExists(BOOKS_BARE) && tableExists(COORDS_BARE)
-		    && tableExists(VERSES_BARE) && tableExists(NOTES_BARE) && tableExists(BKMARKS_BARE))
-	        return true;
-	    else
-	        return false;
+	H2DbStatementCache statements = null;
+	try {
+	    statements = pool.borrow();
+	    return isStorageInitialized(statements);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when checking if the storage is initialized", e);
 	    throw new BibleStorageException("Could not be checked whether the Bible storage is initialized.", e);
+	} finally {
+	    pool.release(statements);
 	}
     }
 
+    private boolean isStorageInitialized(H2DbStatementCache statements) throws SQLException {
+	return tableExists(statements, VERSIONS_BARE) && tableExists(statements, BOOKS_BARE) && tableExists(statements, COORDS_BARE)
+		&& tableExists(statements, VERSES_BARE) && tableExists(statements, NOTES_BARE) && tableExists(statements, BKMARKS_BARE);
+    }
+
     @Override
     public int[] initializeStorage() {
 
+	H2DbStatementCache statements = null;
 	int[] columns;
 
 	try {
-	    if (isStorageInitialized())
+	    statements = pool.borrow();
+	    if (isStorageInitialized(statements)) {
+		// upgrade storages created before the position codes, the indexes and the search indexes were introduced
+		addPositionCodes(statements);
+		createIndexes(statements);
+		createSearchIndexTable(statements);
+		dropFullText(statements);
 		return null;
+	    }
 	    
-	    Statement st = dbConnection.createStatement();
+	    Statement st = statements.getConnection().createStatement();
 
 	    // FIXME add CASCADE or RESTRICTED to foreign keys etc?
 	    // TODO add more UNIQUE constraints, CHECK etc... ?
 
-	    st.addBatch("CREATE ALIAS IF NOT EXISTS FT_INIT FOR \"org.h2.fulltext.FullText.init\";CALL FT_INIT();");
-
 	    st.addBatch("CREATE TABLE IF NOT EXISTS " + VERSIONS + " ("
 		    + VERSION_ID + " INT IDENTITY NOT NULL,"
 		    + VERSION_ABBR + " VARCHAR_IGNORECASE(50) NOT NULL UNIQUE,"
@@ -200,6 +362,7 @@ public final class H2DbBibleStorage implements BibleStorage {
 		    + COORD_BOOK + " INT NOT NULL,"
 		    + COORD_CHAPT + " INT NOT NULL,"
 		    + COORD_VERSE + " INT NOT NULL,"
+		    + COORD_CODE + " INT NOT NULL,"
 		    + "CONSTRAINT `coords_unique` UNIQUE ( " + COORD_BOOK + ", " + COORD_CHAPT + ", " + COORD_VERSE + ")," 
 		    + "FOREIGN KEY (" + COORD_BOOK + ") REFERENCES " + BOOKS + ")");
 
@@ -208,6 +371,7 @@ public final class H2DbBibleStorage implements BibleStorage {
 		    + VERSE_TEXT + " VARCHAR(4096) NOT NULL,"
 		    + VERSE_VERSION + " INT NOT NULL,"
 		    + VERSE_COORD + " INT NOT NULL,"
+		    + VERSE_CODE + " INT NOT NULL,"
 		    + "FOREIGN KEY (" + VERSE_VERSION + ") REFERENCES " + VERSIONS + ","
 		    + "FOREIGN KEY (" + VERSE_COORD + ") REFERENCES " + COORDS + ")");
 
@@ -224,104 +388,384 @@ public final class H2DbBibleStorage implements BibleStorage {
 		    + BKMARK_VERSE + " INT NOT NULL,"
 		    + "FOREIGN KEY (" + BKMARK_VERSE + ") REFERENCES " + VERSES + ")");
 
-	    // TODO make constants from strings
-	    st.addBatch("CALL FT_CREATE_INDEX('PUBLIC', '" + VERSES_BARE + "', 'TEXT');");
-
 	    columns = commitBatch(st);
 
+	    createIndexes(statements);
+	    createSearchIndexTable(statements);
+
 	} catch (SQLException e) {
 	    logger.error("Exception caught when initializing this BibleStorage: {}", this, e);
 	    throw new BibleStorageException("BibleStorage could not be initialized", e);
+	} finally {
+	    pool.release(statements);
 	}
 
 	return columns;
     }
 
+    /**
+     * Adds the columns with the codes of the positions to the coordinates and verses and fills them in,
+     * unless they're already filled in and not nullable. H2 commits each change of a table by itself,
+     * so an interrupted upgrade can't be rolled back - instead, it's finished by the next initialization.
+     */
+    private void addPositionCodes(H2DbStatementCache statements) throws SQLException {
+	if (notNullColumnExists(statements, COORDS_BARE, "CODE") && notNullColumnExists(statements, VERSES_BARE, "CODE"))
+	    return;
+
+	Connection con = statements.getConnection();
+	Statement st = con.createStatement();
+	st.addBatch("ALTER TABLE " + COORDS + " ADD COLUMN IF NOT EXISTS " + COORD_CODE + " INT");
+	st.addBatch("ALTER TABLE " + VERSES + " ADD COLUMN IF NOT EXISTS " + VERSE_CODE + " INT");
+	commitBatch(st);
+
+	// codes of the books can't be computed in SQL, as the ids of the books don't follow their order;
+	// the ids are resolved before the transaction starts, as their lookups commit
+	Map<BibleBook, Integer> books = new EnumMap<BibleBook, Integer>(BibleBook.class);
+	for (BibleBook book : BibleBook.values()) {
+	    int bookId = getBookId(statements, book);
+	    if (bookId != NO_ID)
+		books.put(book, bookId);
+	}
+
+	PreparedStatement coordSt = null;
+	st = null;
+	try {
+	    con.setAutoCommit(false);
+	    coordSt = con.prepareStatement("UPDATE " + COORDS + " SET " + COORD_CODE + " = ? + "
+		    + COORD_CHAPT + " * " + (Position.MAX_VERSE_NUM + 1) + " + " + COORD_VERSE
+		    + " WHERE " + COORD_BOOK + " = ? AND " + COORD_CODE + " IS NULL");
+	    for (Map.Entry<BibleBook, Integer> book : books.entrySet()) {
+		coordSt.setInt(1, new Position(book.getKey(), 0, 0).getCode());
+		coordSt.setInt(2, book.getValue());
+		coordSt.addBatch();
+	    }
+	    logger.debug("Executing SQL batch update: {}", coordSt);
+	    coordSt.executeBatch();
+
+	    st = con.createStatement();
+	    st.execute("UPDATE " + VERSES + " SET " + VERSE_CODE + " = (SELECT " + COORD_CODE_F + " FROM " + COORDS
+		    + " WHERE " + COORD_ID_F + " = " + VERSE_COORD_F + ") WHERE " + VERSE_CODE + " IS NULL");
+	    con.commit();
+	} catch (SQLException e) {
+	    logger.error("Exception caught when adding the position codes", e);
+	    con.rollback();
+	    throw e;
+	} finally {
+	    if (coordSt != null)
+		coordSt.close();
+	    if (st != null)
+		st.close();
+	    con.setAutoCommit(true);
+	}
+
+	// fails while the codes of some positions are unknown (e.g. of an unknown book), so the columns stay nullable
+	// and the upgrade is repeated by the next initialization
+	st = con.createStatement();
+	st.addBatch("ALTER TABLE " + COORDS + " ALTER COLUMN " + COORD_CODE + " SET NOT NULL");
+	st.addBatch("ALTER TABLE " + VERSES + " ALTER COLUMN " + VERSE_CODE + " SET NOT NULL");
+	commitBatch(st);
+    }
+
+    /**
+     * Creates the indexes used by the lookups of this storage, if they don't exist yet.
+     * The foreign keys (so e.g. notes by coordinates) and the unique constraint of coordinates
+     * (so coordinates by book and chapter) are indexed by H2 itself.
+     */
+    private void createIndexes(H2DbStatementCache statements) throws SQLException {
+	Statement st = statements.getConnection().createStatement();
+
+	// getVerse(), getVerses(), getPassage(), getChapter(), getChapterList() and insertBookmark()
+	st.addBatch("CREATE INDEX IF NOT EXISTS " + VERSES_VERSION_CODE_IDX + " ON " + VERSES
+		    + " (" + VERSE_VERSION + ", " + VERSE_CODE + ")");
+
+	// superseded by the index of the codes
+	st.addBatch("DROP INDEX IF EXISTS " + VERSES_VERSION_COORD_IDX);
+
+	// getCoordId() and getNotesForChapter()
+	st.addBatch("CREATE INDEX IF NOT EXISTS " + COORDS_CODE_IDX + " ON " + COORDS + " (" + COORD_CODE + ")");
+
+	// deleteBookmark()
+	st.addBatch("CREATE INDEX IF NOT EXISTS " + BKMARKS_NAME_IDX + " ON " + BKMARKS + " (" + BKMARK_NAME + ")");
+
+	commitBatch(st);
+    }
+
+    /**
+     * Creates the table of the search indexes, if it doesn't exist yet.
+     */
+    private void createSearchIndexTable(H2DbStatementCache statements) throws SQLException {
+	Statement st = statements.getConnection().createStatement();
+	st.addBatch("CREATE TABLE IF NOT EXISTS " + SEARCH_INDEXES + " ("
+		+ SEARCH_INDEX_VERSION + " INT NOT NULL PRIMARY KEY,"
+		+ SEARCH_INDEX_DATA + " BLOB NOT NULL,"
+		+ "FOREIGN KEY (" + SEARCH_INDEX_VERSION + ") REFERENCES " + VERSIONS + ")");
+	commitBatch(st);
+    }
+
+    /**
+     * Drops the H2 fulltext index used for searching by storages created before the search indexes were introduced.
+     */
+    private void dropFullText(H2DbStatementCache statements) throws SQLException {
+	ResultSet rs = null;
+	int count = 0;
+	try {
+	    PreparedStatement st = statements.get(H2DbQuery.SCHEMA_COUNT);
+	    st.setString(1, "FT");
+	    rs = commitQuery(st);
+	    while (rs.next())
+		count = rs.getInt(1);
+	} finally {
+	    if (rs != null)
+		rs.close();
+	}
+	if (count > 0)
+	    FullText.dropAll(statements.getConnection());
+    }
+
     @Override
     public void insertVerse(Verse verse) {
+	H2DbStatementCache statements = null;
 	try {
-	    PreparedStatement st = dbConnection
-		    .prepareStatement("INSERT INTO " + VERSES + " (" + VERSE_TEXT + ", " + VERSE_VERSION
-			    + ", " + VERSE_COORD + ") VALUES "
-			    + "( ?,"
-			    + "(SELECT DISTINCT " + VERSION_ID_F + " FROM " + VERSIONS
-					+ " WHERE " + VERSION_ABBR_F + " = ?),"
-			    + "(SELECT DISTINCT " + COORD_ID_F + " FROM " + COORDS
-					+ " WHERE " + COORD_CHAPT_F + " = ? AND "
-					+ COORD_BOOK_F + " = (SELECT DISTINCT " + BOOK_ID_F + " FROM " + BOOKS
-								+ " WHERE " + BOOK_NAME_F + " = ?) AND "
-								+ COORD_VERSE_F + " = ? ))");
+	    statements = pool.borrow();
+	    int versionId = getVersionId(statements, verse.getBibleVersion().getAbbr());
+	    int coordId = getCoordId(statements, verse.getPosition());
+
+	    PreparedStatement st = statements.get(H2DbQuery.INSERT_VERSE);
 	    st.setString(1, verse.getText());
-	    st.setString(2, verse.getBibleVersion().getAbbr());
-	    st.setInt(3, verse.getPosition().getChapterNum());
-	    st.setString(4, verse.getPosition().getBook().getName());
-	    st.setInt(5, verse.getPosition().getVerseNum());
+	    st.setInt(2, versionId);
+	    st.setInt(3, coordId);
+	    st.setInt(4, verse.getPosition().getCode());
 	    commitUpdate(st);
+	    deleteSearchIndex(statements, versionId);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when inserting the verse {}:", verse, e);
 	    throw new BibleStorageException("Verse could not be inserted", e);
+	} finally {
+	    pool.release(statements);
 	}
 
     }
 
+    @Override
+    public void insertVerses(List<Verse> verses) {
+	if (verses.isEmpty())
+	    return;
+
+	H2DbStatementCache statements = null;
+	PreparedStatement coordSt = null;
+	PreparedStatement verseSt = null;
+	Map<Integer, Integer> newCoordIds = new HashMap<Integer, Integer>();
+
+	try {
+	    statements = pool.borrow();
+	    // resolve the ids of books and versions before the transaction starts
+	    Map<BibleBook, Integer> books = new EnumMap<BibleBook, Integer>(BibleBook.class);
+	    int[] versions = new int[verses.size()];
+
+	    for (int i = 0; i < verses.size(); i++) {
+		BibleBook book = verses.get(i).getPosition().getBook();
+		if (!books.containsKey(book)) {
+		    if (getBookId(statements, book) == NO_ID)
+			insertBibleBook(statements, book);
+		    books.put(book, getBookId(statements, book));
+		}
+		versions[i] = getVersionId(statements, verses.get(i).getBibleVersion().getAbbr());
+	    }
+
+	    coordSt = statements.get(H2DbQuery.MERGE_COORD);
+	    verseSt = statements.get(H2DbQuery.INSERT_VERSE);
+
+	    for (Verse verse : verses) {
+		Position position = verse.getPosition();
+		if (coordIds.containsKey(position.getCode()))
+		    continue;
+		coordSt.setInt(1, books.get(position.getBook()));
+		coordSt.setInt(2, position.getChapterNum());
+		coordSt.setInt(3, position.getVerseNum());
+		coordSt.setInt(4, position.getCode());
+		coordSt.addBatch();
+	    }
+
+	    statements.getConnection().setAutoCommit(false);
+	    logger.debug("Executing SQL batch update: {}", coordSt);
+	    coordSt.executeBatch();
+
+	    for (int bookId : books.values())
+		loadCoordIds(statements, bookId, newCoordIds);
+
+	    for (int i = 0; i < verses.size(); i++) {
+		Integer key = verses.get(i).getPosition().getCode();
+		Integer coordId = coordIds.get(key);
+		if (coordId == null)
+		    coordId = newCoordIds.get(key);
+		verseSt.setString(1, verses.get(i).getText());
+		verseSt.setInt(2, versions[i]);
+		verseSt.setInt(3, coordId != null ? coordId : NO_ID);
+		verseSt.setInt(4, key);
+		verseSt.addBatch();
+	    }
+
+	    logger.debug("Executing SQL batch update: {}", verseSt);
+	    verseSt.executeBatch();
+
+	    Set<Integer> changedVersions = new HashSet<Integer>();
+	    for (int versionId : versions) {
+		if (changedVersions.add(versionId))
+		    deleteStoredSearchIndex(statements, versionId);
+	    }
+
+	    statements.getConnection().commit();
+	    coordIds.putAll(newCoordIds);
+
+	    // an index could have been built from the old verses until the new ones were committed
+	    for (int versionId : changedVersions)
+		deleteSearchIndex(statements, versionId);
+	    statements.getConnection().commit();
+
+	} catch (SQLException e) {
+	    logger.error("Exception caught when inserting {} verses", verses.size(), e);
+	    try {
+		if (statements != null)
+		    statements.getConnection().rollback();
+	    } catch (SQLException e1) {
+		logger.debug("Exception caught when rolling back", e1);
+	    }
+	    throw new BibleStorageException("Verses could not be inserted", e);
+	} finally {
+	    try {
+		if (coordSt != null)
+		    coordSt.clearBatch();
+		if (verseSt != null)
+		    verseSt.clearBatch();
+		if (statements != null)
+		    statements.getConnection().setAutoCommit(true);
+	    } catch (SQLException e) {
+		logger.debug("Exception caught when clearing the batches", e);
+	    }
+	    pool.release(statements);
+	}
+    }
+
+    /**
+     * Deletes the cached and the stored search index of the Bible version with the specified id, as the verses
+     * of the version changed. Waits for the index being built, so it's deleted too. Must be called once the changed
+     * verses are committed, otherwise the index could be built again from the old ones.
+     * Runs in the current transaction, or commits on its own when the connection is in auto-commit mode.
+     */
+    private void deleteSearchIndex(H2DbStatementCache statements, int versionId) throws SQLException {
+	synchronized (getSearchIndexLock(versionId)) {
+	    searchIndexes.remove(versionId);
+	    deleteStoredSearchIndex(statements, versionId);
+	}
+    }
+
+    /**
+     * Deletes the stored search index of the Bible version with the specified id, without waiting for its lock,
+     * so it can be deleted in the transaction changing the verses. Runs in the current transaction,
+     * or commits on its own when the connection is in auto-commit mode.
+     */
+    private void deleteStoredSearchIndex(H2DbStatementCache statements, int versionId) throws SQLException {
+	PreparedStatement st = statements.get(H2DbQuery.DELETE_SEARCH_INDEX);
+	st.setInt(1, versionId);
+	logger.debug("Executing SQL update: {}", st);
+	st.executeUpdate();
+    }
+
+    /**
+     * Puts the ids of all the coordinates of the book with the specified id (which are not cached yet) to the specified map.
+     * Runs in the current transaction.
+     */
+    private void loadCoordIds(H2DbStatementCache statements, int bookId, Map<Integer, Integer> ids) throws SQLException {
+	ResultSet rs = null;
+	PreparedStatement st = null;
+	try {
+	    st = statements.get(H2DbQuery.COORD_IDS_FOR_BOOK);
+	    st.setInt(1, bookId);
+	    rs = st.executeQuery();
+	    while (rs.next()) {
+		Integer key = rs.getInt(2);
+		if (!coordIds.containsKey(key))
+		    ids.put(key, rs.getInt(1));
+	    }
+	} finally {
+	    if (rs != null)
+		rs.close();
+	}
+    }
+
     @Override
     public void insertBibleBook(BibleBook book) {
+	H2DbStatementCache statements = null;
 	try {
-	    PreparedStatement st = dbConnection.prepareStatement("MERGE INTO " + BOOKS
-		    + "(" + BOOK_NAME + ", " + BOOK_DEUT + ") KEY (" + BOOK_NAME + ") VALUES ( ?, ?)");
-	    st.setString(1, book.getName());
-	    st.setBoolean(2, book.isDeutero());
-	    commitUpdate(st);
+	    statements = pool.borrow();
+	    insertBibleBook(statements, book);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when inserting this Bible book: {}",book, e);
 	    throw new BibleStorageException("Bible book could not be inserted", e);
+	} finally {
+	    pool.release(statements);
 	}
     }
 
+    private void insertBibleBook(H2DbStatementCache statements, BibleBook book) throws SQLException {
+	PreparedStatement st = statements.get(H2DbQuery.MERGE_BOOK);
+	st.setString(1, book.getName());
+	st.setBoolean(2, book.isDeutero());
+	bookIds.remove(book);
+	commitUpdate(st);
+    }
+
     @Override
     public void insertPosition(Position position) {
+	H2DbStatementCache statements = null;
 	try {
-	    PreparedStatement st = dbConnection
-		    .prepareStatement("MERGE INTO " + COORDS + "(" + COORD_BOOK + ", " + COORD_CHAPT + ", " + COORD_VERSE + ")"
-		                      + " KEY ( " + COORD_BOOK + ", " + COORD_CHAPT + ", " + COORD_VERSE + ")"
-		                      + " VALUES ((SELECT DISTINCT " + BOOK_ID_F + " FROM " + BOOKS + " WHERE " + BOOK_NAME_F
-		                      + " = ?), ?, ?)");
-	    st.setString(1, position.getBook().getName());
+	    statements = pool.borrow();
+	    int bookId = getBookId(statements, position.getBook());
+
+	    PreparedStatement st = statements.get(H2DbQuery.MERGE_COORD);
+	    st.setInt(1, bookId);
 	    st.setInt(2, position.getChapterNum());
 	    st.setInt(3, position.getVerseNum());
+	    st.setInt(4, position.getCode());
+	    coordIds.remove(position.getCode());
 	    commitUpdate(st);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when inserting this Bible position: {}", position, e);
 	    throw new BibleStorageException("Position could not be inserted", e);
+	} finally {
+	    pool.release(statements);
 	}
     }
 
     @Override
     public void insertBibleVersion(BibleVersion version) {
+	H2DbStatementCache statements = null;
 	try {
-	    PreparedStatement st = dbConnection.prepareStatement("MERGE INTO " + VERSIONS + " ("
-		    + VERSION_ABBR + ", " + VERSION_LANG + ", " + VERSION_NAME + ") KEY ( " + VERSION_ABBR + " ) VALUES ( ?, ?, ?)");
+	    statements = pool.borrow();
+	    PreparedStatement st = statements.get(H2DbQuery.MERGE_VERSION);
 	    st.setString(1, version.getAbbr());
 	    st.setString(2, version.getLanguage());
 	    st.setString(3, version.getName());
+	    versionIds.remove(version.getAbbr().toLowerCase(new Locale("en")));
 	    commitUpdate(st);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when inserting this Bible version: {}", version, e);
 	    throw new BibleStorageException("Bible version could not be inserted", e);
+	} finally {
+	    pool.release(statements);
 	}
     }
     
     @Override
     public BibleVersion getBibleVersion(String abbr) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
 	BibleVersion version = null;
 
 	try {
-	    st = dbConnection
-		    .prepareStatement("SELECT " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-				      + "FROM " + VERSIONS
-				      + "WHERE " + VERSION_ABBR_F + " = ? LIMIT 1");
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_VERSION);
 	    st.setString(1, abbr.toLowerCase(new Locale("en")));
 	    rs = commitQuery(st);
 	    while (rs.next())
@@ -334,26 +778,24 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
 	return version;
     }
     
     @Override
     public List<BibleVersion> getAllBibleVersions() {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
 	List<BibleVersion> versionList = new ArrayList<BibleVersion>();
 
 	try {
-	    st = dbConnection
-	    .prepareStatement("SELECT " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-			      + "FROM " + VERSIONS
-			      + "ORDER BY " + VERSION_ABBR_F);
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_ALL_VERSIONS);
 		
 		rs = commitQuery(st);
 
@@ -367,11 +809,10 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
 
 	return versionList;
@@ -380,28 +821,19 @@ public final class H2DbBibleStorage implements BibleStorage {
 
     @Override
     public Verse getVerse(Position position, BibleVersion version) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
 	Verse verse = null;
 
 	try {
-	    st = dbConnection
-		    .prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-		                      + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-				      + " FROM " + VERSIONS
-				      + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-				      + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-				      + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " "
-				      + " WHERE " + COORD_CHAPT_F + " = ? AND " + BOOK_NAME_F + " = ? AND "
-			    + VERSION_ABBR_F + " = ? AND " + COORD_VERSE_F + " = ? LIMIT 1");
-	    st.setInt(1, position.getChapterNum());
-	    st.setString(2, position.getBook().getName());
-	    st.setString(3, version.getAbbr());
-	    st.setInt(4, position.getVerseNum());
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_VERSE);
+	    st.setInt(1, getVersionId(statements, version.getAbbr()));
+	    st.setInt(2, position.getCode());
 	    rs = commitQuery(st);
 	    while (rs.next())
-		verse = new Verse(rs.getString(1), new Position(BibleBook.getBibleBookByName(rs
-			.getString(2)), rs.getInt(3), rs.getInt(4)), new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7)));
+		verse = readVerse(rs, 1);
 
 	} catch (SQLException e) {
 		logger.error("Exception caught when retrieving the verse for the position: {} and Bible version: {}", new Object[] {position, version, e});    
@@ -410,85 +842,123 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
 	return verse;
     }
 
     @Override
     public List<Verse> getVerses(List<Position> positions, BibleVersion version) {
+	try {
+	    return fetchVerses(positions, Collections.singletonList(version));
+	} catch (SQLException e) {
+	    logger.error("Exception caught when retrieving the verses for the positions: {} and Bible version: {}", new Object[] {positions, version, e});
+	    throw new BibleStorageException("Verses could not be retrieved", e);
+	}
+    }
+
+    /**
+     * Retrieves the verses for all the combinations of the specified positions and Bible versions
+     * using one query per MAX_POSITIONS_PER_QUERY positions. The verses are ordered by the Bible versions
+     * first and by the positions second, both in the order they are specified in.
+     */
+    private List<Verse> fetchVerses(List<Position> positions, List<BibleVersion> versions) throws SQLException {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
-	PreparedStatement st = null;
 	List<Verse> verseList = new ArrayList<Verse>();
 
+	if (positions.isEmpty() || versions.isEmpty())
+	    return verseList;
+
+	final Map<String, Integer> versionOrder = new HashMap<String, Integer>();
+	for (BibleVersion version : versions) {
+	    String key = version.getAbbr().toLowerCase(new Locale("en"));
+	    if (!versionOrder.containsKey(key))
+		versionOrder.put(key, versionOrder.size());
+	}
+
+	final Map<Position, Integer> positionOrder = new HashMap<Position, Integer>();
 	for (Position position : positions) {
+	    if (!positionOrder.containsKey(position))
+		positionOrder.put(position, positionOrder.size());
+	}
 
-	    try {
-		st = dbConnection
-		.prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-		                      + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-				      + " FROM " + VERSIONS
-				      + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-				      + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-				      + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " "
-				      + " WHERE " + COORD_CHAPT_F + " = ? AND " + BOOK_NAME_F + " = ? AND "
-			    + VERSION_ABBR_F + " = ? AND " + COORD_VERSE_F + " = ? LIMIT 1");
-		st.setInt(1, position.getChapterNum());
-		st.setString(2, position.getBook().getName());
-		st.setString(3, version.getAbbr());
-		st.setInt(4, position.getVerseNum());
+	try {
+	    statements = pool.borrow();
+
+	    Object[] versionIds = new Object[versions.size()];
+	    for (int i = 0; i < versions.size(); i++)
+		versionIds[i] = getVersionId(statements, versions.get(i).getAbbr());
+
+	    PreparedStatement st = statements.get(H2DbQuery.GET_VERSES);
+
+	    for (int from = 0; from < positions.size(); from += MAX_POSITIONS_PER_QUERY) {
+		List<Position> chunk = positions.subList(from, Math.min(from + MAX_POSITIONS_PER_QUERY, positions.size()));
+		Object[] codes = new Object[chunk.size()];
+		for (int i = 0; i < chunk.size(); i++)
+		    codes[i] = chunk.get(i).getCode();
+
+		st.setObject(1, versionIds);
+		st.setObject(2, codes);
 		rs = commitQuery(st);
 		while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
+		    verseList.add(readVerse(rs, 1));
+		rs.close();
+		rs = null;
+	    }
 
+	} finally {
+	    try {
+		if (rs != null)
+		    rs.close();
 	    } catch (SQLException e) {
-		logger.error("Exception caught when retrieving the verse for the position: {} and Bible version: {}", new Object[] {position, version, e});    
-		throw new BibleStorageException("Verses could not be retrieved", e);
-	    } finally {
-		try {
-		    if (rs != null)
-			rs.close();
-		    if (st != null)
-			st.close();
-		} catch (SQLException e) {
-		    logger.debug("Exception caught when closing", e);
-		}
+		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
 
+	Collections.sort(verseList, new Comparator<Verse>() {
+	    @Override
+	    public int compare(Verse v1, Verse v2) {
+		int byVersion = versionOrder.get(v1.getBibleVersion().getAbbr().toLowerCase(new Locale("en")))
+			- versionOrder.get(v2.getBibleVersion().getAbbr().toLowerCase(new Locale("en")));
+		if (byVersion != 0)
+		    return byVersion;
+		return positionOrder.get(v1.getPosition()) - positionOrder.get(v2.getPosition());
+	    }
+	});
+
 	return verseList;
     }
     
     //chapter is represented by Position object with ignored verse number information
     @Override
     public List<Verse> getChapter(Position chapter, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	getChapter(chapter, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getChapter(Position chapter, BibleVersion version, ResultHandler<Verse> handler) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
-	List<Verse> verseList = new ArrayList<Verse>();
 
 	    try {
-		st = dbConnection
-			.prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-			                      + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-					      + " FROM " + VERSIONS
-					      + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-					      + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-					      + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " "
-					      + "WHERE " + COORD_CHAPT_F + " = ? AND " + BOOK_NAME_F + " = ? AND " + VERSION_ABBR_F + " = ?");
-		st.setInt(1, chapter.getChapterNum());
-		st.setString(2, chapter.getBook().getName());
-		st.setString(3, version.getAbbr());
+		statements = pool.borrow();
+		st = statements.get(H2DbQuery.GET_PASSAGE);
+		st.setInt(1, getVersionId(statements, version.getAbbr()));
+		st.setInt(2, new Position(chapter.getBook(), chapter.getChapterNum(), 0).getCode());
+		st.setInt(3, new Position(chapter.getBook(), chapter.getChapterNum(), Position.MAX_VERSE_NUM).getCode());
 		rs = commitQuery(st);
-		while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
+		while (rs.next()) {
+		    if (!handler.handle(readVerse(rs, 1)))
+			break;
+		}
 
 	    } catch (SQLException e) {
 		logger.error("Exception caught when retrieving the verses for the chapter: {} and Bible version: {}", new Object[] {chapter, version, e});
@@ -497,37 +967,37 @@ public final class H2DbBibleStorage implements BibleStorage {
 		try {
 		    if (rs != null)
 		    rs.close();
-		    if (st != null)
-			st.close();
 		} catch (SQLException e) {
 		    logger.debug("Exception caught when closing", e);
 		}
+		pool.release(statements);
 	    }
-
-	return verseList;
     }
 
     @Override
     public List<Position> getChapterList(BibleVersion version) {
+	ResultCollector<Position> collector = new ResultCollector<Position>();
+	getChapterList(version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getChapterList(BibleVersion version, ResultHandler<Position> handler) {
+	H2DbStatementCache statements = null;
 	PreparedStatement st = null;
 	ResultSet rs = null;
-	List<Position> chapterList = new ArrayList<Position>();
 
 	try {
-	    st = dbConnection
-		    .prepareStatement("SELECT DISTINCT " + BOOK_NAME_F + ", " + COORD_CHAPT_F
-				    + "FROM " + VERSIONS
-				    + "INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-				    + "INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-				    + "INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " "
-				    + "WHERE " + VERSION_ABBR_F + " = ?");
-	    	st.setString(1, version.getAbbr());
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_CHAPTER_LIST);
+	    	st.setInt(1, getVersionId(statements, version.getAbbr()));
 		
 		rs = commitQuery(st);
 
-		while (rs.next())
-		    chapterList.add(new Position(BibleBook.getBibleBookByName(rs.getString(1)),
-		                                 rs.getInt(2), 0));
+		while (rs.next()) {
+		    if (!handler.handle(Position.fromCode(rs.getInt(1))))
+			break;
+		}
 
 	} catch (SQLException e) {
 	    logger.error("Exception caught when retrieving the chapters for Bible version: {}", version, e);
@@ -536,140 +1006,98 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
-	
-	Collections.sort(chapterList);
-
-	return chapterList;
     }
 
 
     @Override
-    public List<Verse> compareVerses(Position position, List<BibleVersion> versions) {
-	PreparedStatement st = null;
+    public List<Verse> getPassage(Position from, Position to, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	getPassage(from, to, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getPassage(Position from, Position to, BibleVersion version, ResultHandler<Verse> handler) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
-	List<Verse> verseList = new ArrayList<Verse>();
 
 	try {
-	    st = dbConnection
-		    .prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-		                      + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-				      + " FROM " + VERSIONS
-				      + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-				      + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-				      + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " "
-				      + " WHERE " + COORD_CHAPT_F + " = ? AND " + BOOK_NAME_F + " = ? AND "
-				    + VERSION_ABBR_F + " = ? AND " + COORD_VERSE_F + " = ? LIMIT 1");
-	    for (BibleVersion version : versions) {
-
-		st.setInt(1, position.getChapterNum());
-		st.setString(2, position.getBook().getName());
-		st.setString(3, version.getAbbr());
-		st.setInt(4, position.getVerseNum());
+	    statements = pool.borrow();
 
-		rs = commitQuery(st);
-
-		while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
+	    Position last;
+	    if (to.getChapterNum() == 0)
+		last = new Position(to.getBook(), Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM);
+	    else if (to.getVerseNum() == 0)
+		last = new Position(to.getBook(), to.getChapterNum(), Position.MAX_VERSE_NUM);
+	    else
+		last = to;
 
+	    PreparedStatement st = statements.get(H2DbQuery.GET_PASSAGE);
+	    st.setInt(1, getVersionId(statements, version.getAbbr()));
+	    st.setInt(2, from.getCode());
+	    st.setInt(3, last.getCode());
+	    rs = commitQuery(st);
+	    while (rs.next()) {
+		if (!handler.handle(readVerse(rs, 1)))
+		    break;
 	    }
 
 	} catch (SQLException e) {
-		logger.error("Exception caught when retrieving the verses for the position: {} and Bible versions: {}", new Object[] {position, versions, e});    
-	    throw new BibleStorageException("Verses could not be retrieved", e);
+	    logger.error("Exception caught when retrieving the passage from: {} to: {} in Bible version: {}", new Object[] {from, to, version, e});
+	    throw new BibleStorageException("Passage could not be retrieved", e);
 	} finally {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
+    }
 
-	return verseList;
+    @Override
+    public List<Verse> compareVerses(Position position, List<BibleVersion> versions) {
+	try {
+	    return fetchVerses(Collections.singletonList(position), versions);
+	} catch (SQLException e) {
+	    logger.error("Exception caught when retrieving the verses for the position: {} and Bible versions: {}", new Object[] {position, versions, e});
+	    throw new BibleStorageException("Verses could not be retrieved", e);
+	}
     }
 
     @Override
     public List<Verse> compareVerses(List<Position> positions, List<BibleVersion> versions) {
-	ResultSet rs = null;
-	PreparedStatement st = null;
-	List<Verse> verseList = new ArrayList<Verse>();
-
-	for (BibleVersion version : versions) {
-	    for (Position position : positions) {
-		try {
-		    st = dbConnection
-			    .prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-			                      + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-					      + " FROM " + VERSIONS
-					      + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-					      + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-					      + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " "
-					      + " WHERE " + COORD_CHAPT_F + " = ? AND " + BOOK_NAME_F + " = ? "
-					      + " AND " + VERSION_ABBR_F + " = ? AND " + COORD_VERSE_F + " = ? LIMIT 1");
-		    st.setInt(1, position.getChapterNum());
-		    st.setString(2, position.getBook().getName());
-		    st.setString(3, version.getAbbr());
-		    st.setInt(4, position.getVerseNum());
-		    rs = commitQuery(st);
-		    while (rs.next())
-			    verseList.add(new Verse(rs.getString(1),
-			                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-			                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
-
-		} catch (SQLException e) {
-			logger.error("Exception caught when retrieving the verse for the position: {} and Bible version: {}", new Object[] {position, version, e});    
-		    throw new BibleStorageException("Verses could not be retrieved", e);
-		} finally {
-		    try {
-			if (rs != null)
-			    rs.close();
-			if (st != null)
-			    st.close();
-		    } catch (SQLException e) {
-			logger.debug("Exception caught when closing", e);
-		    }
-		}
-	    }
+	try {
+	    return fetchVerses(positions, versions);
+	} catch (SQLException e) {
+	    logger.error("Exception caught when retrieving the verses for the positions: {} and Bible versions: {}", new Object[] {positions, versions, e});
+	    throw new BibleStorageException("Verses could not be retrieved", e);
 	}
-
-	return verseList;
     }
 
     @Override
     public void insertBookmark(Bookmark bookmark) {
+	H2DbStatementCache statements = null;
 	try {
-	    PreparedStatement st = dbConnection.prepareStatement(
-		    "INSERT INTO " + BKMARKS
-			    + "(" + BKMARK_VERSE + ", " + BKMARK_NAME + ") VALUES"
-			    + "((SELECT DISTINCT " + VERSE_ID_F + " FROM " + VERSES + " WHERE "
-					+ VERSE_VERSION_F + " = (SELECT DISTINCT " + VERSION_ID_F + " FROM " + VERSIONS + " WHERE "
-									+ VERSION_ABBR_F + " = ?) AND "
-					+ VERSE_COORD_F + " = (SELECT DISTINCT " + COORD_ID_F + " FROM " + COORDS + " WHERE"
-									+ COORD_BOOK_F + " = (SELECT DISTINCT "
-											+ BOOK_ID_F + " FROM " + BOOKS + " WHERE "
-											+ BOOK_NAME_F + " = ?) AND "
-									+ COORD_CHAPT_F + " = ? AND "
-									+ COORD_VERSE_F + " = ?))" + ", ?)");
-
-	    st.setString(1, bookmark.getVerse().getBibleVersion().getAbbr());
-	    st.setString(2, bookmark.getVerse().getPosition().getBook().getName());
-	    st.setInt(3, bookmark.getVerse().getPosition().getChapterNum());
-	    st.setInt(4, bookmark.getVerse().getPosition().getVerseNum());
-	    st.setString(5, bookmark.getName());
+	    statements = pool.borrow();
+	    int versionId = getVersionId(statements, bookmark.getVerse().getBibleVersion().getAbbr());
+	    PreparedStatement st = statements.get(H2DbQuery.INSERT_BOOKMARK);
+
+	    st.setInt(1, versionId);
+	    st.setInt(2, bookmark.getVerse().getPosition().getCode());
+	    st.setString(3, bookmark.getName());
 	    commitUpdate(st);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when inserting the bookmark: {}", bookmark, e);
 	    throw new BibleStorageException("Bookmark could not be inserted", e);
+	} finally {
+	    pool.release(statements);
 	}
 
     }
@@ -677,40 +1105,43 @@ public final class H2DbBibleStorage implements BibleStorage {
     //TODO add unit test
     @Override
     public int deleteBookmark(String bookmarkName) {
+	H2DbStatementCache statements = null;
 	int bookmarksDeleted = 0;
 	try {
-	    PreparedStatement st = dbConnection
-			    .prepareStatement("DELETE FROM " + BKMARKS + " WHERE " + BKMARK_NAME_F + " = ?");
+	    statements = pool.borrow();
+	    PreparedStatement st = statements.get(H2DbQuery.DELETE_BOOKMARK);
 	    st.setString(1, bookmarkName);
 	    bookmarksDeleted = commitUpdate(st);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when deleting the bookmark with name: {}",bookmarkName, e);
 	    throw new BibleStorageException("Bookmark could not be deleted", e);
+	} finally {
+	    pool.release(statements);
 	}
 	return bookmarksDeleted;
     }
 
     @Override
     public List<Bookmark> getBookmarks() {
+	ResultCollector<Bookmark> collector = new ResultCollector<Bookmark>();
+	getBookmarks(collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getBookmarks(ResultHandler<Bookmark> handler) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
-	List<Bookmark> bookmarkList = new ArrayList<Bookmark>();
 
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + BKMARK_NAME_F + ", " + VERSE_TEXT_F + ", " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", "
-				+ VERSION_LANG_F + ", " + COORD_VERSE_F + ", " + COORD_CHAPT_F + ", " + BOOK_NAME_F
-				+ "FROM " + BKMARKS
-					    + "INNER JOIN " + VERSES + " ON " + BKMARK_VERSE_F + " = " + VERSE_ID_F + " "
-					    + "INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-					    + "INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-					    + "INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F);
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_BOOKMARKS);
 	    rs = commitQuery(st);
-	    while (rs.next())
-		bookmarkList.add(new Bookmark(rs.getString(1),
-		                              new Verse(rs.getString(2),
-		                                        new Position(BibleBook.getBibleBookByName(rs.getString(8)), rs.getInt(7), rs.getInt(6)),
-		                                        new BibleVersion(rs.getString(3), rs.getString(4), rs.getString(5)))));
+	    while (rs.next()) {
+		if (!handler.handle(new Bookmark(rs.getString(1), readVerse(rs, 2))))
+		    break;
+	    }
 
 	} catch (SQLException e) {
 	    logger.error("Exception caught when retrieving all the bookmarks", e);
@@ -719,39 +1150,35 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
-
-	return bookmarkList;
     }
 
     @Override
     public List<Bookmark> getBookmarks(BibleVersion version) {
+	ResultCollector<Bookmark> collector = new ResultCollector<Bookmark>();
+	getBookmarks(version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getBookmarks(BibleVersion version, ResultHandler<Bookmark> handler) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
-	List<Bookmark> bookmarkList = new ArrayList<Bookmark>();
 
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + BKMARK_NAME_F + ", " + VERSE_TEXT_F + ", " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", "
-						+ VERSION_LANG_F + ", " + COORD_VERSE_F + ", " + COORD_CHAPT_F + ", " + BOOK_NAME_F
-						+ "FROM " + BKMARKS
-						+ "INNER JOIN " + VERSES + " ON " + BKMARK_VERSE_F + " = " + VERSE_ID_F + " "
-						+ "INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-						+ "INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-						+ "INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F
-						+ "WHERE " + VERSION_ABBR_F + " = ?");
-	    st.setString(1, version.getAbbr());
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_BOOKMARKS_FOR_VERSION);
+	    st.setInt(1, getVersionId(statements, version.getAbbr()));
 	    rs = commitQuery(st);
-	    while (rs.next())
-		bookmarkList.add(new Bookmark(rs.getString(1),
-		                              new Verse(rs.getString(2),
-		                                        new Position(BibleBook.getBibleBookByName(rs.getString(8)), rs.getInt(7), rs.getInt(6)),
-		                                        new BibleVersion(rs.getString(3), rs.getString(4), rs.getString(5)))));
+	    while (rs.next()) {
+		if (!handler.handle(new Bookmark(rs.getString(1), readVerse(rs, 2))))
+		    break;
+	    }
 
 	} catch (SQLException e) {
 	    logger.error("Exception caught when retrieving the bookmarks for the Bible version: {}", version, e);
@@ -760,38 +1187,31 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
-
-	return bookmarkList;
     }
 
     @Override
     public void insertNote(Note note) {
+	H2DbStatementCache statements = null;
 	try {
-	    PreparedStatement st = dbConnection.prepareStatement(
-		    "INSERT INTO " + NOTES
-			    + "(" + NOTE_TYPE + ", " + NOTE_TEXT + ", " + NOTE_COORD + ") VALUES"
-			    + "(?, ?, (SELECT DISTINCT " + COORD_ID_F + " FROM " + COORDS + " WHERE"
-							+ COORD_BOOK_F + " = (SELECT DISTINCT "
-											+ BOOK_ID_F + " FROM " + BOOKS + " WHERE "
-											+ BOOK_NAME_F + " = ?) AND "
-							+ COORD_CHAPT_F + " = ? AND "
-							+ COORD_VERSE_F + " = ?))");
+	    statements = pool.borrow();
+	    int coordId = getCoordId(statements, note.getPosition());
+
+	    PreparedStatement st = statements.get(H2DbQuery.INSERT_NOTE);
 
 	    st.setString(1, Character.toString(note.getType().getSpecifyingChar()));
 	    st.setString(2, note.getText());
-	    st.setString(3, note.getPosition().getBook().getName());
-	    st.setInt(4, note.getPosition().getChapterNum());
-	    st.setInt(5, note.getPosition().getVerseNum());
+	    st.setInt(3, coordId);
 	    commitUpdate(st);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when inserting the note: {}", note, e);
 	    throw new BibleStorageException("Note could not be inserted", e);
+	} finally {
+	    pool.release(statements);
 	}
 
     }
@@ -799,46 +1219,39 @@ public final class H2DbBibleStorage implements BibleStorage {
     //TODO add unit test
     @Override
     public int deleteNote(Position position) {
+	H2DbStatementCache statements = null;
 	int notesDeleted = 0;
 	try {
-	    PreparedStatement st = dbConnection
-		.prepareStatement("DELETE FROM " + NOTES
-		                  + " WHERE " + NOTE_COORD_F + " = (SELECT DISTINCT " + COORD_ID_F + " FROM " + COORDS
-			+ " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F
-			+ " WHERE " + BOOK_NAME_F + " = ? AND " + COORD_CHAPT_F + " = ? AND " + COORD_VERSE_F + "= ?) LIMIT 1");
-    st.setString(1, position.getBook().getName());
-    st.setInt(2, position.getChapterNum());
-    st.setInt(3, position.getVerseNum());
+	    statements = pool.borrow();
+	    int coordId = getCoordId(statements, position);
+
+	    PreparedStatement st = statements.get(H2DbQuery.DELETE_NOTE);
+	    st.setInt(1, coordId);
 	    notesDeleted = commitUpdate(st);
 	} catch (SQLException e) {
 	    logger.error("Exception caught when deleting note for position: {}", position, e);
 	    throw new BibleStorageException("Note could not be deleted", e);
+	} finally {
+	    pool.release(statements);
 	}
 	return notesDeleted;
     }
 
     @Override
     public List<Note> getNotes(Position position) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
 	List<Note> noteList = new ArrayList<Note>();
 
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + NOTE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", "
-					  + COORD_VERSE_F + ", " + NOTE_TYPE_F + "FROM " + NOTES
-				+ " INNER JOIN " + COORDS + " ON " + NOTE_COORD_F + " = " + COORD_ID_F + " "
-				+ " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F
-				+ " WHERE " + BOOK_NAME_F + " = ? AND " + COORD_CHAPT_F + " = ? AND " + COORD_VERSE_F + "= ?");
-	    st.setString(1, position.getBook().getName());
-	    st.setInt(2, position.getChapterNum());
-	    st.setInt(3, position.getVerseNum());
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_NOTES);
+	    st.setInt(1, getCoordId(statements, position));
 	    rs = commitQuery(st);
 	    while (rs.next())
-		noteList.add(new Note(rs.getString(1),
-					  new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs
-						  .getInt(3), rs.getInt(4)), Note.getNoteTypeByChar(rs
-						  .getString(5).charAt(0))));
+		noteList.add(new Note(rs.getString(1), Position.fromCode(rs.getInt(2)),
+				      Note.getNoteTypeByChar(rs.getString(3).charAt(0))));
 
 	} catch (SQLException e) {
 	    logger.error("Exception caught when retrieving the notes for position: {}", position, e);
@@ -847,11 +1260,10 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
 
 	return noteList;
@@ -860,25 +1272,20 @@ public final class H2DbBibleStorage implements BibleStorage {
     //TODO add unit test
     @Override
     public List<Note> getNotesForChapter(Position chapter) {
+	H2DbStatementCache statements = null;
 	ResultSet rs = null;
 	PreparedStatement st = null;
 	List<Note> noteList = new ArrayList<Note>();
 
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + NOTE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", "
-					  + COORD_VERSE_F + ", " + NOTE_TYPE_F + "FROM " + NOTES
-				+ " INNER JOIN " + COORDS + " ON " + NOTE_COORD_F + " = " + COORD_ID_F + " "
-				+ " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F
-				+ " WHERE " + BOOK_NAME_F + " = ? AND " + COORD_CHAPT_F + " = ?");
-	    st.setString(1, chapter.getBook().getName());
-	    st.setInt(2, chapter.getChapterNum());
+	    statements = pool.borrow();
+	    st = statements.get(H2DbQuery.GET_NOTES_FOR_CHAPTER);
+	    st.setInt(1, new Position(chapter.getBook(), chapter.getChapterNum(), 0).getCode());
+	    st.setInt(2, new Position(chapter.getBook(), chapter.getChapterNum(), Position.MAX_VERSE_NUM).getCode());
 	    rs = commitQuery(st);
 	    while (rs.next())
-		noteList.add(new Note(rs.getString(1),
-					  new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs
-						  .getInt(3), rs.getInt(4)), Note.getNoteTypeByChar(rs
-						  .getString(5).charAt(0))));
+		noteList.add(new Note(rs.getString(1), Position.fromCode(rs.getInt(2)),
+				      Note.getNoteTypeByChar(rs.getString(3).charAt(0))));
 
 	} catch (SQLException e) {
 	    logger.error("Exception caught when retrieving the notes for chapter: {}", chapter, e);
@@ -887,11 +1294,10 @@ public final class H2DbBibleStorage implements BibleStorage {
 	    try {
 		if (rs != null)
 		    rs.close();
-		if (st != null)
-		    st.close();
 	    } catch (SQLException e) {
 		logger.debug("Exception caught when closing", e);
 	    }
+	    pool.release(statements);
 	}
 
 	return noteList;
@@ -899,169 +1305,386 @@ public final class H2DbBibleStorage implements BibleStorage {
 
     @Override
     public List<Verse> searchVersesForText(String text) {
-	ResultSet rs = null;
-	PreparedStatement st = null;
-	List<Verse> verseList = new ArrayList<Verse>();
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, collector);
+	return collector.getResults();
+    }
 
-	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-			                    + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-					    + " FROM FT_SEARCH_DATA(?, 0, 0) FT"
-					    + " INNER JOIN " + VERSES + " ON FT.TABLE = 'VERSES' AND " + VERSE_ID_F + " = FT.KEYS[0]"
-					    + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " "
-					    + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F + " "
-					    + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F
-					    + " ORDER BY" + VERSION_ABBR_F);
-	    st.setString(1, text);
-	    rs = commitQuery(st);
-	    while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
+    @Override
+    public void searchVersesForText(String text, ResultHandler<Verse> handler) {
+	searchVerses(new SearchQuery(text), handler);
+    }
+
+    //TODO add unit test
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleVersion version, ResultHandler<Verse> handler) {
+	SearchQuery query = new SearchQuery(text);
+	query.addBibleVersion(version);
+	searchVerses(query, handler);
+    }
+
+    //TODO add unit test
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleBook book) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, book, collector);
+	return collector.getResults();
+    }
 
+    @Override
+    public void searchVersesForText(String text, BibleBook book, ResultHandler<Verse> handler) {
+	SearchQuery query = new SearchQuery(text);
+	query.addBibleBook(book);
+	searchVerses(query, handler);
+    }
+
+    //TODO add unit test
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleBook book, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, book, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleBook book, BibleVersion version, ResultHandler<Verse> handler) {
+	SearchQuery query = new SearchQuery(text);
+	query.addBibleBook(book);
+	query.addBibleVersion(version);
+	searchVerses(query, handler);
+    }
+
+    @Override
+    public List<Verse> searchVerses(SearchQuery query) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVerses(query, collector);
+	return collector.getResults();
+    }
+
+    /**
+     * The verses of each Bible version are found in its search index and retrieved by their ids
+     * using one query per MAX_POSITIONS_PER_QUERY verses.
+     */
+    @Override
+    public void searchVerses(SearchQuery query, ResultHandler<Verse> handler) {
+	List<BibleVersion> versions = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	H2DbStatementCache statements = null;
+	try {
+	    statements = pool.borrow();
+	    IndexSearcher.search(query, versions, new SearchSource(statements), handler);
 	} catch (SQLException e) {
-	    logger.error("Exception caught when searching the verses for the text: {}", text, e);
+	    logger.error("Exception caught when searching the verses for the query: {}", query, e);
 	    throw new BibleStorageException("Verses could not be searched", e);
+	} catch (SearchSourceException e) {
+	    logger.error("Exception caught when searching the verses for the query: {}", query, e.getCause());
+	    throw new BibleStorageException("Verses could not be searched", e.getCause());
 	} finally {
-	    try {
-		if (rs != null)
-		    rs.close();
-		if (st != null)
-		    st.close();
-	    } catch (SQLException e) {
-		logger.debug("Exception caught when closing", e);
-	    }
+	    pool.release(statements);
 	}
-
-	return verseList;
     }
 
-    //TODO add unit test
     @Override
-    public List<Verse> searchVersesForText(String text, BibleVersion version) {
-	ResultSet rs = null;
-	PreparedStatement st = null;
-	List<Verse> verseList = new ArrayList<Verse>();
+    public List<VerseMatch> searchMatches(SearchQuery query) {
+	ResultCollector<VerseMatch> collector = new ResultCollector<VerseMatch>();
+	searchMatches(query, collector);
+	return collector.getResults();
+    }
 
+    @Override
+    public void searchMatches(SearchQuery query, ResultHandler<VerseMatch> handler) {
+	List<BibleVersion> versions = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	H2DbStatementCache statements = null;
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-			                    + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-					    + " FROM FT_SEARCH_DATA(?, 0, 0) FT"
-					    + " INNER JOIN " + VERSES + " ON FT.TABLE = 'VERSES' AND " + VERSE_ID_F + " = FT.KEYS[0]"
-					    + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " AND" + VERSION_ABBR_F + " = ?"
-					    + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F
-					    + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F
-					    + " ORDER BY" + VERSION_ABBR_F);
-	    st.setString(1, text);
-	    st.setString(2, version.getAbbr());
-	    rs = commitQuery(st);
-	    while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
-
+	    statements = pool.borrow();
+	    IndexSearcher.searchMatches(query, versions, new SearchSource(statements), handler);
 	} catch (SQLException e) {
-	    logger.error("Exception caught when searching the verses for the text: {} in Bible version: {}", new Object[] {text, version, e});
+	    logger.error("Exception caught when searching the verses for the query: {}", query, e);
 	    throw new BibleStorageException("Verses could not be searched", e);
+	} catch (SearchSourceException e) {
+	    logger.error("Exception caught when searching the verses for the query: {}", query, e.getCause());
+	    throw new BibleStorageException("Verses could not be searched", e.getCause());
 	} finally {
-	    try {
-		if (rs != null)
-		    rs.close();
-		if (st != null)
-		    st.close();
-	    } catch (SQLException e) {
-		logger.debug("Exception caught when closing", e);
-	    }
+	    pool.release(statements);
 	}
-	
-	return verseList;
     }
 
-    //TODO add unit test
     @Override
-    public List<Verse> searchVersesForText(String text, BibleBook book) {
-	ResultSet rs = null;
-	PreparedStatement st = null;
-	List<Verse> verseList = new ArrayList<Verse>();
+    public SearchCounts countVerses(SearchQuery query) {
+	List<BibleVersion> versions = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	H2DbStatementCache statements = null;
+	try {
+	    statements = pool.borrow();
+	    return IndexSearcher.count(query, versions, new SearchSource(statements));
+	} catch (SQLException e) {
+	    logger.error("Exception caught when counting the verses for the query: {}", query, e);
+	    throw new BibleStorageException("Verses could not be counted", e);
+	} catch (SearchSourceException e) {
+	    logger.error("Exception caught when counting the verses for the query: {}", query, e.getCause());
+	    throw new BibleStorageException("Verses could not be counted", e.getCause());
+	} finally {
+	    pool.release(statements);
+	}
+    }
 
+    @Override
+    public String suggestSearchText(SearchQuery query) {
+	List<BibleVersion> versions = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	H2DbStatementCache statements = null;
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-			                    + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-					    + " FROM FT_SEARCH_DATA(?, 0, 0) FT"
-					    + " INNER JOIN " + VERSES + " ON FT.TABLE = 'VERSES' AND " + VERSE_ID_F + " = FT.KEYS[0]"
-					    + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F
-					    + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " AND" + BOOK_NAME_F + " = ?"
-					    + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F
-					    + " ORDER BY" + VERSION_ABBR_F);
-	    st.setString(1, text);
-	    st.setString(2, book.getName());
-	    rs = commitQuery(st);
-	    while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
+	    statements = pool.borrow();
+	    return IndexSearcher.suggest(query, versions, new SearchSource(statements));
+	} catch (SQLException e) {
+	    logger.error("Exception caught when suggesting the text for the query: {}", query, e);
+	    throw new BibleStorageException("Search text could not be suggested", e);
+	} catch (SearchSourceException e) {
+	    logger.error("Exception caught when suggesting the text for the query: {}", query, e.getCause());
+	    throw new BibleStorageException("Search text could not be suggested", e.getCause());
+	} finally {
+	    pool.release(statements);
+	}
+    }
+
+    @Override
+    public List<String> completeSearchTerm(String prefix, int limit, List<BibleVersion> versions) {
+	return complete(prefix, limit, versions.isEmpty() ? getAllBibleVersions() : versions);
+    }
 
+    @Override
+    public List<String> completeSearchTerm(String prefix, int limit, String language) {
+	return complete(prefix, limit, IndexSearcher.getVersionsInLanguage(getAllBibleVersions(), language));
+    }
+
+    private List<String> complete(String prefix, int limit, List<BibleVersion> versions) {
+	H2DbStatementCache statements = null;
+	try {
+	    statements = pool.borrow();
+	    return IndexSearcher.complete(prefix, limit, versions, new SearchSource(statements));
 	} catch (SQLException e) {
-	    logger.error("Exception caught when searching the verses for the text: {} in Bible book: {}", new Object[] {text, book, e});
-	    throw new BibleStorageException("Verses could not be searched", e);
+	    logger.error("Exception caught when completing the search term: {}", prefix, e);
+	    throw new BibleStorageException("Search term could not be completed", e);
+	} catch (SearchSourceException e) {
+	    logger.error("Exception caught when completing the search term: {}", prefix, e.getCause());
+	    throw new BibleStorageException("Search term could not be completed", e.getCause());
 	} finally {
+	    pool.release(statements);
+	}
+    }
+
+    /**
+     * Source of the search indexes and the verses using the borrowed statements. The SQLExceptions
+     * are thrown wrapped in unchecked SearchSourceException, to be unwrapped by the searching method.
+     */
+    private final class SearchSource implements IndexSearcher.Source {
+
+	private final H2DbStatementCache statements;
+
+	private SearchSource(H2DbStatementCache statements) {
+	    this.statements = statements;
+	}
+
+	@Override
+	public InvertedIndex getSearchIndex(BibleVersion version) {
 	    try {
-		if (rs != null)
+		int versionId = getVersionId(statements, version.getAbbr());
+		return versionId == NO_ID ? null : H2DbBibleStorage.this.getSearchIndex(statements, versionId);
+	    } catch (SQLException e) {
+		throw new SearchSourceException(e);
+	    }
+	}
+
+	@Override
+	public List<Verse> getVerses(BibleVersion version, int[] keys) {
+	    List<Verse> verses = new ArrayList<Verse>(keys.length);
+	    ResultSet rs = null;
+	    try {
+		PreparedStatement st = statements.get(H2DbQuery.GET_VERSES_BY_IDS);
+		for (int from = 0; from < keys.length; from += MAX_POSITIONS_PER_QUERY) {
+		    int to = Math.min(from + MAX_POSITIONS_PER_QUERY, keys.length);
+		    Object[] ids = new Object[to - from];
+		    for (int i = from; i < to; i++)
+			ids[i - from] = keys[i];
+
+		    st.setObject(1, ids);
+		    rs = commitQuery(st);
+		    while (rs.next())
+			verses.add(readVerse(rs, 1));
 		    rs.close();
-		if (st != null)
-		    st.close();
+		    rs = null;
+		}
 	    } catch (SQLException e) {
-		logger.debug("Exception caught when closing", e);
+		throw new SearchSourceException(e);
+	    } finally {
+		try {
+		    if (rs != null)
+			rs.close();
+		} catch (SQLException e) {
+		    logger.debug("Exception caught when closing", e);
+		}
 	    }
+	    return verses;
+	}
+
+    }
+
+    /**
+     * Unchecked wrapper of the SQLException thrown by the {@link SearchSource}.
+     */
+    private static final class SearchSourceException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private SearchSourceException(SQLException cause) {
+	    super(cause);
+	}
+
+	@Override
+	public synchronized SQLException getCause() {
+	    return (SQLException) super.getCause();
 	}
 
-	return verseList;
     }
 
-    //TODO add unit test
     @Override
-    public List<Verse> searchVersesForText(String text, BibleBook book, BibleVersion version) {
+    public void indexBibleVersion(BibleVersion version) {
+	H2DbStatementCache statements = null;
+	try {
+	    statements = pool.borrow();
+	    int versionId = getVersionId(statements, version.getAbbr());
+	    if (versionId != NO_ID) {
+		synchronized (getSearchIndexLock(versionId)) {
+		    searchIndexes.put(versionId, buildSearchIndex(statements, versionId));
+		}
+	    }
+	} catch (SQLException e) {
+	    logger.error("Exception caught when indexing the Bible version: {}", version, e);
+	    throw new BibleStorageException("Bible version could not be indexed", e);
+	} finally {
+	    pool.release(statements);
+	}
+    }
+
+    /**
+     * Returns the search index of the Bible version with the specified id - the cached one, the stored one
+     * or the newly built one, in this order. The index is loaded or built under its lock, so only once.
+     */
+    private InvertedIndex getSearchIndex(H2DbStatementCache statements, int versionId) throws SQLException {
+	InvertedIndex index = searchIndexes.get(versionId);
+	if (index != null)
+	    return index;
+
+	synchronized (getSearchIndexLock(versionId)) {
+	    // the index could have been built while waiting for the lock
+	    index = searchIndexes.get(versionId);
+	    if (index != null)
+		return index;
+
+	    index = loadSearchIndex(statements, versionId);
+	    if (index == null)
+		index = buildSearchIndex(statements, versionId);
+	    searchIndexes.put(versionId, index);
+	    return index;
+	}
+    }
+
+    /**
+     * Returns the lock of the search index of the Bible version with the specified id.
+     */
+    private Object getSearchIndexLock(int versionId) {
+	Object lock = searchIndexLocks.get(versionId);
+	if (lock == null) {
+	    Object newLock = new Object();
+	    lock = searchIndexLocks.putIfAbsent(versionId, newLock);
+	    if (lock == null)
+		lock = newLock;
+	}
+	return lock;
+    }
+
+    /**
+     * Returns the analyzer of the texts of the Bible version with the specified id, chosen by the language of the version.
+     */
+    private Analyzer getAnalyzer(H2DbStatementCache statements, int versionId) throws SQLException {
 	ResultSet rs = null;
-	PreparedStatement st = null;
-	List<Verse> verseList = new ArrayList<Verse>();
+	String language = null;
+	try {
+	    PreparedStatement st = statements.get(H2DbQuery.GET_VERSION_LANG);
+	    st.setInt(1, versionId);
+	    rs = commitQuery(st);
+	    if (rs.next())
+		language = rs.getString(1);
+	} finally {
+	    if (rs != null)
+		rs.close();
+	}
+	return new LanguageAnalyzer(language);
+    }
 
+    /**
+     * Returns the stored search index of the Bible version with the specified id or null if it isn't stored
+     * (or can't be read, e.g. because it was stored in an older format).
+     */
+    private InvertedIndex loadSearchIndex(H2DbStatementCache statements, int versionId) throws SQLException {
+	ResultSet rs = null;
 	try {
-	    st = dbConnection
-			.prepareStatement("SELECT " + VERSE_TEXT_F + ", " + BOOK_NAME_F + ", " + COORD_CHAPT_F + ", " + COORD_VERSE_F + ", "
-			                    + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
-					    + " FROM FT_SEARCH_DATA(?, 0, 0) FT"
-					    + " INNER JOIN " + VERSES + " ON FT.TABLE = 'VERSES' AND " + VERSE_ID_F + " = FT.KEYS[0]"
-					    + " INNER JOIN " + COORDS + " ON " + VERSE_COORD_F + " = " + COORD_ID_F
-					    + " INNER JOIN " + BOOKS + " ON " + COORD_BOOK_F + " = " + BOOK_ID_F + " AND" + BOOK_NAME_F + " = ?"
-					    + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F + " AND" + VERSION_ABBR_F + " = ?"
-					    + " ORDER BY" + VERSION_ABBR_F);
-	    st.setString(1, text);
-	    st.setString(2, book.getName());
-	    st.setString(3, version.getAbbr());
+	    PreparedStatement st = statements.get(H2DbQuery.GET_SEARCH_INDEX);
+	    st.setInt(1, versionId);
 	    rs = commitQuery(st);
-	    while (rs.next())
-		    verseList.add(new Verse(rs.getString(1),
-		                            new Position(BibleBook.getBibleBookByName(rs.getString(2)), rs.getInt(3), rs.getInt(4)),
-		                            new BibleVersion(rs.getString(5), rs.getString(6), rs.getString(7))));
+	    if (!rs.next())
+		return null;
 
-	} catch (SQLException e) {
-	    logger.error("Exception caught when searching the verses for the text: {} in Bible book: {} and Bible version: {}", new Object[] {text, book, version, e});
-	    throw new BibleStorageException("Verses could not be searched", e);
-	} finally {
+	    InputStream input = rs.getBinaryStream(1);
 	    try {
-		if (rs != null)
-		    rs.close();
-		if (st != null)
-		    st.close();
-	    } catch (SQLException e) {
-		logger.debug("Exception caught when closing", e);
+		return InvertedIndex.readFrom(input, getAnalyzer(statements, versionId));
+	    } finally {
+		input.close();
 	    }
+	} catch (IOException e) {
+	    logger.warn("Search index of the Bible version with id {} could not be read, it will be rebuilt", versionId, e);
+	    return null;
+	} finally {
+	    if (rs != null)
+		rs.close();
+	}
+    }
+
+    /**
+     * Builds the search index of the verses of the Bible version with the specified id and stores it in the database.
+     * The ids of the verses are the keys of the documents of the index.
+     */
+    private InvertedIndex buildSearchIndex(H2DbStatementCache statements, int versionId) throws SQLException {
+	ResultSet rs = null;
+	InvertedIndex.Builder builder = new InvertedIndex.Builder(getAnalyzer(statements, versionId));
+	try {
+	    PreparedStatement st = statements.get(H2DbQuery.GET_VERSION_TEXTS);
+	    st.setInt(1, versionId);
+	    rs = commitQuery(st);
+	    while (rs.next())
+		builder.add(rs.getInt(2), rs.getInt(1), rs.getString(3));
+	} finally {
+	    if (rs != null)
+		rs.close();
 	}
+	InvertedIndex index = builder.build();
 
-	return verseList;
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	try {
+	    index.writeTo(output);
+	} catch (IOException e) {
+	    throw new SQLException("Search index could not be serialized", e);
+	}
+
+	PreparedStatement st = statements.get(H2DbQuery.MERGE_SEARCH_INDEX);
+	st.setInt(1, versionId);
+	st.setBytes(2, output.toByteArray());
+	commitUpdate(st);
+	return index;
     }
 
 }
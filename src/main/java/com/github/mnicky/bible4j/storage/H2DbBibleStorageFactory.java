@@ -1,6 +1,5 @@
 package com.github.mnicky.bible4j.storage;
 
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 import org.slf4j.Logger;
@@ -22,16 +21,26 @@ public final class H2DbBibleStorageFactory implements BibleStorageFactory {
     //TODO password as char array
     private String password = "";
 
+    private int maxConnections = 1;
+
+    private boolean inMemory = false;
+
     private static final String URL_PROPERTY_NAME = "db.url";
     private static final String USER_PROPERTY_NAME = "db.user";
     private static final String PASSWORD_PROPERTY_NAME = "db.pwd";
+    private static final String MAX_CONNECTIONS_PROPERTY_NAME = "db.maxconn";
+    private static final String IN_MEMORY_PROPERTY_NAME = "db.inmemory";
 
     /**
-     * The url, username and password for h2 database can be set by setter methods of this factory.
-     * This factory method checks for presence of system properties 'db.url',
-     * 'db.user' and 'db.pwd' and if exists, their value overrides values set by setters and
+     * The url, username, password and maximal number of connections for h2 database can be set by setter
+     * methods of this factory. This factory method checks for presence of system properties 'db.url',
+     * 'db.user', 'db.pwd', 'db.maxconn' and 'db.inmemory' and if exists, their value overrides values set by setters and
      * is used when creating the storage. If the values aren't set neither by setter methods
      * nor by the properties, the factory's default values are used.
+     * <p>
+     * With the maximal number of connections greater than 1, the created storage can be shared
+     * between threads, each operation using one of the pooled connections. With the in-memory option,
+     * the created storage is wrapped in {@link InMemoryBibleStorage}.
      *
      * @throws BibleStorageException when Bible storage could not be created
      */
@@ -48,10 +57,17 @@ public final class H2DbBibleStorageFactory implements BibleStorageFactory {
 	    if (System.getProperty(PASSWORD_PROPERTY_NAME) != null)
 		password = System.getProperty(PASSWORD_PROPERTY_NAME);
 
+	    if (System.getProperty(MAX_CONNECTIONS_PROPERTY_NAME) != null)
+		maxConnections = Integer.parseInt(System.getProperty(MAX_CONNECTIONS_PROPERTY_NAME));
+
+	    if (System.getProperty(IN_MEMORY_PROPERTY_NAME) != null)
+		inMemory = Boolean.parseBoolean(System.getProperty(IN_MEMORY_PROPERTY_NAME));
+
 	    //workaround for some buggy JVMs, that don't load the driver automatically (like GCJ)
 	    Class.forName("org.h2.Driver");
 
-	    return new H2DbBibleStorage(DriverManager.getConnection(url, user, password));
+	    BibleStorage storage = new H2DbBibleStorage(new H2DbConnectionPool(url, user, password, maxConnections));
+	    return inMemory ? new InMemoryBibleStorage(storage) : storage;
 
 	} catch (SQLException e) {
 	    logger.error("Exception caught when creating H2DbBibleStorage", e);
@@ -59,6 +75,9 @@ public final class H2DbBibleStorageFactory implements BibleStorageFactory {
 	} catch (ClassNotFoundException e) {
 	    logger.error("Exception caught when creating H2DbBibleStorage", e);
 	    throw new BibleStorageException("BibleStorage could not be created", e);
+	} catch (IllegalArgumentException e) {
+	    logger.error("Exception caught when creating H2DbBibleStorage", e);
+	    throw new BibleStorageException("BibleStorage could not be created", e);
 	}
     }
 
@@ -74,4 +93,22 @@ public final class H2DbBibleStorageFactory implements BibleStorageFactory {
 	this.password = password;
     }
 
+    /**
+     * Sets the maximal number of connections the created storage opens to h2 database.
+     *
+     * @param maxConnections maximal number of connections, must be positive
+     */
+    public void setMaxConnections(int maxConnections) {
+	this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Sets whether the created storage keeps the texts of the Bible versions in memory.
+     *
+     * @param inMemory true to keep the texts in memory
+     */
+    public void setInMemory(boolean inMemory) {
+	this.inMemory = inMemory;
+    }
+
 }
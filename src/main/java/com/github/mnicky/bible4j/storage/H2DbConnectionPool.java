@@ -0,0 +1,183 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mnicky.bible4j.AppRunner;
+
+/**
+ * Bounded pool of connections to H2 database, each with its own cache of prepared statements.
+ * Connections are opened lazily, up to the maximal number of connections. When all of them are
+ * borrowed, {@link #borrow()} waits until some connection is released. Thread-safe.
+ */
+final class H2DbConnectionPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(AppRunner.AppLogger.class);
+
+    private final String url;
+
+    private final String user;
+
+    private final String password;
+
+    /**
+     * Maximal number of connections opened by this pool.
+     */
+    private final int maxConnections;
+
+    /**
+     * Connections not borrowed at the moment.
+     */
+    private final BlockingQueue<H2DbStatementCache> idle;
+
+    /**
+     * Number of connections opened by this pool. Guarded by this pool.
+     */
+    private int opened = 1;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs new H2DbConnectionPool opening at most the specified number of connections
+     * to H2 database with the specified url. The first connection is opened immediately.
+     *
+     * @param url url of H2 database
+     * @param user database user
+     * @param password password of the database user
+     * @param maxConnections maximal number of connections, must be positive
+     * @throws SQLException when the first connection could not be opened
+     */
+    H2DbConnectionPool(String url, String user, String password, int maxConnections) throws SQLException {
+	if (maxConnections < 1)
+	    throw new IllegalArgumentException("Maximal number of connections must be positive.");
+
+	this.url = url;
+	this.user = user;
+	this.password = password;
+	this.maxConnections = maxConnections;
+	this.idle = new ArrayBlockingQueue<H2DbStatementCache>(maxConnections);
+	idle.add(new H2DbStatementCache(DriverManager.getConnection(url, user, password)));
+    }
+
+    /**
+     * Constructs new H2DbConnectionPool consisting only of the specified connection.
+     *
+     * @param connection connection to H2 database
+     */
+    H2DbConnectionPool(Connection connection) {
+	this.url = null;
+	this.user = null;
+	this.password = null;
+	this.maxConnections = 1;
+	this.idle = new ArrayBlockingQueue<H2DbStatementCache>(1);
+	idle.add(new H2DbStatementCache(connection));
+    }
+
+    /**
+     * Opens new connection if this pool hasn't opened the maximal number of connections yet.
+     *
+     * @return new connection or null if no more connections can be opened
+     */
+    private H2DbStatementCache openIfAllowed() throws SQLException {
+	synchronized (this) {
+	    if (url == null || opened >= maxConnections)
+		return null;
+	    // count the connection before it's opened, so it can be opened outside of the lock
+	    opened++;
+	}
+
+	try {
+	    return new H2DbStatementCache(DriverManager.getConnection(url, user, password));
+	} catch (SQLException e) {
+	    synchronized (this) {
+		opened--;
+	    }
+	    throw e;
+	}
+    }
+
+    /**
+     * Borrows a connection from this pool. The connection must be given back
+     * with {@link #release(H2DbStatementCache)}.
+     *
+     * @return connection with its statement cache
+     * @throws SQLException when the pool is closed, a new connection could not be opened or
+     *             the thread was interrupted while waiting for a connection
+     */
+    H2DbStatementCache borrow() throws SQLException {
+	if (closed)
+	    throw new SQLException("Connection pool is closed");
+
+	H2DbStatementCache statements = idle.poll();
+	if (statements == null)
+	    statements = openIfAllowed();
+	if (statements == null) {
+	    try {
+		statements = idle.take();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SQLException("Interrupted while waiting for a connection", e);
+	    }
+	}
+	return statements;
+    }
+
+    /**
+     * Gives back the connection borrowed from this pool. Does nothing when the connection is null.
+     *
+     * @param statements connection with its statement cache
+     */
+    void release(H2DbStatementCache statements) {
+	if (statements == null)
+	    return;
+
+	if (closed) {
+	    closeQuietly(statements);
+	    return;
+	}
+
+	idle.offer(statements);
+
+	// the pool could be closed in the meantime
+	if (closed && idle.remove(statements))
+	    closeQuietly(statements);
+    }
+
+    /**
+     * Closes all the connections opened by this pool. Connections borrowed at the moment
+     * are closed when they're released.
+     *
+     * @throws SQLException when some of the connections could not be closed
+     */
+    void close() throws SQLException {
+	closed = true;
+	SQLException exception = null;
+
+	H2DbStatementCache statements;
+	while ((statements = idle.poll()) != null) {
+	    try {
+		statements.close();
+	    } catch (SQLException e) {
+		exception = e;
+	    }
+	}
+
+	if (exception != null)
+	    throw exception;
+    }
+
+    private void closeQuietly(H2DbStatementCache statements) {
+	try {
+	    statements.close();
+	} catch (SQLException e) {
+	    logger.debug("Exception caught when closing", e);
+	}
+    }
+
+}
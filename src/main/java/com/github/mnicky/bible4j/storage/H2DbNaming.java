@@ -46,6 +46,8 @@ final class H2DbNaming {
     static final String COORD_CHAPT_F = COORDS + "." + COORD_CHAPT;
     static final String COORD_VERSE = "`verse_num`";
     static final String COORD_VERSE_F = COORDS + "." + COORD_VERSE;
+    static final String COORD_CODE = "`code`";
+    static final String COORD_CODE_F = COORDS + "." + COORD_CODE;
 
     static final String VERSES_BARE = "VERSES";
     static final String VERSES = "`" + VERSES_BARE.toLowerCase(new Locale("en")) + "`";
@@ -57,6 +59,8 @@ final class H2DbNaming {
     static final String VERSE_VERSION_F = VERSES + "." + VERSE_VERSION;
     static final String VERSE_COORD = "`coord_id`";
     static final String VERSE_COORD_F = VERSES + "." + VERSE_COORD;
+    static final String VERSE_CODE = "`code`";
+    static final String VERSE_CODE_F = VERSES + "." + VERSE_CODE;
 
     static final String NOTES_BARE = "NOTES";
     static final String NOTES = "`" + NOTES_BARE.toLowerCase(new Locale("en")) + "`";
@@ -78,4 +82,18 @@ final class H2DbNaming {
     static final String BKMARK_VERSE = "`verse_id`";
     static final String BKMARK_VERSE_F = BKMARKS + "." + BKMARK_VERSE;
 
+    static final String SEARCH_INDEXES_BARE = "SEARCH_INDEXES";
+    static final String SEARCH_INDEXES = "`" + SEARCH_INDEXES_BARE.toLowerCase(new Locale("en")) + "`";
+    static final String SEARCH_INDEX_VERSION = "`bible_version_id`";
+    static final String SEARCH_INDEX_VERSION_F = SEARCH_INDEXES + "." + SEARCH_INDEX_VERSION;
+    static final String SEARCH_INDEX_DATA = "`data`";
+    static final String SEARCH_INDEX_DATA_F = SEARCH_INDEXES + "." + SEARCH_INDEX_DATA;
+
+    // database indexes names
+
+    static final String VERSES_VERSION_COORD_IDX = "`verses_version_coord_idx`";
+    static final String VERSES_VERSION_CODE_IDX = "`verses_version_code_idx`";
+    static final String COORDS_CODE_IDX = "`coords_code_idx`";
+    static final String BKMARKS_NAME_IDX = "`bookmarks_name_idx`";
+
 }
@@ -0,0 +1,149 @@
+package com.github.mnicky.bible4j.storage;
+
+import static com.github.mnicky.bible4j.storage.H2DbNaming.*;
+
+import com.github.mnicky.bible4j.data.Position;
+
+/**
+ * Enum defining the SQL statements used in H2DbBibleStorage. Each statement is built only once
+ * and is prepared at most once per connection (see {@link H2DbStatementCache}).
+ * <p>
+ * Verses are located and ordered by the code of their position (see {@link Position#getCode()}),
+ * so none of the reads needs to join the coordinates or the Bible books. The texts of the verses are searched
+ * by the search indexes (see {@link com.github.mnicky.bible4j.search.InvertedIndex}) stored with the database.
+ */
+enum H2DbQuery {
+
+    TABLE_COUNT("SELECT COUNT(`TABLE_NAME`) FROM `INFORMATION_SCHEMA`.`TABLES` WHERE `TABLE_SCHEMA` = 'PUBLIC' AND `TABLE_NAME` = ?"),
+
+    NOT_NULL_COLUMN_COUNT("SELECT COUNT(`COLUMN_NAME`) FROM `INFORMATION_SCHEMA`.`COLUMNS` WHERE `TABLE_SCHEMA` = 'PUBLIC' AND `TABLE_NAME` = ? AND `COLUMN_NAME` = ? AND `IS_NULLABLE` = 'NO'"),
+
+    BOOK_ID("SELECT " + BOOK_ID_F + " FROM " + BOOKS + " WHERE " + BOOK_NAME_F + " = ?"),
+
+    VERSION_ID("SELECT " + VERSION_ID_F + " FROM " + VERSIONS + " WHERE " + VERSION_ABBR_F + " = ?"),
+
+    GET_VERSION_LANG("SELECT " + VERSION_LANG_F + " FROM " + VERSIONS + " WHERE " + VERSION_ID_F + " = ?"),
+
+    COORD_ID("SELECT " + COORD_ID_F + " FROM " + COORDS + " WHERE " + COORD_CODE_F + " = ?"),
+
+    COORD_IDS_FOR_BOOK("SELECT " + COORD_ID_F + ", " + COORD_CODE_F + " FROM " + COORDS + " WHERE " + COORD_BOOK_F + " = ?"),
+
+    INSERT_VERSE("INSERT INTO " + VERSES + " (" + VERSE_TEXT + ", " + VERSE_VERSION
+		 + ", " + VERSE_COORD + ", " + VERSE_CODE + ") VALUES ( ?, ?, ?, ?)"),
+
+    MERGE_BOOK("MERGE INTO " + BOOKS
+	       + "(" + BOOK_NAME + ", " + BOOK_DEUT + ") KEY (" + BOOK_NAME + ") VALUES ( ?, ?)"),
+
+    MERGE_COORD("MERGE INTO " + COORDS + "(" + COORD_BOOK + ", " + COORD_CHAPT + ", " + COORD_VERSE + ", " + COORD_CODE + ")"
+		+ " KEY ( " + COORD_BOOK + ", " + COORD_CHAPT + ", " + COORD_VERSE + ") VALUES (?, ?, ?, ?)"),
+
+    MERGE_VERSION("MERGE INTO " + VERSIONS + " ("
+		  + VERSION_ABBR + ", " + VERSION_LANG + ", " + VERSION_NAME + ") KEY ( " + VERSION_ABBR + " ) VALUES ( ?, ?, ?)"),
+
+    GET_VERSION("SELECT " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+		+ "FROM " + VERSIONS
+		+ "WHERE " + VERSION_ABBR_F + " = ? LIMIT 1"),
+
+    GET_ALL_VERSIONS("SELECT " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+		     + "FROM " + VERSIONS
+		     + "ORDER BY " + VERSION_ABBR_F),
+
+    GET_VERSE("SELECT " + VERSE_TEXT_F + ", " + VERSE_CODE_F + ", " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+	      + " FROM " + VERSIONS
+	      + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F
+	      + " WHERE " + VERSE_VERSION_F + " = ? AND " + VERSE_CODE_F + " = ? LIMIT 1"),
+
+    // the versions and the positions are both joined, so the index of the verses is sought by both its columns
+    GET_VERSES("SELECT " + VERSE_TEXT_F + ", " + VERSE_CODE_F + ", " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+	       + " FROM TABLE(VERSION_ID INT = ?) VERSION_IDS"
+	       + " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = VERSION_IDS.VERSION_ID"
+	       + " INNER JOIN TABLE(POS_CODE INT = ?) POSITIONS ON " + VERSE_CODE_F + " = POSITIONS.POS_CODE"
+	       + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F),
+
+    // integer division leaves out the verse number of the code
+    GET_CHAPTER_LIST("SELECT DISTINCT " + VERSE_CODE_F + " / " + (Position.MAX_VERSE_NUM + 1) + " * " + (Position.MAX_VERSE_NUM + 1)
+		     + " FROM " + VERSES
+		     + " WHERE " + VERSE_VERSION_F + " = ?"
+		     + " ORDER BY 1"),
+
+    GET_PASSAGE("SELECT " + VERSE_TEXT_F + ", " + VERSE_CODE_F + ", " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+		+ " FROM " + VERSIONS
+		+ " INNER JOIN " + VERSES + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F
+		+ " WHERE " + VERSE_VERSION_F + " = ? AND " + VERSE_CODE_F + " BETWEEN ? AND ?"
+		+ " ORDER BY " + VERSE_CODE_F),
+
+    INSERT_BOOKMARK("INSERT INTO " + BKMARKS
+		    + "(" + BKMARK_VERSE + ", " + BKMARK_NAME + ") VALUES"
+		    + "((SELECT DISTINCT " + VERSE_ID_F + " FROM " + VERSES + " WHERE "
+		    + VERSE_VERSION_F + " = ? AND " + VERSE_CODE_F + " = ?), ?)"),
+
+    DELETE_BOOKMARK("DELETE FROM " + BKMARKS + " WHERE " + BKMARK_NAME_F + " = ?"),
+
+    GET_BOOKMARKS("SELECT " + BKMARK_NAME_F + ", " + VERSE_TEXT_F + ", " + VERSE_CODE_F + ", "
+		  + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+		  + " FROM " + BKMARKS
+		  + " INNER JOIN " + VERSES + " ON " + BKMARK_VERSE_F + " = " + VERSE_ID_F
+		  + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F),
+
+    GET_BOOKMARKS_FOR_VERSION("SELECT " + BKMARK_NAME_F + ", " + VERSE_TEXT_F + ", " + VERSE_CODE_F + ", "
+			      + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+			      + " FROM " + BKMARKS
+			      + " INNER JOIN " + VERSES + " ON " + BKMARK_VERSE_F + " = " + VERSE_ID_F
+			      + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F
+			      + " WHERE " + VERSE_VERSION_F + " = ?"),
+
+    INSERT_NOTE("INSERT INTO " + NOTES
+		+ "(" + NOTE_TYPE + ", " + NOTE_TEXT + ", " + NOTE_COORD + ") VALUES (?, ?, ?)"),
+
+    DELETE_NOTE("DELETE FROM " + NOTES + " WHERE " + NOTE_COORD_F + " = ? LIMIT 1"),
+
+    GET_NOTES("SELECT " + NOTE_TEXT_F + ", " + COORD_CODE_F + ", " + NOTE_TYPE_F
+	      + " FROM " + NOTES
+	      + " INNER JOIN " + COORDS + " ON " + NOTE_COORD_F + " = " + COORD_ID_F
+	      + " WHERE " + NOTE_COORD_F + " = ?"),
+
+    GET_NOTES_FOR_CHAPTER("SELECT " + NOTE_TEXT_F + ", " + COORD_CODE_F + ", " + NOTE_TYPE_F
+			  + " FROM " + NOTES
+			  + " INNER JOIN " + COORDS + " ON " + NOTE_COORD_F + " = " + COORD_ID_F
+			  + " WHERE " + COORD_CODE_F + " BETWEEN ? AND ?"),
+
+    GET_VERSION_TEXTS("SELECT " + VERSE_ID_F + ", " + VERSE_CODE_F + ", " + VERSE_TEXT_F
+		      + " FROM " + VERSES
+		      + " WHERE " + VERSE_VERSION_F + " = ?"
+		      + " ORDER BY " + VERSE_CODE_F + ", " + VERSE_ID_F),
+
+    GET_VERSES_BY_IDS("SELECT " + VERSE_TEXT_F + ", " + VERSE_CODE_F + ", " + VERSION_NAME_F + ", " + VERSION_ABBR_F + ", " + VERSION_LANG_F
+		      + " FROM TABLE(VERSE_ID INT = ?) IDS"
+		      + " INNER JOIN " + VERSES + " ON " + VERSE_ID_F + " = IDS.VERSE_ID"
+		      + " INNER JOIN " + VERSIONS + " ON " + VERSE_VERSION_F + " = " + VERSION_ID_F
+		      + " ORDER BY " + VERSE_CODE_F + ", " + VERSE_ID_F),
+
+    GET_SEARCH_INDEX("SELECT " + SEARCH_INDEX_DATA_F + " FROM " + SEARCH_INDEXES + " WHERE " + SEARCH_INDEX_VERSION_F + " = ?"),
+
+    MERGE_SEARCH_INDEX("MERGE INTO " + SEARCH_INDEXES + " (" + SEARCH_INDEX_VERSION + ", " + SEARCH_INDEX_DATA + ")"
+		       + " KEY (" + SEARCH_INDEX_VERSION + ") VALUES (?, ?)"),
+
+    DELETE_SEARCH_INDEX("DELETE FROM " + SEARCH_INDEXES + " WHERE " + SEARCH_INDEX_VERSION_F + " = ?"),
+
+    SCHEMA_COUNT("SELECT COUNT(`SCHEMA_NAME`) FROM `INFORMATION_SCHEMA`.`SCHEMATA` WHERE `SCHEMA_NAME` = ?"),
+
+    ;
+
+    /**
+     * SQL of this query.
+     */
+    private final String sql;
+
+    private H2DbQuery(String sql) {
+	this.sql = sql;
+    }
+
+    /**
+     * Returns the SQL of this query.
+     * @return SQL of this query
+     */
+    String getSql() {
+	return sql;
+    }
+
+}
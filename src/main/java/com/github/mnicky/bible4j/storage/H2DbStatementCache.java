@@ -0,0 +1,79 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Cache of prepared statements of one connection to H2 database. Each {@link H2DbQuery} is prepared
+ * only when it's used for the first time and the same statement is returned for all the later uses.
+ * Not thread-safe.
+ */
+final class H2DbStatementCache {
+
+    /**
+     * Connection the statements are prepared on.
+     */
+    private final Connection connection;
+
+    /**
+     * Statements prepared so far.
+     */
+    private final Map<H2DbQuery, PreparedStatement> statements = new EnumMap<H2DbQuery, PreparedStatement>(H2DbQuery.class);
+
+    /**
+     * Constructs new H2DbStatementCache for the specified connection.
+     *
+     * @param connection connection to H2 database
+     */
+    H2DbStatementCache(Connection connection) {
+	this.connection = connection;
+    }
+
+    /**
+     * Returns the connection the statements are prepared on.
+     *
+     * @return connection of this cache
+     */
+    Connection getConnection() {
+	return connection;
+    }
+
+    /**
+     * Returns the prepared statement for the specified query, with its parameters cleared.
+     * The statement is prepared when it's requested for the first time.
+     * The returned statement must not be closed by the caller.
+     *
+     * @param query query to return the statement for
+     * @return prepared statement for the query
+     * @throws SQLException when the statement could not be prepared
+     */
+    PreparedStatement get(H2DbQuery query) throws SQLException {
+	PreparedStatement st = statements.get(query);
+	if (st == null) {
+	    st = connection.prepareStatement(query.getSql());
+	    statements.put(query, st);
+	}
+	else
+	    st.clearParameters();
+	return st;
+    }
+
+    /**
+     * Closes all the cached statements and the connection.
+     *
+     * @throws SQLException when the statements or the connection could not be closed
+     */
+    void close() throws SQLException {
+	try {
+	    for (PreparedStatement st : statements.values())
+		st.close();
+	} finally {
+	    statements.clear();
+	    connection.close();
+	}
+    }
+
+}
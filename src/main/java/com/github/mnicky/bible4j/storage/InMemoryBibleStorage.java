@@ -0,0 +1,710 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Bookmark;
+import com.github.mnicky.bible4j.data.Note;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+
+/**
+ * {@link BibleStorage} keeping the texts of the Bible versions in memory. Each Bible version is loaded
+ * from the underlying storage when it's read for the first time, into arrays of verse texts sorted by
+ * the codes of their positions (see {@link Position#getCode()}) and a table of the chapter offsets in them.
+ * Verses, chapters and passages are then read by binary search in these arrays.
+ * <p>
+ * The loaded verses can be scanned by any condition no search index can serve (see {@link #scanVerses(VerseFilter, List)}).
+ * The verses are split into the partitions by the Bible books, which are scanned in parallel by a pool of threads,
+ * started by the first scan and stopped by {@link #close()}.
+ * <p>
+ * Searching, notes, bookmarks and all the writes are delegated to the underlying storage. Inserting verses
+ * or Bible versions through this storage drops the loaded texts of the affected Bible versions,
+ * so they're loaded again when they're read next time. Thread-safe when the underlying storage is.
+ */
+public final class InMemoryBibleStorage implements BibleStorage {
+
+    /**
+     * Storage the texts are loaded from and the other operations are delegated to.
+     */
+    private final BibleStorage storage;
+
+    /**
+     * Loaded Bible versions, by their lower-cased abbreviation.
+     */
+    private final Map<String, LoadedVersion> versions = new ConcurrentHashMap<String, LoadedVersion>();
+
+    /**
+     * Locks of the loading and the dropping of the Bible versions, by their lower-cased abbreviation.
+     */
+    private final ConcurrentMap<String, Object> versionLocks = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Maximal number of the verses in one partition scanned by one thread, so the long books
+     * are split and the threads get the similar amount of work.
+     */
+    private static final int MAX_VERSES_PER_PARTITION = 1024;
+
+    /**
+     * Number of the threads scanning the verses.
+     */
+    private final int scanThreads;
+
+    /**
+     * Threads scanning the verses, started by the first scan.
+     */
+    private ExecutorService scanExecutor;
+
+    /**
+     * Constructs new InMemoryBibleStorage loading the Bible versions from the specified storage.
+     * The verses are scanned by as many threads as there are available processors.
+     *
+     * @param storage storage to load the texts from and to delegate the other operations to
+     */
+    public InMemoryBibleStorage(BibleStorage storage) {
+	this(storage, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs new InMemoryBibleStorage loading the Bible versions from the specified storage,
+     * scanning the verses by the specified number of threads.
+     *
+     * @param storage storage to load the texts from and to delegate the other operations to
+     * @param scanThreads number of the threads scanning the verses
+     * @throws IllegalArgumentException when the number of the threads is not positive
+     */
+    public InMemoryBibleStorage(BibleStorage storage, int scanThreads) {
+	if (scanThreads < 1)
+	    throw new IllegalArgumentException("Number of the scanning threads must be positive.");
+	this.storage = storage;
+	this.scanThreads = scanThreads;
+    }
+
+    /**
+     * Texts of one Bible version. Immutable.
+     */
+    private static final class LoadedVersion {
+
+	private final BibleVersion version;
+
+	/**
+	 * Codes of the positions of all the verses, in ascending order.
+	 */
+	private final int[] codes;
+
+	/**
+	 * Texts of the verses, in the same order as their codes.
+	 */
+	private final String[] texts;
+
+	/**
+	 * Codes of all the chapters (with verse number 0), in ascending order.
+	 */
+	private final int[] chapterCodes;
+
+	/**
+	 * Index of the first verse of each chapter in the codes and texts, followed by the number of the verses.
+	 */
+	private final int[] chapterOffsets;
+
+	private LoadedVersion(BibleVersion version, int[] codes, String[] texts) {
+	    this.version = version;
+	    this.codes = codes;
+	    this.texts = texts;
+
+	    int[] chapters = new int[codes.length];
+	    int[] offsets = new int[codes.length + 1];
+	    int chapterCount = 0;
+	    for (int i = 0; i < codes.length; i++) {
+		int chapterCode = toChapterCode(codes[i]);
+		if (chapterCount == 0 || chapters[chapterCount - 1] != chapterCode) {
+		    chapters[chapterCount] = chapterCode;
+		    offsets[chapterCount] = i;
+		    chapterCount++;
+		}
+	    }
+	    offsets[chapterCount] = codes.length;
+
+	    this.chapterCodes = Arrays.copyOf(chapters, chapterCount);
+	    this.chapterOffsets = Arrays.copyOf(offsets, chapterCount + 1);
+	}
+
+	private Verse getVerse(int index) {
+	    return new Verse(texts[index], Position.fromCode(codes[index]), version);
+	}
+
+	/**
+	 * Returns the index of the verse with the specified code or a negative number if there's no such verse.
+	 */
+	private int indexOf(int code) {
+	    return Arrays.binarySearch(codes, code);
+	}
+
+	/**
+	 * Returns the index of the first verse with the code not lower than the specified one.
+	 */
+	private int lowerBound(int code) {
+	    int index = Arrays.binarySearch(codes, code);
+	    return index >= 0 ? index : -index - 1;
+	}
+
+	/**
+	 * Passes the verses from the index <code>from</code> (inclusive) to the index <code>to</code> (exclusive) to the handler.
+	 */
+	private void handleVerses(int from, int to, ResultHandler<Verse> handler) {
+	    for (int i = from; i < to; i++) {
+		if (!handler.handle(getVerse(i)))
+		    break;
+	    }
+	}
+
+	/**
+	 * Returns the indexes of the first verses of the partitions scanned in parallel, followed by the number
+	 * of the verses. Each partition holds the verses of one Bible book, or of its part if the book is long.
+	 */
+	private int[] getPartitionBounds() {
+	    List<Integer> bounds = new ArrayList<Integer>();
+	    for (BibleBook book : BibleBook.values()) {
+		int from = lowerBound(new Position(book, 0, 0).getCode());
+		int to = lowerBound(new Position(book, Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM).getCode() + 1);
+		for (int start = from; start < to; start += MAX_VERSES_PER_PARTITION)
+		    bounds.add(start);
+	    }
+	    bounds.add(codes.length);
+
+	    int[] result = new int[bounds.size()];
+	    for (int i = 0; i < result.length; i++)
+		result[i] = bounds.get(i);
+	    return result;
+	}
+
+	private static int toChapterCode(int code) {
+	    return code & ~Position.MAX_VERSE_NUM;
+	}
+
+    }
+
+    /**
+     * Scan of one partition of the verses of one Bible version, returning the indexes of the accepted verses.
+     */
+    private static final class ScanTask implements Callable<int[]> {
+
+	private final LoadedVersion loaded;
+
+	private final int from;
+
+	private final int to;
+
+	private final VerseFilter filter;
+
+	private ScanTask(LoadedVersion loaded, int from, int to, VerseFilter filter) {
+	    this.loaded = loaded;
+	    this.from = from;
+	    this.to = to;
+	    this.filter = filter;
+	}
+
+	@Override
+	public int[] call() {
+	    int[] accepted = new int[to - from];
+	    int count = 0;
+	    for (int i = from; i < to && !Thread.currentThread().isInterrupted(); i++) {
+		if (filter.accept(loaded.getVerse(i)))
+		    accepted[count++] = i;
+	    }
+	    return Arrays.copyOf(accepted, count);
+	}
+
+    }
+
+    /**
+     * Returns the pool of the threads scanning the verses, starting it if it's not started yet.
+     * The threads are daemons, so they don't prevent the application from exiting when the storage isn't closed.
+     */
+    private synchronized ExecutorService getScanExecutor() {
+	if (scanExecutor == null) {
+	    final AtomicInteger threadNumber = new AtomicInteger();
+	    scanExecutor = Executors.newFixedThreadPool(scanThreads, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+		    Thread thread = new Thread(task, "bible4j-scan-" + threadNumber.incrementAndGet());
+		    thread.setDaemon(true);
+		    return thread;
+		}
+	    });
+	}
+	return scanExecutor;
+    }
+
+    /**
+     * Collects the streamed verses of one Bible version into growing arrays.
+     */
+    private static final class VersionLoader implements ResultHandler<Verse> {
+
+	private int[] codes = new int[1024];
+
+	private String[] texts = new String[1024];
+
+	private int size = 0;
+
+	@Override
+	public boolean handle(Verse verse) {
+	    if (size == codes.length) {
+		codes = Arrays.copyOf(codes, size * 2);
+		texts = Arrays.copyOf(texts, size * 2);
+	    }
+	    codes[size] = verse.getPosition().getCode();
+	    texts[size] = verse.getText();
+	    size++;
+	    return true;
+	}
+
+	private LoadedVersion toLoadedVersion(BibleVersion version) {
+	    return new LoadedVersion(version, Arrays.copyOf(codes, size), Arrays.copyOf(texts, size));
+	}
+
+    }
+
+    private static String getKey(BibleVersion version) {
+	return version.getAbbr().toLowerCase(new Locale("en"));
+    }
+
+    /**
+     * Returns the loaded texts of the specified Bible version, loading them if they're not loaded yet.
+     * Returns null if the Bible version isn't stored.
+     */
+    private LoadedVersion getLoadedVersion(BibleVersion version) {
+	String key = getKey(version);
+	LoadedVersion loaded = versions.get(key);
+	if (loaded != null)
+	    return loaded;
+
+	// the texts are loaded under the lock, so they can't be dropped by an insert before they're cached
+	synchronized (getVersionLock(key)) {
+	    // the version could have been loaded while waiting for the lock
+	    loaded = versions.get(key);
+	    if (loaded != null)
+		return loaded;
+
+	    BibleVersion stored = storage.getBibleVersion(version.getAbbr());
+	    if (stored == null)
+		return null;
+
+	    BibleBook[] books = BibleBook.values();
+	    VersionLoader loader = new VersionLoader();
+	    storage.getPassage(new Position(books[0], 0, 0), new Position(books[books.length - 1], 0, 0), stored, loader);
+
+	    loaded = loader.toLoadedVersion(stored);
+	    versions.put(key, loaded);
+	    return loaded;
+	}
+    }
+
+    /**
+     * Drops the loaded texts of the specified Bible version, waiting for its loading, if any.
+     * Must be called after the texts of the version are changed in the underlying storage.
+     */
+    private void dropLoadedVersion(BibleVersion version) {
+	String key = getKey(version);
+	synchronized (getVersionLock(key)) {
+	    versions.remove(key);
+	}
+    }
+
+    /**
+     * Returns the lock of the loading and the dropping of the Bible version with the specified key.
+     */
+    private Object getVersionLock(String key) {
+	Object lock = versionLocks.get(key);
+	if (lock == null) {
+	    Object newLock = new Object();
+	    lock = versionLocks.putIfAbsent(key, newLock);
+	    if (lock == null)
+		lock = newLock;
+	}
+	return lock;
+    }
+
+    @Override
+    public void close() {
+	synchronized (this) {
+	    if (scanExecutor != null) {
+		scanExecutor.shutdownNow();
+		scanExecutor = null;
+	    }
+	}
+	versions.clear();
+	storage.close();
+    }
+
+    /**
+     * Returns the verses of the Bible versions accepted by the filter, ordered by the Bible versions
+     * (in the order of the specified versions) and positions. All the verses of the versions are scanned,
+     * in parallel, so the filter can be any condition, e.g. one no search index can serve.
+     * The Bible versions are loaded first if they're not loaded yet.
+     *
+     * @param filter condition of the returned verses, called by more threads at once
+     * @param versions scanned Bible versions, all the stored versions if empty
+     * @return verses accepted by the filter
+     * @throws BibleStorageException when the verses could not be loaded or the scan was interrupted
+     */
+    public List<Verse> scanVerses(VerseFilter filter, List<BibleVersion> versions) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	scanVerses(filter, versions, collector);
+	return collector.getResults();
+    }
+
+    /**
+     * Passes the verses of the Bible versions accepted by the filter to the handler in the same order as
+     * {@link #scanVerses(VerseFilter, List)} returns them. The handler is called by the calling thread,
+     * while the partitions following the handled one are still being scanned; when it stops the scan,
+     * the scans of the remaining partitions are cancelled.
+     *
+     * @param filter condition of the returned verses, called by more threads at once
+     * @param versions scanned Bible versions, all the stored versions if empty
+     * @param handler handler of the accepted verses
+     * @throws BibleStorageException when the verses could not be loaded or the scan was interrupted
+     */
+    public void scanVerses(VerseFilter filter, List<BibleVersion> versions, ResultHandler<Verse> handler) {
+	List<BibleVersion> scanned = versions.isEmpty() ? getAllBibleVersions() : versions;
+	ExecutorService executor = getScanExecutor();
+	List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+	List<LoadedVersion> resultVersions = new ArrayList<LoadedVersion>();
+
+	try {
+	    for (BibleVersion version : scanned) {
+		LoadedVersion loaded = getLoadedVersion(version);
+		if (loaded == null)
+		    continue;
+
+		int[] bounds = loaded.getPartitionBounds();
+		for (int i = 0; i + 1 < bounds.length; i++) {
+		    results.add(executor.submit(new ScanTask(loaded, bounds[i], bounds[i + 1], filter)));
+		    resultVersions.add(loaded);
+		}
+	    }
+
+	    // the partitions are in the order of the versions and positions, so the verses are merged in order
+	    for (int i = 0; i < results.size(); i++) {
+		LoadedVersion loaded = resultVersions.get(i);
+		for (int index : results.get(i).get()) {
+		    if (!handler.handle(loaded.getVerse(index)))
+			return;
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new BibleStorageException("Scan of the verses was interrupted", e);
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException)
+		throw (RuntimeException) e.getCause();
+	    if (e.getCause() instanceof Error)
+		throw (Error) e.getCause();
+	    throw new BibleStorageException("Verses could not be scanned", e);
+	} finally {
+	    for (Future<int[]> result : results)
+		result.cancel(true);
+	}
+    }
+
+    @Override
+    public boolean isStorageInitialized() {
+	return storage.isStorageInitialized();
+    }
+
+    @Override
+    public int[] initializeStorage() {
+	return storage.initializeStorage();
+    }
+
+    @Override
+    public void insertVerse(Verse verse) {
+	storage.insertVerse(verse);
+	dropLoadedVersion(verse.getBibleVersion());
+    }
+
+    @Override
+    public void insertVerses(List<Verse> verses) {
+	storage.insertVerses(verses);
+	for (Verse verse : verses)
+	    dropLoadedVersion(verse.getBibleVersion());
+    }
+
+    @Override
+    public void insertBibleVersion(BibleVersion version) {
+	storage.insertBibleVersion(version);
+	dropLoadedVersion(version);
+    }
+
+    @Override
+    public void insertPosition(Position position) {
+	storage.insertPosition(position);
+    }
+
+    @Override
+    public void insertBibleBook(BibleBook book) {
+	storage.insertBibleBook(book);
+    }
+
+    @Override
+    public void indexBibleVersion(BibleVersion version) {
+	storage.indexBibleVersion(version);
+    }
+
+    @Override
+    public BibleVersion getBibleVersion(String abbr) {
+	return storage.getBibleVersion(abbr);
+    }
+
+    @Override
+    public List<BibleVersion> getAllBibleVersions() {
+	return storage.getAllBibleVersions();
+    }
+
+    @Override
+    public Verse getVerse(Position position, BibleVersion version) {
+	LoadedVersion loaded = getLoadedVersion(version);
+	if (loaded == null)
+	    return null;
+
+	int index = loaded.indexOf(position.getCode());
+	return index >= 0 ? loaded.getVerse(index) : null;
+    }
+
+    @Override
+    public List<Verse> getVerses(List<Position> positions, BibleVersion version) {
+	List<Verse> verseList = new ArrayList<Verse>();
+	LoadedVersion loaded = getLoadedVersion(version);
+	if (loaded == null)
+	    return verseList;
+
+	for (Position position : positions) {
+	    int index = loaded.indexOf(position.getCode());
+	    if (index >= 0)
+		verseList.add(loaded.getVerse(index));
+	}
+	return verseList;
+    }
+
+    @Override
+    public List<Verse> getChapter(Position chapter, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	getChapter(chapter, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getChapter(Position chapter, BibleVersion version, ResultHandler<Verse> handler) {
+	LoadedVersion loaded = getLoadedVersion(version);
+	if (loaded == null)
+	    return;
+
+	int chapterIndex = Arrays.binarySearch(loaded.chapterCodes, new Position(chapter.getBook(), chapter.getChapterNum(), 0).getCode());
+	if (chapterIndex >= 0)
+	    loaded.handleVerses(loaded.chapterOffsets[chapterIndex], loaded.chapterOffsets[chapterIndex + 1], handler);
+    }
+
+    @Override
+    public List<Position> getChapterList(BibleVersion version) {
+	ResultCollector<Position> collector = new ResultCollector<Position>();
+	getChapterList(version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getChapterList(BibleVersion version, ResultHandler<Position> handler) {
+	LoadedVersion loaded = getLoadedVersion(version);
+	if (loaded == null)
+	    return;
+
+	for (int chapterCode : loaded.chapterCodes) {
+	    if (!handler.handle(Position.fromCode(chapterCode)))
+		break;
+	}
+    }
+
+    @Override
+    public List<Verse> getPassage(Position from, Position to, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	getPassage(from, to, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getPassage(Position from, Position to, BibleVersion version, ResultHandler<Verse> handler) {
+	LoadedVersion loaded = getLoadedVersion(version);
+	if (loaded == null)
+	    return;
+
+	Position last;
+	if (to.getChapterNum() == 0)
+	    last = new Position(to.getBook(), Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM);
+	else if (to.getVerseNum() == 0)
+	    last = new Position(to.getBook(), to.getChapterNum(), Position.MAX_VERSE_NUM);
+	else
+	    last = to;
+
+	int fromIndex = loaded.lowerBound(from.getCode());
+	int toIndex = loaded.lowerBound(last.getCode() + 1);
+	loaded.handleVerses(fromIndex, toIndex, handler);
+    }
+
+    @Override
+    public List<Verse> compareVerses(Position position, List<BibleVersion> versions) {
+	return compareVerses(Collections.singletonList(position), versions);
+    }
+
+    @Override
+    public List<Verse> compareVerses(List<Position> positions, List<BibleVersion> versions) {
+	List<Verse> verseList = new ArrayList<Verse>();
+	for (BibleVersion version : versions)
+	    verseList.addAll(getVerses(positions, version));
+	return verseList;
+    }
+
+    @Override
+    public void insertNote(Note note) {
+	storage.insertNote(note);
+    }
+
+    @Override
+    public int deleteNote(Position position) {
+	return storage.deleteNote(position);
+    }
+
+    @Override
+    public List<Note> getNotes(Position position) {
+	return storage.getNotes(position);
+    }
+
+    @Override
+    public List<Note> getNotesForChapter(Position chapter) {
+	return storage.getNotesForChapter(chapter);
+    }
+
+    @Override
+    public void insertBookmark(Bookmark bookmark) {
+	storage.insertBookmark(bookmark);
+    }
+
+    @Override
+    public int deleteBookmark(String bookmarkName) {
+	return storage.deleteBookmark(bookmarkName);
+    }
+
+    @Override
+    public List<Bookmark> getBookmarks() {
+	return storage.getBookmarks();
+    }
+
+    @Override
+    public void getBookmarks(ResultHandler<Bookmark> handler) {
+	storage.getBookmarks(handler);
+    }
+
+    @Override
+    public List<Bookmark> getBookmarks(BibleVersion version) {
+	return storage.getBookmarks(version);
+    }
+
+    @Override
+    public void getBookmarks(BibleVersion version, ResultHandler<Bookmark> handler) {
+	storage.getBookmarks(version, handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text) {
+	return storage.searchVersesForText(text);
+    }
+
+    @Override
+    public void searchVersesForText(String text, ResultHandler<Verse> handler) {
+	storage.searchVersesForText(text, handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleVersion version) {
+	return storage.searchVersesForText(text, version);
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleVersion version, ResultHandler<Verse> handler) {
+	storage.searchVersesForText(text, version, handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleBook book) {
+	return storage.searchVersesForText(text, book);
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleBook book, ResultHandler<Verse> handler) {
+	storage.searchVersesForText(text, book, handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleBook book, BibleVersion version) {
+	return storage.searchVersesForText(text, book, version);
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleBook book, BibleVersion version, ResultHandler<Verse> handler) {
+	storage.searchVersesForText(text, book, version, handler);
+    }
+
+    @Override
+    public List<Verse> searchVerses(SearchQuery query) {
+	return storage.searchVerses(query);
+    }
+
+    @Override
+    public void searchVerses(SearchQuery query, ResultHandler<Verse> handler) {
+	storage.searchVerses(query, handler);
+    }
+
+    @Override
+    public List<VerseMatch> searchMatches(SearchQuery query) {
+	return storage.searchMatches(query);
+    }
+
+    @Override
+    public void searchMatches(SearchQuery query, ResultHandler<VerseMatch> handler) {
+	storage.searchMatches(query, handler);
+    }
+
+    @Override
+    public SearchCounts countVerses(SearchQuery query) {
+	return storage.countVerses(query);
+    }
+
+    @Override
+    public String suggestSearchText(SearchQuery query) {
+	return storage.suggestSearchText(query);
+    }
+
+    @Override
+    public List<String> completeSearchTerm(String prefix, int limit, List<BibleVersion> versions) {
+	return storage.completeSearchTerm(prefix, limit, versions);
+    }
+
+    @Override
+    public List<String> completeSearchTerm(String prefix, int limit, String language) {
+	return storage.completeSearchTerm(prefix, limit, language);
+    }
+
+}
@@ -0,0 +1,482 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.search.InvertedIndex;
+import com.github.mnicky.bible4j.search.TopHits;
+
+/**
+ * Class evaluating the {@link SearchQuery} on the search indexes of the Bible versions. The storages provide
+ * the indexes and the verses for the keys of their documents, the restrictions, the ranking and the paging
+ * are done here. Only the verses really returned are retrieved from the storage, except for the substring
+ * and regular expression queries - the verses possibly matching them are found by the trigrams of the indexes
+ * and retrieved to be matched.
+ */
+final class IndexSearcher {
+
+    /**
+     * Source of the search indexes and the verses of the Bible versions.
+     */
+    interface Source {
+
+	/**
+	 * Returns the search index of the Bible version or null if the version isn't stored.
+	 */
+	InvertedIndex getSearchIndex(BibleVersion version);
+
+	/**
+	 * Returns the verses of the Bible version for the keys of the documents of its search index,
+	 * in the order of the keys. The keys are in the order of their documents.
+	 */
+	List<Verse> getVerses(BibleVersion version, int[] keys);
+
+    }
+
+    /**
+     * Maximal number of verses retrieved from the source at once, so the handler can stop the search
+     * before all the found verses are retrieved.
+     */
+    private static final int MAX_VERSES_PER_RETRIEVAL = 500;
+
+    /**
+     * Offsets of the verses found without highlighting.
+     */
+    private static final int[] NO_OFFSETS = new int[0];
+
+    /**
+     * This is a static library class, so cannot be instantiated.
+     */
+    private IndexSearcher() {
+
+    }
+
+    /**
+     * Passes the verses matching the query to the handler.
+     *
+     * @param query search query
+     * @param versions searched Bible versions - the ones of the query or all the stored ones if the query has none,
+     *        in the order the verses of unranked search are returned in
+     * @param source source of the indexes and the verses
+     * @param handler handler of the found verses
+     */
+    static void search(SearchQuery query, List<BibleVersion> versions, Source source, final ResultHandler<Verse> handler) {
+	search(query, versions, source, false, new ResultHandler<VerseMatch>() {
+	    @Override
+	    public boolean handle(VerseMatch match) {
+		return handler.handle(match.getVerse());
+	    }
+	});
+    }
+
+    /**
+     * Passes the verses matching the query with the offsets of the matches in their texts to the handler,
+     * in the same order as {@link #search(SearchQuery, List, Source, ResultHandler)}. The offsets of the matched
+     * terms are taken from the indexes, only the substrings and the regular expressions are matched in the texts.
+     *
+     * @param query search query
+     * @param versions searched Bible versions - the ones of the query or all the stored ones if the query has none
+     * @param source source of the indexes and the verses
+     * @param handler handler of the found verses
+     */
+    static void searchMatches(SearchQuery query, List<BibleVersion> versions, Source source, ResultHandler<VerseMatch> handler) {
+	search(query, versions, source, true, handler);
+    }
+
+    private static void search(SearchQuery query, List<BibleVersion> versions, Source source, boolean highlighted,
+			       ResultHandler<VerseMatch> handler) {
+	int[] ranges = getCodeRanges(query);
+	Pattern pattern = getPattern(query);
+
+	if (pattern != null)
+	    searchPattern(query, pattern, versions, ranges, source, handler);
+	else if (query.isRanked())
+	    searchRanked(query, versions, ranges, source, highlighted, handler);
+	else
+	    searchInOrder(query, versions, ranges, source, highlighted, handler);
+    }
+
+    /**
+     * Counts the verses matching the query by the Bible versions and books. The offset, the limit
+     * and the ranking of the query are ignored. No verses are retrieved from the source, except for the ones
+     * possibly matching the substring or regular expression query.
+     *
+     * @param query search query
+     * @param versions searched Bible versions - the ones of the query or all the stored ones if the query has none
+     * @param source source of the indexes
+     * @return numbers of the matching verses
+     */
+    static SearchCounts count(SearchQuery query, List<BibleVersion> versions, Source source) {
+	int[] ranges = getCodeRanges(query);
+	Pattern pattern = getPattern(query);
+	Map<BibleVersion, Integer> versionCounts = new LinkedHashMap<BibleVersion, Integer>();
+	Map<BibleBook, Integer> bookCounts = new EnumMap<BibleBook, Integer>(BibleBook.class);
+
+	for (BibleVersion version : versions) {
+	    InvertedIndex index = source.getSearchIndex(version);
+	    if (index == null)
+		continue;
+
+	    int[] documents = pattern != null ? getMatching(pattern, version, index, index.getCandidates(pattern, ranges), source)
+		    : index.search(query.getText(), ranges, version.getAbbr());
+	    if (documents.length == 0)
+		continue;
+	    versionCounts.put(version, documents.length);
+
+	    // the documents are ordered by the codes, so the book changes only when the code passes its last code
+	    BibleBook book = null;
+	    int lastCode = Integer.MIN_VALUE;
+	    int count = 0;
+	    for (int document : documents) {
+		int code = index.getCode(document);
+		if (book == null || code > lastCode) {
+		    if (book != null)
+			addCount(bookCounts, book, count);
+		    book = Position.fromCode(code).getBook();
+		    lastCode = new Position(book, Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM).getCode();
+		    count = 0;
+		}
+		count++;
+	    }
+	    addCount(bookCounts, book, count);
+	}
+	return new SearchCounts(versionCounts, bookCounts);
+    }
+
+    /**
+     * Returns the text of the query with the words not found in the search indexes replaced by the most similar
+     * words which are found, so the corrected text matches some verses. Returns null if there's no such correction.
+     * The indexes of the versions are tried in the order of the versions. Only the queries of words are corrected.
+     *
+     * @param query search query
+     * @param versions searched Bible versions - the ones of the query or all the stored ones if the query has none
+     * @param source source of the indexes
+     * @return corrected text of the query or null
+     */
+    static String suggest(SearchQuery query, List<BibleVersion> versions, Source source) {
+	if (query.getMode() != SearchQuery.Mode.WORDS)
+	    return null;
+
+	int[] ranges = getCodeRanges(query);
+	for (BibleVersion version : versions) {
+	    InvertedIndex index = source.getSearchIndex(version);
+	    if (index == null)
+		continue;
+
+	    String suggestion = index.suggest(query.getText());
+	    if (suggestion != null && index.search(suggestion, ranges, version.getAbbr()).length > 0)
+		return suggestion;
+	}
+	return null;
+    }
+
+    /**
+     * Returns the terms of the search indexes starting with the prefix of a word, the ones in the most verses
+     * of all the versions first. The candidates are the most frequent terms of each index, then ordered
+     * by their numbers of the verses summed over the indexes.
+     *
+     * @param prefix prefix of a word
+     * @param limit the highest number of the returned terms
+     * @param versions Bible versions to complete the word from
+     * @param source source of the indexes
+     * @return terms starting with the prefix
+     */
+    static List<String> complete(String prefix, int limit, List<BibleVersion> versions, Source source) {
+	List<InvertedIndex> indexes = new ArrayList<InvertedIndex>();
+	for (BibleVersion version : versions) {
+	    InvertedIndex index = source.getSearchIndex(version);
+	    if (index != null)
+		indexes.add(index);
+	}
+	if (indexes.size() == 1)
+	    return indexes.get(0).complete(prefix, limit);
+
+	final Map<String, Integer> frequencies = new HashMap<String, Integer>();
+	for (InvertedIndex index : indexes) {
+	    for (String term : index.complete(prefix, limit))
+		frequencies.put(term, 0);
+	}
+	for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+	    for (InvertedIndex index : indexes)
+		entry.setValue(entry.getValue() + index.getDocumentFrequency(entry.getKey()));
+	}
+
+	List<String> terms = new ArrayList<String>(frequencies.keySet());
+	Collections.sort(terms, new Comparator<String>() {
+	    @Override
+	    public int compare(String term1, String term2) {
+		int frequency1 = frequencies.get(term1);
+		int frequency2 = frequencies.get(term2);
+		return frequency1 != frequency2 ? frequency2 - frequency1 : term1.compareTo(term2);
+	    }
+	});
+	return terms.size() > limit ? new ArrayList<String>(terms.subList(0, limit)) : terms;
+    }
+
+    /**
+     * Returns the Bible versions in the language (ignoring case), or all of them if the language is null.
+     */
+    static List<BibleVersion> getVersionsInLanguage(List<BibleVersion> versions, String language) {
+	if (language == null)
+	    return versions;
+	List<BibleVersion> inLanguage = new ArrayList<BibleVersion>();
+	for (BibleVersion version : versions) {
+	    if (language.equalsIgnoreCase(version.getLanguage()))
+		inLanguage.add(version);
+	}
+	return inLanguage;
+    }
+
+    private static void addCount(Map<BibleBook, Integer> bookCounts, BibleBook book, int count) {
+	Integer previous = bookCounts.get(book);
+	bookCounts.put(book, (previous != null ? previous : 0) + count);
+    }
+
+    /**
+     * Returns the pairs of the first and the last codes of the positions of the books, testaments and passages
+     * of the query. Returns the range of all the codes when the query has none of them.
+     */
+    private static int[] getCodeRanges(SearchQuery query) {
+	if (query.getBibleBooks().isEmpty() && query.getTestaments().isEmpty() && query.getPassages().isEmpty())
+	    return new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+	EnumSet<BibleBook> books = EnumSet.noneOf(BibleBook.class);
+	books.addAll(query.getBibleBooks());
+	for (BibleBook book : BibleBook.values()) {
+	    if (query.getTestaments().contains(book.getTestament()))
+		books.add(book);
+	}
+
+	int[] ranges = new int[(books.size() + query.getPassages().size()) * 2];
+	int i = 0;
+	for (BibleBook book : books) {
+	    ranges[i++] = new Position(book, 0, 0).getCode();
+	    ranges[i++] = new Position(book, Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM).getCode();
+	}
+	for (SearchQuery.Passage passage : query.getPassages()) {
+	    ranges[i++] = passage.getFirst().getCode();
+	    ranges[i++] = passage.getLast().getCode();
+	}
+	return ranges;
+    }
+
+    /**
+     * Returns the pattern of the substring or regular expression query, or null for the query of words.
+     *
+     * @throws java.util.regex.PatternSyntaxException when the regular expression is not valid
+     */
+    private static Pattern getPattern(SearchQuery query) {
+	switch (query.getMode()) {
+	    case SUBSTRING:
+		return Pattern.compile(query.getText(), Pattern.LITERAL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+	    case REGEX:
+		return Pattern.compile(query.getText());
+	    default:
+		return null;
+	}
+    }
+
+    /**
+     * Returns the pairs of the start and end offsets of the non-empty matches of the pattern in the text,
+     * or null if the pattern isn't found in the text.
+     */
+    private static int[] getMatchOffsets(Pattern pattern, String text) {
+	Matcher matcher = pattern.matcher(text);
+	if (!matcher.find())
+	    return null;
+
+	int[] offsets = new int[8];
+	int count = 0;
+	do {
+	    if (matcher.start() == matcher.end())
+		continue;
+	    if (count == offsets.length)
+		offsets = Arrays.copyOf(offsets, count * 2);
+	    offsets[count++] = matcher.start();
+	    offsets[count++] = matcher.end();
+	} while (matcher.find());
+	return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Returns the candidate documents whose verses really match the pattern.
+     */
+    private static int[] getMatching(Pattern pattern, BibleVersion version, InvertedIndex index, int[] candidates, Source source) {
+	int[] documents = new int[candidates.length];
+	int count = 0;
+	for (int chunk = 0; chunk < candidates.length; chunk += MAX_VERSES_PER_RETRIEVAL) {
+	    int[] keys = new int[Math.min(MAX_VERSES_PER_RETRIEVAL, candidates.length - chunk)];
+	    for (int i = 0; i < keys.length; i++)
+		keys[i] = index.getKey(candidates[chunk + i]);
+	    List<Verse> verses = source.getVerses(version, keys);
+	    for (int i = 0; i < keys.length; i++) {
+		if (pattern.matcher(verses.get(i).getText()).find())
+		    documents[count++] = candidates[chunk + i];
+	    }
+	}
+	return Arrays.copyOf(documents, count);
+    }
+
+    /**
+     * Passes the verses matching the pattern to the handler, ordered by the versions and positions. The verses
+     * possibly matching the pattern are retrieved in chunks and matched, until the handler or the limit stops the search.
+     */
+    private static void searchPattern(SearchQuery query, Pattern pattern, List<BibleVersion> versions, int[] ranges,
+				      Source source, ResultHandler<VerseMatch> handler) {
+	int skipped = query.getOffset();
+	int remaining = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+
+	for (BibleVersion version : versions) {
+	    InvertedIndex index = source.getSearchIndex(version);
+	    if (index == null)
+		continue;
+
+	    int[] candidates = index.getCandidates(pattern, ranges);
+	    for (int chunk = 0; chunk < candidates.length; chunk += MAX_VERSES_PER_RETRIEVAL) {
+		int[] keys = new int[Math.min(MAX_VERSES_PER_RETRIEVAL, candidates.length - chunk)];
+		for (int i = 0; i < keys.length; i++)
+		    keys[i] = index.getKey(candidates[chunk + i]);
+		for (Verse verse : source.getVerses(version, keys)) {
+		    // the matches are found anyway, so they're always highlighted
+		    int[] offsets = getMatchOffsets(pattern, verse.getText());
+		    if (offsets == null)
+			continue;
+		    if (skipped > 0) {
+			skipped--;
+			continue;
+		    }
+		    if (!handler.handle(new VerseMatch(verse, offsets)) || --remaining == 0)
+			return;
+		}
+	    }
+	}
+    }
+
+    private static void searchInOrder(SearchQuery query, List<BibleVersion> versions, int[] ranges,
+				      Source source, boolean highlighted, ResultHandler<VerseMatch> handler) {
+	int skipped = query.getOffset();
+	int remaining = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+
+	for (BibleVersion version : versions) {
+	    InvertedIndex index = source.getSearchIndex(version);
+	    if (index == null)
+		continue;
+
+	    int[] documents = index.search(query.getText(), ranges, version.getAbbr());
+	    if (skipped >= documents.length) {
+		skipped -= documents.length;
+		continue;
+	    }
+
+	    int from = skipped;
+	    int to = (int) Math.min(documents.length, (long) from + remaining);
+	    skipped = 0;
+	    remaining -= to - from;
+
+	    for (int chunk = from; chunk < to; chunk += MAX_VERSES_PER_RETRIEVAL) {
+		int[] chunkDocuments = Arrays.copyOfRange(documents, chunk, Math.min(to, chunk + MAX_VERSES_PER_RETRIEVAL));
+		int[] keys = new int[chunkDocuments.length];
+		for (int i = 0; i < keys.length; i++)
+		    keys[i] = index.getKey(chunkDocuments[i]);
+		int[][] offsets = highlighted ? index.getMatchOffsets(query.getText(), chunkDocuments) : null;
+
+		List<Verse> verses = source.getVerses(version, keys);
+		for (int i = 0; i < verses.size(); i++) {
+		    if (!handler.handle(new VerseMatch(verses.get(i), offsets != null ? offsets[i] : NO_OFFSETS)))
+			return;
+		}
+	    }
+
+	    if (remaining == 0)
+		return;
+	}
+    }
+
+    private static void searchRanked(SearchQuery query, List<BibleVersion> versions, int[] ranges,
+				     Source source, boolean highlighted, ResultHandler<VerseMatch> handler) {
+	int capacity = query.getLimit() > 0 ? (int) Math.min(Integer.MAX_VALUE, (long) query.getOffset() + query.getLimit()) : 0;
+	TopHits top = new TopHits(capacity);
+	List<InvertedIndex> indexes = new ArrayList<InvertedIndex>();
+
+	for (int v = 0; v < versions.size(); v++) {
+	    InvertedIndex index = source.getSearchIndex(versions.get(v));
+	    indexes.add(index);
+	    if (index == null)
+		continue;
+
+	    int[] documents = index.search(query.getText(), ranges, versions.get(v).getAbbr());
+	    float[] scores = index.score(query.getText(), documents);
+	    for (int i = 0; i < documents.length; i++)
+		top.add(scores[i], v, documents[i]);
+	}
+
+	List<TopHits.Hit> hits = top.getHits();
+	if (query.getOffset() >= hits.size())
+	    return;
+	hits = hits.subList(query.getOffset(), hits.size());
+
+	for (int chunk = 0; chunk < hits.size(); chunk += MAX_VERSES_PER_RETRIEVAL) {
+	    List<TopHits.Hit> chunkHits = hits.subList(chunk, Math.min(hits.size(), chunk + MAX_VERSES_PER_RETRIEVAL));
+	    Map<Long, VerseMatch> verses = retrieveVerses(chunkHits, versions, indexes, highlighted ? query.getText() : null, source);
+	    for (TopHits.Hit hit : chunkHits) {
+		if (!handler.handle(verses.get(getHitKey(hit))))
+		    return;
+	    }
+	}
+    }
+
+    private static long getHitKey(TopHits.Hit hit) {
+	return ((long) hit.getSource() << 32) | hit.getDocument();
+    }
+
+    /**
+     * Retrieves the verses of the hits, one retrieval per Bible version. The matches of the text
+     * are highlighted, unless it's null.
+     */
+    private static Map<Long, VerseMatch> retrieveVerses(List<TopHits.Hit> hits, List<BibleVersion> versions,
+							List<InvertedIndex> indexes, String text, Source source) {
+	Map<Integer, List<Integer>> documentsByVersion = new HashMap<Integer, List<Integer>>();
+	for (TopHits.Hit hit : hits) {
+	    List<Integer> documents = documentsByVersion.get(hit.getSource());
+	    if (documents == null) {
+		documents = new ArrayList<Integer>();
+		documentsByVersion.put(hit.getSource(), documents);
+	    }
+	    documents.add(hit.getDocument());
+	}
+
+	Map<Long, VerseMatch> verses = new HashMap<Long, VerseMatch>();
+	for (Map.Entry<Integer, List<Integer>> entry : documentsByVersion.entrySet()) {
+	    int v = entry.getKey();
+	    int[] documents = new int[entry.getValue().size()];
+	    for (int i = 0; i < documents.length; i++)
+		documents[i] = entry.getValue().get(i);
+	    Arrays.sort(documents);
+
+	    int[] keys = new int[documents.length];
+	    for (int i = 0; i < documents.length; i++)
+		keys[i] = indexes.get(v).getKey(documents[i]);
+
+	    List<Verse> retrieved = source.getVerses(versions.get(v), keys);
+	    int[][] offsets = text != null ? indexes.get(v).getMatchOffsets(text, documents) : null;
+	    for (int i = 0; i < documents.length; i++)
+		verses.put(((long) v << 32) | documents[i], new VerseMatch(retrieved.get(i), offsets != null ? offsets[i] : NO_OFFSETS));
+	}
+	return verses;
+    }
+
+}
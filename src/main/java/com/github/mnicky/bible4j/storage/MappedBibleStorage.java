@@ -0,0 +1,559 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mnicky.bible4j.AppRunner;
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Bookmark;
+import com.github.mnicky.bible4j.data.Note;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.search.InvertedIndex;
+import com.github.mnicky.bible4j.search.LanguageAnalyzer;
+
+/**
+ * Read-only {@link BibleStorage} reading the Bible versions from files in the binary format defined
+ * by {@link BinaryBibleFormat}. The files are mapped to memory, so the texts of the verses are decoded
+ * only when they're read and the mapped pages can be shared by more processes.
+ * <p>
+ * The storage contains no notes and no bookmarks and all the writes throw BibleStorageException.
+ * The search index of a Bible version is built in memory when the version is searched for the first time
+ * (or when it's indexed by {@link #indexBibleVersion(BibleVersion)}). Thread-safe.
+ */
+public final class MappedBibleStorage implements BibleStorage {
+
+    private final static Logger logger = LoggerFactory.getLogger(AppRunner.AppLogger.class);
+
+    /**
+     * Mapped Bible versions, by their lower-cased abbreviation, ordered by the abbreviation.
+     * Not modified after the construction.
+     */
+    private final Map<String, MappedVersion> versions = new TreeMap<String, MappedVersion>();
+
+    /**
+     * Constructs new MappedBibleStorage reading the Bible versions from the specified files.
+     *
+     * @param files files in the binary format, one per Bible version
+     * @throws BibleStorageException when some of the files could not be read
+     */
+    public MappedBibleStorage(File... files) {
+	for (File file : files) {
+	    try {
+		MappedVersion version = new MappedVersion(file);
+		versions.put(getKey(version.version.getAbbr()), version);
+	    } catch (IOException e) {
+		logger.error("Exception caught when mapping the Bible file: {}", file, e);
+		throw new BibleStorageException("Bible file could not be read", e);
+	    } catch (BufferUnderflowException e) {
+		logger.error("Exception caught when mapping the Bible file: {}", file, e);
+		throw new BibleStorageException("Bible file is truncated", e);
+	    }
+	}
+    }
+
+    /**
+     * One mapped Bible version.
+     */
+    private static final class MappedVersion {
+
+	private final BibleVersion version;
+
+	/**
+	 * Codes of the positions of the verses, in ascending order.
+	 */
+	private final IntBuffer codes;
+
+	/**
+	 * Offsets of the texts of the verses in the text arena, followed by the length of the arena.
+	 */
+	private final IntBuffer offsets;
+
+	/**
+	 * Texts of the verses.
+	 */
+	private final ByteBuffer arena;
+
+	private final int size;
+
+	/**
+	 * Search index of the verses, with their indexes as the keys of the documents. Built on demand.
+	 */
+	private volatile InvertedIndex searchIndex;
+
+	private MappedVersion(File file) throws IOException {
+	    RandomAccessFile raf = new RandomAccessFile(file, "r");
+	    MappedByteBuffer buffer;
+	    try {
+		// the mapping stays valid after the channel is closed
+		buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+	    } finally {
+		raf.close();
+	    }
+
+	    if (buffer.getInt() != BinaryBibleFormat.MAGIC)
+		throw new IOException("File " + file + " is not a Bible file.");
+	    int formatVersion = buffer.getInt();
+	    if (formatVersion != BinaryBibleFormat.FORMAT_VERSION)
+		throw new IOException("Unsupported version " + formatVersion + " of the Bible file " + file + ".");
+
+	    String name = readString(buffer);
+	    String abbr = readString(buffer);
+	    String language = readString(buffer);
+	    version = new BibleVersion(name, abbr, language);
+	    size = buffer.getInt();
+
+	    codes = slice(buffer, size * 4).asIntBuffer();
+	    offsets = slice(buffer, (size + 1) * 4).asIntBuffer();
+	    arena = buffer.slice();
+	    if (arena.capacity() < offsets.get(size))
+		throw new IOException("Bible file " + file + " is truncated.");
+	}
+
+	/**
+	 * Returns the next <code>length</code> bytes of the buffer as a new buffer and skips them.
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int length) {
+	    if (buffer.remaining() < length)
+		throw new BufferUnderflowException();
+	    ByteBuffer slice = buffer.slice();
+	    slice.limit(length);
+	    buffer.position(buffer.position() + length);
+	    return slice;
+	}
+
+	private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+	    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+	    buffer.get(bytes);
+	    return new String(bytes, BinaryBibleFormat.ENCODING);
+	}
+
+	private Verse getVerse(int index) {
+	    int offset = offsets.get(index);
+	    byte[] bytes = new byte[offsets.get(index + 1) - offset];
+	    // relative reads change the position, so the shared buffer is not used directly
+	    ByteBuffer text = arena.duplicate();
+	    text.position(offset);
+	    text.get(bytes);
+	    try {
+		return new Verse(new String(bytes, BinaryBibleFormat.ENCODING), Position.fromCode(codes.get(index)), version);
+	    } catch (UnsupportedEncodingException e) {
+		throw new BibleStorageException("Verse could not be decoded", e);
+	    }
+	}
+
+	/**
+	 * Returns the index of the first verse with the code not lower than the specified one.
+	 */
+	private int lowerBound(int code) {
+	    int low = 0;
+	    int high = size;
+	    while (low < high) {
+		int middle = (low + high) >>> 1;
+		if (codes.get(middle) < code)
+		    low = middle + 1;
+		else
+		    high = middle;
+	    }
+	    return low;
+	}
+
+	/**
+	 * Returns the index of the verse with the specified code or -1 if there's no such verse.
+	 */
+	private int indexOf(int code) {
+	    int index = lowerBound(code);
+	    return (index < size && codes.get(index) == code) ? index : -1;
+	}
+
+	/**
+	 * Returns the search index of the verses, building it if it's not built yet.
+	 */
+	private InvertedIndex getSearchIndex() {
+	    InvertedIndex index = searchIndex;
+	    if (index == null) {
+		InvertedIndex.Builder builder = new InvertedIndex.Builder(new LanguageAnalyzer(version.getLanguage()));
+		for (int i = 0; i < size; i++)
+		    builder.add(codes.get(i), i, getVerse(i).getText());
+		index = builder.build();
+		searchIndex = index;
+	    }
+	    return index;
+	}
+
+	/**
+	 * Passes the verses from the index <code>from</code> (inclusive) to the index <code>to</code> (exclusive) to the handler.
+	 */
+	private void handleVerses(int from, int to, ResultHandler<Verse> handler) {
+	    for (int i = from; i < to; i++) {
+		if (!handler.handle(getVerse(i)))
+		    break;
+	    }
+	}
+
+    }
+
+    private static String getKey(String abbr) {
+	return abbr.toLowerCase(new Locale("en"));
+    }
+
+    private MappedVersion getMappedVersion(BibleVersion version) {
+	return versions.get(getKey(version.getAbbr()));
+    }
+
+    @Override
+    public void close() {
+	// the mappings are released when the buffers are garbage collected
+    }
+
+    @Override
+    public boolean isStorageInitialized() {
+	return true;
+    }
+
+    @Override
+    public int[] initializeStorage() {
+	return null;
+    }
+
+    private BibleStorageException readOnly() {
+	return new BibleStorageException("MappedBibleStorage is read-only");
+    }
+
+    @Override
+    public void insertVerse(Verse verse) {
+	throw readOnly();
+    }
+
+    @Override
+    public void insertVerses(List<Verse> verses) {
+	throw readOnly();
+    }
+
+    @Override
+    public void insertBibleVersion(BibleVersion version) {
+	throw readOnly();
+    }
+
+    @Override
+    public void insertPosition(Position position) {
+	throw readOnly();
+    }
+
+    @Override
+    public void insertBibleBook(BibleBook book) {
+	throw readOnly();
+    }
+
+    @Override
+    public BibleVersion getBibleVersion(String abbr) {
+	MappedVersion mapped = versions.get(getKey(abbr));
+	return mapped != null ? mapped.version : null;
+    }
+
+    @Override
+    public List<BibleVersion> getAllBibleVersions() {
+	List<BibleVersion> versionList = new ArrayList<BibleVersion>();
+	for (MappedVersion mapped : versions.values())
+	    versionList.add(mapped.version);
+	return versionList;
+    }
+
+    @Override
+    public Verse getVerse(Position position, BibleVersion version) {
+	MappedVersion mapped = getMappedVersion(version);
+	if (mapped == null)
+	    return null;
+
+	int index = mapped.indexOf(position.getCode());
+	return index >= 0 ? mapped.getVerse(index) : null;
+    }
+
+    @Override
+    public List<Verse> getVerses(List<Position> positions, BibleVersion version) {
+	List<Verse> verseList = new ArrayList<Verse>();
+	MappedVersion mapped = getMappedVersion(version);
+	if (mapped == null)
+	    return verseList;
+
+	for (Position position : positions) {
+	    int index = mapped.indexOf(position.getCode());
+	    if (index >= 0)
+		verseList.add(mapped.getVerse(index));
+	}
+	return verseList;
+    }
+
+    @Override
+    public List<Verse> getChapter(Position chapter, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	getChapter(chapter, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getChapter(Position chapter, BibleVersion version, ResultHandler<Verse> handler) {
+	getPassage(new Position(chapter.getBook(), chapter.getChapterNum(), 0),
+		   new Position(chapter.getBook(), chapter.getChapterNum(), 0), version, handler);
+    }
+
+    @Override
+    public List<Position> getChapterList(BibleVersion version) {
+	ResultCollector<Position> collector = new ResultCollector<Position>();
+	getChapterList(version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getChapterList(BibleVersion version, ResultHandler<Position> handler) {
+	MappedVersion mapped = getMappedVersion(version);
+	if (mapped == null)
+	    return;
+
+	// jumps from chapter to chapter by binary search
+	int index = 0;
+	while (index < mapped.size) {
+	    Position verse = Position.fromCode(mapped.codes.get(index));
+	    if (!handler.handle(new Position(verse.getBook(), verse.getChapterNum(), 0)))
+		break;
+	    index = mapped.lowerBound(new Position(verse.getBook(), verse.getChapterNum(), Position.MAX_VERSE_NUM).getCode() + 1);
+	}
+    }
+
+    @Override
+    public List<Verse> getPassage(Position from, Position to, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	getPassage(from, to, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void getPassage(Position from, Position to, BibleVersion version, ResultHandler<Verse> handler) {
+	MappedVersion mapped = getMappedVersion(version);
+	if (mapped == null)
+	    return;
+
+	Position last;
+	if (to.getChapterNum() == 0)
+	    last = new Position(to.getBook(), Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM);
+	else if (to.getVerseNum() == 0)
+	    last = new Position(to.getBook(), to.getChapterNum(), Position.MAX_VERSE_NUM);
+	else
+	    last = to;
+
+	mapped.handleVerses(mapped.lowerBound(from.getCode()), mapped.lowerBound(last.getCode() + 1), handler);
+    }
+
+    @Override
+    public List<Verse> compareVerses(Position position, List<BibleVersion> versions) {
+	return compareVerses(Collections.singletonList(position), versions);
+    }
+
+    @Override
+    public List<Verse> compareVerses(List<Position> positions, List<BibleVersion> versions) {
+	List<Verse> verseList = new ArrayList<Verse>();
+	for (BibleVersion version : versions)
+	    verseList.addAll(getVerses(positions, version));
+	return verseList;
+    }
+
+    @Override
+    public void insertNote(Note note) {
+	throw readOnly();
+    }
+
+    @Override
+    public int deleteNote(Position position) {
+	throw readOnly();
+    }
+
+    @Override
+    public List<Note> getNotes(Position position) {
+	return new ArrayList<Note>();
+    }
+
+    @Override
+    public List<Note> getNotesForChapter(Position chapter) {
+	return new ArrayList<Note>();
+    }
+
+    @Override
+    public void insertBookmark(Bookmark bookmark) {
+	throw readOnly();
+    }
+
+    @Override
+    public int deleteBookmark(String bookmarkName) {
+	throw readOnly();
+    }
+
+    @Override
+    public List<Bookmark> getBookmarks() {
+	return new ArrayList<Bookmark>();
+    }
+
+    @Override
+    public void getBookmarks(ResultHandler<Bookmark> handler) {
+    }
+
+    @Override
+    public List<Bookmark> getBookmarks(BibleVersion version) {
+	return new ArrayList<Bookmark>();
+    }
+
+    @Override
+    public void getBookmarks(BibleVersion version, ResultHandler<Bookmark> handler) {
+    }
+
+    /**
+     * Source of the search indexes and the verses of the mapped Bible versions.
+     */
+    private final IndexSearcher.Source searchSource = new IndexSearcher.Source() {
+
+	@Override
+	public InvertedIndex getSearchIndex(BibleVersion version) {
+	    MappedVersion mapped = getMappedVersion(version);
+	    return mapped == null ? null : mapped.getSearchIndex();
+	}
+
+	@Override
+	public List<Verse> getVerses(BibleVersion version, int[] keys) {
+	    MappedVersion mapped = getMappedVersion(version);
+	    List<Verse> verses = new ArrayList<Verse>(keys.length);
+	    for (int key : keys)
+		verses.add(mapped.getVerse(key));
+	    return verses;
+	}
+
+    };
+
+    @Override
+    public void indexBibleVersion(BibleVersion version) {
+	MappedVersion mapped = getMappedVersion(version);
+	if (mapped != null)
+	    mapped.getSearchIndex();
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVersesForText(String text, ResultHandler<Verse> handler) {
+	searchVerses(new SearchQuery(text), handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleVersion version, ResultHandler<Verse> handler) {
+	SearchQuery query = new SearchQuery(text);
+	query.addBibleVersion(version);
+	searchVerses(query, handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleBook book) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, book, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleBook book, ResultHandler<Verse> handler) {
+	SearchQuery query = new SearchQuery(text);
+	query.addBibleBook(book);
+	searchVerses(query, handler);
+    }
+
+    @Override
+    public List<Verse> searchVersesForText(String text, BibleBook book, BibleVersion version) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVersesForText(text, book, version, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVersesForText(String text, BibleBook book, BibleVersion version, ResultHandler<Verse> handler) {
+	SearchQuery query = new SearchQuery(text);
+	query.addBibleBook(book);
+	query.addBibleVersion(version);
+	searchVerses(query, handler);
+    }
+
+    @Override
+    public List<Verse> searchVerses(SearchQuery query) {
+	ResultCollector<Verse> collector = new ResultCollector<Verse>();
+	searchVerses(query, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchVerses(SearchQuery query, ResultHandler<Verse> handler) {
+	List<BibleVersion> searched = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	IndexSearcher.search(query, searched, searchSource, handler);
+    }
+
+    @Override
+    public List<VerseMatch> searchMatches(SearchQuery query) {
+	ResultCollector<VerseMatch> collector = new ResultCollector<VerseMatch>();
+	searchMatches(query, collector);
+	return collector.getResults();
+    }
+
+    @Override
+    public void searchMatches(SearchQuery query, ResultHandler<VerseMatch> handler) {
+	List<BibleVersion> searched = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	IndexSearcher.searchMatches(query, searched, searchSource, handler);
+    }
+
+    @Override
+    public SearchCounts countVerses(SearchQuery query) {
+	List<BibleVersion> searched = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	return IndexSearcher.count(query, searched, searchSource);
+    }
+
+    @Override
+    public String suggestSearchText(SearchQuery query) {
+	List<BibleVersion> searched = query.getBibleVersions().isEmpty() ? getAllBibleVersions() : query.getBibleVersions();
+	return IndexSearcher.suggest(query, searched, searchSource);
+    }
+
+    @Override
+    public List<String> completeSearchTerm(String prefix, int limit, List<BibleVersion> versions) {
+	List<BibleVersion> searched = versions.isEmpty() ? getAllBibleVersions() : versions;
+	return IndexSearcher.complete(prefix, limit, searched, searchSource);
+    }
+
+    @Override
+    public List<String> completeSearchTerm(String prefix, int limit, String language) {
+	List<BibleVersion> searched = IndexSearcher.getVersionsInLanguage(getAllBibleVersions(), language);
+	return IndexSearcher.complete(prefix, limit, searched, searchSource);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ResultHandler} collecting all the results into a list.
+ *
+ * @param <T> type of the results
+ */
+final class ResultCollector<T> implements ResultHandler<T> {
+
+    private final List<T> results = new ArrayList<T>();
+
+    @Override
+    public boolean handle(T result) {
+	results.add(result);
+	return true;
+    }
+
+    /**
+     * Returns the results collected so far.
+     *
+     * @return list of the collected results
+     */
+    List<T> getResults() {
+	return results;
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.github.mnicky.bible4j.storage;
+
+/**
+ * Handler of the results streamed by {@link BibleStorage}, one result at a time.
+ * The results are passed to the handler while they're read from the storage, so the handler
+ * must not call any methods of the storage itself.
+ *
+ * @param <T> type of the results
+ */
+public interface ResultHandler<T> {
+
+    /**
+     * Handles the next result.
+     *
+     * @param result the next result
+     * @return true to continue with the next result, false to stop
+     */
+    boolean handle(T result);
+
+}
@@ -0,0 +1,89 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleBook.Testament;
+import com.github.mnicky.bible4j.data.BibleVersion;
+
+/**
+ * Numbers of the verses matching a search query (see {@link BibleStorage#countVerses(SearchQuery)}) - the total one
+ * and the ones by the Bible versions, books and testaments. Only the versions, books and testaments with some
+ * matching verses are included. Immutable.
+ */
+public final class SearchCounts {
+
+    private final int total;
+
+    private final Map<BibleVersion, Integer> versionCounts;
+
+    private final Map<BibleBook, Integer> bookCounts;
+
+    private final Map<Testament, Integer> testamentCounts;
+
+    /**
+     * Constructs new SearchCounts from the numbers of the matching verses by the Bible versions and by the books.
+     * The total number and the numbers by the testaments are summed up from them.
+     */
+    SearchCounts(Map<BibleVersion, Integer> versionCounts, Map<BibleBook, Integer> bookCounts) {
+	int sum = 0;
+	for (int count : versionCounts.values())
+	    sum += count;
+	this.total = sum;
+
+	Map<Testament, Integer> testaments = new EnumMap<Testament, Integer>(Testament.class);
+	for (Map.Entry<BibleBook, Integer> entry : bookCounts.entrySet()) {
+	    Integer count = testaments.get(entry.getKey().getTestament());
+	    testaments.put(entry.getKey().getTestament(), (count != null ? count : 0) + entry.getValue());
+	}
+
+	this.versionCounts = Collections.unmodifiableMap(new LinkedHashMap<BibleVersion, Integer>(versionCounts));
+	this.bookCounts = Collections.unmodifiableMap(new EnumMap<BibleBook, Integer>(bookCounts));
+	this.testamentCounts = Collections.unmodifiableMap(testaments);
+    }
+
+    /**
+     * Returns the number of all the matching verses.
+     *
+     * @return number of the matching verses
+     */
+    public int getTotal() {
+	return total;
+    }
+
+    /**
+     * Returns the numbers of the matching verses by the Bible versions, in the order the versions were searched in.
+     *
+     * @return numbers of the matching verses by the Bible versions
+     */
+    public Map<BibleVersion, Integer> getVersionCounts() {
+	return versionCounts;
+    }
+
+    /**
+     * Returns the numbers of the matching verses by the Bible books (summed up over the versions), in the order of the books.
+     *
+     * @return numbers of the matching verses by the Bible books
+     */
+    public Map<BibleBook, Integer> getBookCounts() {
+	return bookCounts;
+    }
+
+    /**
+     * Returns the numbers of the matching verses by the testaments (summed up over the versions).
+     *
+     * @return numbers of the matching verses by the testaments
+     */
+    public Map<Testament, Integer> getTestamentCounts() {
+	return testamentCounts;
+    }
+
+    @Override
+    public String toString() {
+	return total + " verses, by versions " + versionCounts + ", by books " + bookCounts + ", by testaments " + testamentCounts;
+    }
+
+}
@@ -0,0 +1,237 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleBook.Testament;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Position;
+
+/**
+ * Specification of a search of the verses (see {@link BibleStorage#searchVerses(SearchQuery)}).
+ * The text of the query is mandatory, all the other settings are optional:
+ * <ul>
+ * <li>Bible versions - only the specified versions are searched (all the versions when none is specified)</li>
+ * <li>Bible books, testaments and passages - only the verses from any of the specified books, testaments
+ * or passages are searched (all the verses when none is specified)</li>
+ * <li>mode - whether the text is a query of words (see {@link com.github.mnicky.bible4j.search.QueryParser}),
+ * a substring or a regular expression</li>
+ * <li>ranked - the found verses are ordered by their relevance to the text instead of by their Bible versions
+ * and positions (only the queries of words can be ranked)</li>
+ * <li>offset and limit - only the found verses from the offset on are returned, at most limit of them
+ * (all of them when the limit is 0)</li>
+ * </ul>
+ * Not thread-safe.
+ */
+public final class SearchQuery {
+
+    /**
+     * Meaning of the text of the query.
+     */
+    public enum Mode {
+
+	/**
+	 * Query of words, see {@link com.github.mnicky.bible4j.search.QueryParser}.
+	 */
+	WORDS,
+
+	/**
+	 * Substring of the text of the verse, compared case-insensitively.
+	 */
+	SUBSTRING,
+
+	/**
+	 * Regular expression (see {@link java.util.regex.Pattern}) found in the text of the verse.
+	 */
+	REGEX
+
+    }
+
+    private final String text;
+
+    private final List<BibleVersion> versions = new ArrayList<BibleVersion>();
+
+    private final List<BibleBook> books = new ArrayList<BibleBook>();
+
+    private final List<Testament> testaments = new ArrayList<Testament>();
+
+    private final List<Passage> passages = new ArrayList<Passage>();
+
+    private Mode mode = Mode.WORDS;
+
+    private boolean ranked = false;
+
+    private int offset = 0;
+
+    private int limit = 0;
+
+    /**
+     * Constructs new SearchQuery searching for the specified text.
+     *
+     * @param text text to search for
+     */
+    public SearchQuery(String text) {
+	this.text = text;
+    }
+
+    public String getText() {
+	return text;
+    }
+
+    /**
+     * Restricts the search to the Bible version, in addition to the already added ones.
+     *
+     * @param version Bible version to search
+     */
+    public void addBibleVersion(BibleVersion version) {
+	versions.add(version);
+    }
+
+    public List<BibleVersion> getBibleVersions() {
+	return Collections.unmodifiableList(versions);
+    }
+
+    /**
+     * Restricts the search to the Bible book, in addition to the already added ones.
+     *
+     * @param book Bible book to search
+     */
+    public void addBibleBook(BibleBook book) {
+	books.add(book);
+    }
+
+    public List<BibleBook> getBibleBooks() {
+	return Collections.unmodifiableList(books);
+    }
+
+    /**
+     * Restricts the search to the testament, in addition to the already added books, testaments and passages.
+     *
+     * @param testament Bible testament to search
+     */
+    public void addTestament(Testament testament) {
+	testaments.add(testament);
+    }
+
+    public List<Testament> getTestaments() {
+	return Collections.unmodifiableList(testaments);
+    }
+
+    /**
+     * Restricts the search to the passage, in addition to the already added books, testaments and passages.
+     * To include whole chapters, use verse number {@link Position#MAX_VERSE_NUM} in the last position.
+     *
+     * @param first position of the first verse of the passage
+     * @param last position of the last verse of the passage
+     * @throws IllegalArgumentException when the last position precedes the first one
+     */
+    public void addPassage(Position first, Position last) {
+	if (first.getCode() > last.getCode())
+	    throw new IllegalArgumentException("The last position of the passage must not precede the first one.");
+	passages.add(new Passage(first, last));
+    }
+
+    public List<Passage> getPassages() {
+	return Collections.unmodifiableList(passages);
+    }
+
+    /**
+     * Sets the meaning of the text of the query.
+     *
+     * @param mode meaning of the text
+     */
+    public void setMode(Mode mode) {
+	if (mode == null)
+	    throw new IllegalArgumentException("Mode must not be null.");
+	this.mode = mode;
+    }
+
+    public Mode getMode() {
+	return mode;
+    }
+
+    /**
+     * Sets whether the found verses are ordered by their relevance to the text.
+     * Ignored unless the mode of the query is {@link Mode#WORDS}.
+     *
+     * @param ranked true to order the verses by their relevance
+     */
+    public void setRanked(boolean ranked) {
+	this.ranked = ranked;
+    }
+
+    public boolean isRanked() {
+	return ranked;
+    }
+
+    /**
+     * Sets the number of the found verses skipped at the beginning.
+     *
+     * @param offset number of the skipped verses
+     * @throws IllegalArgumentException when the offset is negative
+     */
+    public void setOffset(int offset) {
+	if (offset < 0)
+	    throw new IllegalArgumentException("Offset must not be negative.");
+	this.offset = offset;
+    }
+
+    public int getOffset() {
+	return offset;
+    }
+
+    /**
+     * Sets the highest number of the returned verses.
+     *
+     * @param limit the highest number of the returned verses, 0 for no limit
+     * @throws IllegalArgumentException when the limit is negative
+     */
+    public void setLimit(int limit) {
+	if (limit < 0)
+	    throw new IllegalArgumentException("Limit must not be negative.");
+	this.limit = limit;
+    }
+
+    public int getLimit() {
+	return limit;
+    }
+
+    /**
+     * Passage searched by the query - the verses from the first position to the last one, both inclusive.
+     * Immutable.
+     */
+    public static final class Passage {
+
+	private final Position first;
+
+	private final Position last;
+
+	private Passage(Position first, Position last) {
+	    this.first = first;
+	    this.last = last;
+	}
+
+	public Position getFirst() {
+	    return first;
+	}
+
+	public Position getLast() {
+	    return last;
+	}
+
+	@Override
+	public String toString() {
+	    return first + " - " + last;
+	}
+
+    }
+
+    @Override
+    public String toString() {
+	return "\"" + text + "\" in versions " + versions + " and books " + books + ", testaments " + testaments
+		+ " and passages " + passages + ", " + mode.toString().toLowerCase() + (ranked ? ", ranked" : "") + ", offset " + offset + ", limit " + limit;
+    }
+
+}
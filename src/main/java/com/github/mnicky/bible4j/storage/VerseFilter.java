@@ -0,0 +1,20 @@
+package com.github.mnicky.bible4j.storage;
+
+import com.github.mnicky.bible4j.data.Verse;
+
+/**
+ * Condition the verses scanned by {@link InMemoryBibleStorage#scanVerses(VerseFilter, java.util.List)} must meet.
+ * The verses are scanned by more threads at once, so the filter must be thread-safe and must not call
+ * any methods of the storage itself.
+ */
+public interface VerseFilter {
+
+    /**
+     * Returns true if the verse meets the condition.
+     *
+     * @param verse scanned verse
+     * @return true to return the verse, false to skip it
+     */
+    boolean accept(Verse verse);
+
+}
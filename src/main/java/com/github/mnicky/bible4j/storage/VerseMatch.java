@@ -0,0 +1,69 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.util.Arrays;
+
+import com.github.mnicky.bible4j.data.Verse;
+
+/**
+ * Verse found by {@link BibleStorage#searchMatches(SearchQuery)} with the offsets of the matches of the query
+ * in its text, to highlight them. The matches are ascending and don't overlap. Immutable.
+ */
+public final class VerseMatch {
+
+    private final Verse verse;
+
+    /**
+     * Pairs of the start (inclusive) and end (exclusive) offsets of the matches.
+     */
+    private final int[] offsets;
+
+    VerseMatch(Verse verse, int[] offsets) {
+	this.verse = verse;
+	this.offsets = offsets;
+    }
+
+    public Verse getVerse() {
+	return verse;
+    }
+
+    /**
+     * Returns the number of the matches in the text of the verse.
+     *
+     * @return number of the matches
+     */
+    public int getMatchCount() {
+	return offsets.length / 2;
+    }
+
+    /**
+     * Returns the offset of the first character of the match in the text of the verse.
+     *
+     * @param match index of the match
+     * @return start offset of the match
+     * @throws IndexOutOfBoundsException when there's no such match
+     */
+    public int getMatchStart(int match) {
+	if (match < 0 || match >= getMatchCount())
+	    throw new IndexOutOfBoundsException("No match " + match + " in the verse.");
+	return offsets[2 * match];
+    }
+
+    /**
+     * Returns the offset after the last character of the match in the text of the verse.
+     *
+     * @param match index of the match
+     * @return end offset of the match
+     * @throws IndexOutOfBoundsException when there's no such match
+     */
+    public int getMatchEnd(int match) {
+	if (match < 0 || match >= getMatchCount())
+	    throw new IndexOutOfBoundsException("No match " + match + " in the verse.");
+	return offsets[2 * match + 1];
+    }
+
+    @Override
+    public String toString() {
+	return verse + " " + Arrays.toString(offsets);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.github.mnicky.bible4j.cli;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.storage.BibleStorage;
+import com.github.mnicky.bible4j.storage.H2DbBibleStorage;
+import com.github.mnicky.bible4j.storage.SearchQuery;
+import com.github.mnicky.bible4j.storage.VerseMatch;
+
+/**
+ * Unit tests for SearchCommandRunner class.
+ */
+public class SearchCommandRunner_Test {
+
+    private Connection conn;
+
+    private BibleStorage bible;
+
+    /**
+     * Texts of the queries the runner searched for.
+     */
+    private final List<String> searched = new ArrayList<String>();
+
+    /**
+     * Verses found by the searches of the runner.
+     */
+    private final List<Verse> found = new ArrayList<Verse>();
+
+    @BeforeMethod
+    public void setUpTest() throws SQLException {
+	searched.clear();
+	found.clear();
+	conn = DriverManager.getConnection("jdbc:h2:mem:cli", "test", "");
+	final BibleStorage storage = new H2DbBibleStorage(conn);
+
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	storage.initializeStorage();
+	storage.insertBibleVersion(kjv);
+	storage.insertVerses(Arrays.asList(
+	    new Verse("Thou shalt love thy neighbour as thyself.", new Position(BibleBook.LEVITICUS, 19, 18), kjv),
+	    new Verse("Jesus saith to Simon Peter, Simon, son of Jonas, lovest thou me?", new Position(BibleBook.JOHN, 21, 15), kjv),
+	    new Verse("A new commandment I give unto you, That ye love one another.", new Position(BibleBook.JOHN, 13, 34), kjv)));
+
+	// records the searches of the runner, the storage does the rest
+	bible = (BibleStorage) Proxy.newProxyInstance(BibleStorage.class.getClassLoader(), new Class<?>[] { BibleStorage.class },
+						      new InvocationHandler() {
+	    @Override
+	    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Object result;
+		try {
+		    result = method.invoke(storage, args);
+		} catch (InvocationTargetException e) {
+		    throw e.getCause();
+		}
+		if (method.getName().equals("searchMatches")) {
+		    searched.add(((SearchQuery) args[0]).getText());
+		    for (Object match : (List<?>) result)
+			found.add(((VerseMatch) match).getVerse());
+		}
+		return result;
+	    }
+	});
+    }
+
+    @AfterMethod
+    public void tearDownTest() throws SQLException {
+	conn.close();
+    }
+
+    private void search(String... args) {
+	SearchCommandRunner runner = new SearchCommandRunner(bible);
+	runner.parseCommandLine(args);
+	runner.doRequestedAction();
+    }
+
+    @Test
+    public void quotedValueOfMoreWordsShouldBeSearchedAsPhrase() {
+	search("love thy neighbour");
+
+	Assert.assertEquals(searched, Arrays.asList("\"love thy neighbour\""));
+	Assert.assertEquals(found.size(), 1);
+	Assert.assertEquals(found.get(0).getPosition(), new Position(BibleBook.LEVITICUS, 19, 18));
+    }
+
+    @Test
+    public void quotedValueWithOperatorsOrFieldsShouldBeSearchedAsQuery() {
+	search("love NOT book:john");
+	search("simon NEAR/3 peter");
+
+	Assert.assertEquals(searched, Arrays.asList("love NOT book:john", "simon NEAR/3 peter"));
+	Assert.assertEquals(found.size(), 2);
+	Assert.assertEquals(found.get(0).getPosition(), new Position(BibleBook.LEVITICUS, 19, 18));
+	Assert.assertEquals(found.get(1).getPosition(), new Position(BibleBook.JOHN, 21, 15));
+    }
+
+    @Test
+    public void fuzzyShouldNotChangeOperatorsAndFields() {
+	search("love", "NOT", "book:john", "-fuzzy");
+
+	Assert.assertEquals(searched, Arrays.asList("love~ NOT book:john"));
+    }
+
+}
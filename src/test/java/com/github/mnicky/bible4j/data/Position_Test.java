@@ -97,5 +97,27 @@ public class Position_Test {
     public void compTestHelp(int n, Position p1, Position p2, int exp) {
 	assertEquals(p1.compareTo(p2), exp, "call no. " + n + " failed");
     }
+
+    @Test
+    public void fromCodeShouldReturnEncodedPosition() {
+	Assert.assertEquals(Position.fromCode(pos1.getCode()), pos1);
+	Assert.assertEquals(Position.fromCode(pos4.getCode()), pos4);
+	Assert.assertEquals(Position.fromCode(new Position(BibleBook.PSALMS, 119, 176).getCode()), new Position(BibleBook.PSALMS, 119, 176));
+    }
+
+    @Test
+    public void codesShouldBeOrderedLikePositions() {
+	Position[] positions = { new Position(BibleBook.ACTS, 1, 2), new Position(BibleBook.ACTS, 1, 1),
+				 new Position(BibleBook.ACTS, 2, 0), new Position(BibleBook.LUKE, 24, 53),
+				 new Position(BibleBook.JOHN, 1, 2) };
+	for (Position p1 : positions)
+	    for (Position p2 : positions)
+		Assert.assertEquals(Integer.signum(p1.getCode() - p2.getCode()), p1.compareTo(p2), p1 + " vs. " + p2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getCodeShouldThrowExceptionForTooHighVerseNumber() {
+	new Position(BibleBook.JOHN, 1, Position.MAX_VERSE_NUM + 1).getCode();
+    }
     
 }
@@ -0,0 +1,58 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for Completions class.
+ */
+public class Completions_Test {
+
+    @Test
+    public void getShouldReturnMostFrequentTermsWithPrefix() {
+	Completions completions = new Completions(new String[] { "a", "ab", "abc", "b" }, new int[] { 1, 5, 5, 2 });
+
+	Assert.assertEquals(completions.get("a", 10), new String[] { "ab", "abc", "a" });
+	Assert.assertEquals(completions.get("ab", 1), new String[] { "ab" });
+	Assert.assertEquals(completions.get("", 2), new String[] { "ab", "abc" });
+	Assert.assertEquals(completions.get("x", 10), new String[0]);
+	Assert.assertEquals(completions.get("a", 0), new String[0]);
+    }
+
+    @Test
+    public void getShouldReturnSameTermsAsSortingAllTermsWithPrefix() {
+	final TreeMap<String, Integer> dictionary = new TreeMap<String, Integer>();
+	for (int i = 0; i < 300; i++)
+	    dictionary.put(Integer.toString(i * 7919 % 1000, 5), i * 31 % 17);
+	dictionary.put("4", 100);
+	String[] terms = dictionary.keySet().toArray(new String[dictionary.size()]);
+	int[] frequencies = new int[terms.length];
+	for (int i = 0; i < terms.length; i++)
+	    frequencies[i] = dictionary.get(terms[i]);
+	Completions completions = new Completions(terms, frequencies);
+
+	for (String prefix : Arrays.asList("", "1", "2", "4", "10", "13", "31", "404", "7")) {
+	    List<String> expected = new ArrayList<String>(dictionary.subMap(prefix, prefix + Character.MAX_VALUE).keySet());
+	    Collections.sort(expected, new Comparator<String>() {
+		@Override
+		public int compare(String term1, String term2) {
+		    int frequency1 = dictionary.get(term1);
+		    int frequency2 = dictionary.get(term2);
+		    return frequency1 != frequency2 ? frequency2 - frequency1 : term1.compareTo(term2);
+		}
+	    });
+
+	    List<String> top = expected.subList(0, Math.min(Completions.MAX_COMPLETIONS, expected.size()));
+	    Assert.assertEquals(Arrays.asList(completions.get(prefix, Completions.MAX_COMPLETIONS + 5)), top, prefix);
+	    Assert.assertEquals(Arrays.asList(completions.get(prefix, 3)), top.subList(0, Math.min(3, top.size())), prefix);
+	}
+    }
+
+}
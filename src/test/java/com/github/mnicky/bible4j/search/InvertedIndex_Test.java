@@ -0,0 +1,255 @@
+package com.github.mnicky.bible4j.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.Position;
+
+/**
+ * Unit tests for InvertedIndex class.
+ */
+public class InvertedIndex_Test {
+
+    private InvertedIndex index;
+
+    @BeforeMethod
+    public void setUpTest() {
+	index = new InvertedIndex.Builder(new SimpleAnalyzer())
+		.add(new Position(BibleBook.GENESIS, 1, 1).getCode(), 10, "In the beginning God created the heaven and the earth.")
+		.add(new Position(BibleBook.GENESIS, 1, 2).getCode(), 11, "And the earth was without form, and void.")
+		.add(new Position(BibleBook.JOHN, 1, 1).getCode(), 12, "In the beginning was the Word, and the Word was with God.")
+		.add(new Position(BibleBook.JOHN, 1, 1).getCode(), 13, "In the beginning was the Word.")
+		.add(new Position(BibleBook.JOHN, 11, 35).getCode(), 14, "Jesus wept.")
+		.build();
+    }
+
+    @Test
+    public void searchShouldReturnDocumentsContainingAllTerms() {
+	Assert.assertEquals(index.search("beginning God"), new int[] { 0, 2 });
+	Assert.assertEquals(index.search("the EARTH"), new int[] { 0, 1 });
+	Assert.assertEquals(index.search("word"), new int[] { 2, 3 });
+    }
+
+    @Test
+    public void searchShouldReturnNoDocumentsForUnknownTermOrEmptyQuery() {
+	Assert.assertEquals(index.search("beginning serpent"), new int[0]);
+	Assert.assertEquals(index.search(" , "), new int[0]);
+    }
+
+    @Test
+    public void searchShouldReturnDocumentsContainingPhrase() {
+	Assert.assertEquals(index.search("\"the beginning\""), new int[] { 0, 2, 3 });
+	Assert.assertEquals(index.search("\"the word was\""), new int[] { 2 });
+	Assert.assertEquals(index.search("\"earth the\""), new int[0]);
+	Assert.assertEquals(index.search("\"the word\" god"), new int[] { 2 });
+    }
+
+    @Test
+    public void searchShouldReturnDocumentsContainingTermsNearEachOther() {
+	Assert.assertEquals(index.search("beginning NEAR/1 god"), new int[] { 0 });
+	Assert.assertEquals(index.search("god NEAR/1 beginning"), new int[] { 0 });
+	Assert.assertEquals(index.search("word NEAR/2 with"), new int[] { 2 });
+	Assert.assertEquals(index.search("word NEAR/1 with"), new int[0]);
+	Assert.assertEquals(index.search("in NEAR/2 beginning NEAR/1 god"), new int[] { 0 });
+	Assert.assertEquals(index.search("\"the word\" NEAR with"), new int[] { 2 });
+    }
+
+    @Test
+    public void searchShouldReturnDocumentsContainingAnyTermWithPrefix() {
+	Assert.assertEquals(index.search("w*"), new int[] { 1, 2, 3, 4 });
+	Assert.assertEquals(index.search("wit*"), new int[] { 1, 2 });
+	Assert.assertEquals(index.search("wit* earth"), new int[] { 1 });
+	Assert.assertEquals(index.search("the NEAR/1 beg*"), new int[] { 0, 2, 3 });
+	Assert.assertEquals(index.search("in NEAR/1 beg*"), new int[0]);
+	Assert.assertEquals(index.search("x*"), new int[0]);
+    }
+
+    @Test
+    public void getTermsWithPrefixShouldReturnMostFrequentTerms() {
+	Assert.assertEquals(index.getTermsWithPrefix("w", 2), Arrays.asList("was", "word"));
+	Assert.assertEquals(index.getTermsWithPrefix("wit", 10), Arrays.asList("with", "without"));
+    }
+
+    @Test
+    public void searchShouldReturnDocumentsContainingSimilarTerms() {
+	Assert.assertEquals(index.search("begining~"), new int[] { 0, 2, 3 });
+	Assert.assertEquals(index.search("wird~1"), new int[] { 2, 3 });
+	Assert.assertEquals(index.search("wird~"), new int[] { 2, 3 });
+	Assert.assertEquals(index.search("heven~ erth~"), new int[] { 0 });
+	Assert.assertEquals(index.search("jesus~0"), new int[] { 4 });
+	Assert.assertEquals(index.search("xyzzy~"), new int[0]);
+    }
+
+    @Test
+    public void getTermsWithinDistanceShouldReturnClosestTerms() {
+	Assert.assertEquals(index.getTermsWithinDistance("wird", 2, 10), Arrays.asList("with", "word"));
+	Assert.assertEquals(index.getTermsWithinDistance("wird", 2, 1), Arrays.asList("word"));
+	Assert.assertEquals(index.getTermsWithinDistance("", 2, 10), Arrays.asList("in"));
+    }
+
+    @Test
+    public void suggestShouldReplaceUnknownWordsBySimilarTerms() {
+	Assert.assertEquals(index.suggest("Jesus wpet."), "Jesus wept.");
+	Assert.assertEquals(index.suggest("god NEAR/2 heavn"), "god NEAR/2 heaven");
+	Assert.assertEquals(index.suggest("jesus wept"), null);
+	Assert.assertEquals(index.suggest("xyzzy"), null);
+	Assert.assertEquals(index.suggest("(heavn OR book:gen) NOT wpet"), "(heaven OR book:gen) NOT wept");
+    }
+
+    @Test
+    public void searchShouldReturnDocumentsMatchingBooleanQuery() {
+	Assert.assertEquals(index.search("jesus OR earth"), new int[] { 0, 1, 4 });
+	Assert.assertEquals(index.search("beginning NOT god"), new int[] { 3 });
+	Assert.assertEquals(index.search("NOT the"), new int[] { 4 });
+	Assert.assertEquals(index.search("(jesus OR earth) NOT void"), new int[] { 0, 4 });
+	Assert.assertEquals(index.search("word OR serpent"), new int[] { 2, 3 });
+    }
+
+    @Test
+    public void searchShouldReturnOnlyDocumentsOfBookOrVersionInQuery() {
+	int[] all = { Integer.MIN_VALUE, Integer.MAX_VALUE };
+	int[] genesis = { new Position(BibleBook.GENESIS, 0, 0).getCode(), new Position(BibleBook.GENESIS, 1, 1).getCode() };
+
+	Assert.assertEquals(index.search("beginning book:john"), new int[] { 2, 3 });
+	Assert.assertEquals(index.search("(word OR earth) book:gen"), new int[] { 0, 1 });
+	Assert.assertEquals(index.search("word OR jesus book:genesis"), new int[] { 2, 3 });
+	Assert.assertEquals(index.search("beginning book:xyzzy"), new int[0]);
+	Assert.assertEquals(index.search("the book:gen", genesis), new int[] { 0 });
+	Assert.assertEquals(index.search("the book:john", genesis), new int[0]);
+	Assert.assertEquals(index.search("beginning version:kjv", all, "KJV"), new int[] { 0, 2, 3 });
+	Assert.assertEquals(index.search("beginning version:kjv", all, "ASV"), new int[0]);
+	Assert.assertEquals(index.search("version:kjv OR jesus", all, "ASV"), new int[] { 4 });
+    }
+
+    @Test
+    public void completeShouldReturnMostFrequentTermsWithPrefix() throws IOException {
+	Assert.assertEquals(index.complete("W", 10), Arrays.asList("was", "word", "wept", "with", "without"));
+	Assert.assertEquals(index.complete("th", 1), Arrays.asList("the"));
+	Assert.assertEquals(index.complete("son of", 5), Collections.emptyList());
+
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	index.writeTo(out);
+	InvertedIndex read = InvertedIndex.readFrom(new ByteArrayInputStream(out.toByteArray()), new SimpleAnalyzer());
+	Assert.assertEquals(read.complete("w", 2), Arrays.asList("was", "word"));
+    }
+
+    @Test
+    public void searchShouldReturnOnlyDocumentsInCodeRange() {
+	int first = new Position(BibleBook.JOHN, 0, 0).getCode();
+	int last = new Position(BibleBook.JOHN, Position.MAX_CHAPTER_NUM, Position.MAX_VERSE_NUM).getCode();
+
+	Assert.assertEquals(index.search("beginning", first, last), new int[] { 2, 3 });
+	Assert.assertEquals(index.search("earth", first, last), new int[0]);
+    }
+
+    @Test
+    public void searchShouldReturnOnlyDocumentsInAnyOfCodeRanges() {
+	int[] ranges = { new Position(BibleBook.JOHN, 11, 1).getCode(), new Position(BibleBook.JOHN, 11, 50).getCode(),
+			 new Position(BibleBook.GENESIS, 1, 1).getCode(), new Position(BibleBook.GENESIS, 1, 1).getCode(),
+			 new Position(BibleBook.GENESIS, 1, 0).getCode(), new Position(BibleBook.GENESIS, 1, 1).getCode() };
+
+	Assert.assertEquals(index.search("the", ranges), new int[] { 0 });
+	Assert.assertEquals(index.search("jesus", ranges), new int[] { 4 });
+	Assert.assertEquals(index.search("\"the earth\"", ranges), new int[] { 0 });
+	Assert.assertEquals(index.search("word", ranges), new int[0]);
+	Assert.assertEquals(index.search("the", new int[0]), new int[0]);
+    }
+
+    @Test
+    public void scoreShouldPreferShorterDocumentsAndRarerTerms() {
+	float[] scores = index.score("earth", new int[] { 0, 1 });
+	Assert.assertTrue(scores[1] > scores[0]);
+
+	scores = index.score("beginning earth", new int[] { 0, 2 });
+	Assert.assertTrue(scores[0] > scores[1]);
+
+	scores = index.score("wept", new int[] { 3, 4 });
+	Assert.assertEquals(scores[0], 0f);
+	Assert.assertTrue(scores[1] > 0f);
+    }
+
+    @Test
+    public void documentsShouldKeepCodesAndKeys() {
+	Assert.assertEquals(index.getDocumentCount(), 5);
+	Assert.assertEquals(index.getCode(4), new Position(BibleBook.JOHN, 11, 35).getCode());
+	Assert.assertEquals(index.getKey(3), 13);
+    }
+
+    @Test
+    public void readIndexShouldEqualWrittenIndex() throws IOException {
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	index.writeTo(output);
+
+	InvertedIndex read = InvertedIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), new SimpleAnalyzer());
+
+	Assert.assertEquals(read.getDocumentCount(), index.getDocumentCount());
+	Assert.assertEquals(read.getKey(2), 12);
+	Assert.assertEquals(read.search("beginning God"), new int[] { 0, 2 });
+	Assert.assertEquals(read.search("jesus wept"), new int[] { 4 });
+	Assert.assertEquals(read.search("\"the word was\""), new int[] { 2 });
+	Assert.assertEquals(read.score("earth", new int[] { 0, 1 }), index.score("earth", new int[] { 0, 1 }));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void readFromShouldThrowExceptionWhenStreamIsNotIndex() throws IOException {
+	InvertedIndex.readFrom(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }), new SimpleAnalyzer());
+    }
+
+    @Test
+    public void getMatchOffsetsShouldReturnOffsetsOfMatchedTerms() {
+	// "In the beginning was the Word, and the Word was with God."
+	Assert.assertEquals(index.getMatchOffsets("word", new int[] { 2 })[0], new int[] { 25, 29, 39, 43 });
+	Assert.assertEquals(index.getMatchOffsets("\"the word\" god", new int[] { 2 })[0], new int[] { 21, 29, 35, 43, 53, 56 });
+	Assert.assertEquals(index.getMatchOffsets("beginning NEAR/3 word", new int[] { 2, 3 }),
+			    new int[][] { { 7, 16, 25, 29, 39, 43 }, { 7, 16, 25, 29 } });
+	Assert.assertEquals(index.getMatchOffsets("begin*", new int[] { 0 })[0], new int[] { 7, 16 });
+    }
+
+    @Test
+    public void getMatchOffsetsShouldWorkAfterReadingWrittenIndex() throws IOException {
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	index.writeTo(output);
+	InvertedIndex read = InvertedIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), new SimpleAnalyzer());
+
+	Assert.assertEquals(read.getMatchOffsets("wept", new int[] { 4 })[0], new int[] { 6, 10 });
+    }
+
+    @Test
+    public void getCandidatesShouldReturnDocumentsWithTrigramsOfPattern() {
+	int[] all = { Integer.MIN_VALUE, Integer.MAX_VALUE };
+	Assert.assertEquals(index.getCandidates(Pattern.compile("BEGIN", Pattern.LITERAL | Pattern.CASE_INSENSITIVE), all), new int[] { 0, 2, 3 });
+	Assert.assertEquals(index.getCandidates(Pattern.compile("the (earth|heaven)"), all), new int[] { 0, 1, 2, 3 });
+	Assert.assertEquals(index.getCandidates(Pattern.compile("Word, and"), all), new int[] { 2 });
+	Assert.assertEquals(index.getCandidates(Pattern.compile("serpent"), all), new int[0]);
+	Assert.assertEquals(index.getCandidates(Pattern.compile("w.pt"), all), new int[] { 0, 1, 2, 3, 4 });
+
+	int john = new Position(BibleBook.JOHN, 1, 1).getCode();
+	Assert.assertEquals(index.getCandidates(Pattern.compile("the"), new int[] { john, john }), new int[] { 2, 3 });
+    }
+
+    @Test
+    public void getCandidatesShouldWorkAfterReadingWrittenIndex() throws IOException {
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	index.writeTo(output);
+	InvertedIndex read = InvertedIndex.readFrom(new ByteArrayInputStream(output.toByteArray()), new SimpleAnalyzer());
+
+	Assert.assertEquals(read.getCandidates(Pattern.compile("wept\\."), new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE }), new int[] { 4 });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void addShouldThrowExceptionWhenVersesAreNotInOrder() {
+	new InvertedIndex.Builder(new SimpleAnalyzer())
+		.add(new Position(BibleBook.JOHN, 1, 1).getCode(), 1, "a")
+		.add(new Position(BibleBook.GENESIS, 1, 1).getCode(), 2, "b");
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for LanguageAnalyzer class.
+ */
+public class LanguageAnalyzer_Test {
+
+    @Test
+    public void getTermsShouldReduceCzechCasesToSameTerm() {
+	Analyzer analyzer = new LanguageAnalyzer("cs");
+	Assert.assertEquals(analyzer.getTerms("Hospodin, Hospodina a hospodinu"),
+			    analyzer.getTerms("hospodin hospodin a hospodin"));
+	Assert.assertEquals(analyzer.getTerms("město").get(0), analyzer.getTerms("městech").get(0));
+    }
+
+    @Test
+    public void getTermsShouldReduceEnglishPluralsToSingular() {
+	Analyzer analyzer = new LanguageAnalyzer("en");
+	Assert.assertEquals(analyzer.getTerms("Nations, cities and the cross"),
+			    Arrays.asList("nation", "city", "and", "the", "cross"));
+    }
+
+    @Test
+    public void getTermsShouldNotStemShortEnglishWords() {
+	Analyzer analyzer = new LanguageAnalyzer("en");
+	Assert.assertEquals(analyzer.getTerms("Yes, his lies was ye"), Arrays.asList("yes", "his", "lies", "was", "ye"));
+	Assert.assertEquals(analyzer.getTerms("flies cities"), Arrays.asList("flies", "city"));
+    }
+
+    @Test
+    public void getTermsShouldRemoveDiacriticsAfterStemming() {
+	Analyzer analyzer = new LanguageAnalyzer("cs");
+	Assert.assertEquals(analyzer.getTerms("Žena"), analyzer.getTerms("zena"));
+	Assert.assertEquals(new LanguageAnalyzer("fr").getTerms("Dieu créa"), Arrays.asList("dieu", "crea"));
+    }
+
+    @Test
+    public void getTermsShouldTreatDecomposedAndComposedTextTheSame() {
+	Analyzer analyzer = new LanguageAnalyzer("cs");
+	Assert.assertEquals(analyzer.getTerms("Žena"), analyzer.getTerms("Žena"));
+    }
+
+    @Test
+    public void getTermBoundsShouldReturnOffsetsInOriginalText() {
+	Analyzer analyzer = new LanguageAnalyzer("cs");
+	String decomposed = "Z\u030cena, dcery";
+	Assert.assertEquals(analyzer.getTermBounds(decomposed), new int[] { 0, 5, 7, 12 });
+	Assert.assertEquals(analyzer.getTerms(decomposed).size(), 2);
+    }
+
+    @Test
+    public void getNormalizedTermsShouldNotStem() {
+	Analyzer analyzer = new LanguageAnalyzer("en-US");
+	Assert.assertEquals(analyzer.getNormalizedTerms("Nations"), Arrays.asList("nations"));
+	Assert.assertEquals(analyzer.getName(), "language:en");
+    }
+
+}
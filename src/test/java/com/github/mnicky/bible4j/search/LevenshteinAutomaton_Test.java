@@ -0,0 +1,41 @@
+package com.github.mnicky.bible4j.search;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for LevenshteinAutomaton class.
+ */
+public class LevenshteinAutomaton_Test {
+
+    private static int[] read(LevenshteinAutomaton automaton, String term) {
+	int[] state = automaton.start();
+	for (int i = 0; i < term.length(); i++)
+	    state = automaton.step(state, term.charAt(i));
+	return state;
+    }
+
+    @Test
+    public void automatonShouldAcceptTermsWithinDistance() {
+	LevenshteinAutomaton automaton = new LevenshteinAutomaton("believe", 2);
+
+	Assert.assertTrue(automaton.isMatch(read(automaton, "believe")));
+	Assert.assertEquals(automaton.getDistance(read(automaton, "believe")), 0);
+	Assert.assertEquals(automaton.getDistance(read(automaton, "beleive")), 2);
+	Assert.assertEquals(automaton.getDistance(read(automaton, "believed")), 1);
+	Assert.assertEquals(automaton.getDistance(read(automaton, "belive")), 1);
+	Assert.assertFalse(automaton.isMatch(read(automaton, "achieve")));
+	Assert.assertFalse(automaton.isMatch(read(automaton, "be")));
+    }
+
+    @Test
+    public void canMatchShouldTellWhetherSomeContinuationIsAccepted() {
+	LevenshteinAutomaton automaton = new LevenshteinAutomaton("believe", 1);
+
+	Assert.assertTrue(automaton.canMatch(read(automaton, "bel")));
+	Assert.assertTrue(automaton.canMatch(read(automaton, "xel")));
+	Assert.assertFalse(automaton.canMatch(read(automaton, "xx")));
+	Assert.assertFalse(automaton.canMatch(read(automaton, "believexx")));
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.github.mnicky.bible4j.search;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for Postings class.
+ */
+public class Postings_Test {
+
+    @Test
+    public void decodeShouldReturnAddedDocuments() {
+	int[] documents = { 0, 1, 127, 128, 16384, 2000000, Integer.MAX_VALUE };
+	Postings.Writer writer = new Postings.Writer();
+	for (int document : documents)
+	    writer.add(document);
+
+	byte[] encoded = writer.toByteArray();
+
+	Assert.assertEquals(Postings.decode(encoded), documents);
+	Assert.assertEquals(Postings.count(encoded), documents.length);
+    }
+
+    @Test
+    public void deltasShouldBeEncodedInOneByteWhenSmall() {
+	Postings.Writer writer = new Postings.Writer();
+	for (int document = 0; document < 100; document++)
+	    writer.add(document);
+
+	// one byte for the count and one byte for each delta
+	Assert.assertEquals(writer.toByteArray().length, 101);
+    }
+
+    @Test
+    public void decodePositionsShouldReturnPositionsOfSpecifiedDocuments() {
+	Postings.Writer writer = new Postings.Writer();
+	writer.add(1, new int[] { 0, 5 });
+	writer.add(4, new int[] { 200 });
+	writer.add(7, new int[] { 3, 4, 1000 });
+	writer.add(9, new int[] { 2 });
+
+	int[][] positions = Postings.decodePositions(Postings.decode(writer.toByteArray()), writer.positionsToByteArray(), new int[] { 4, 7 });
+
+	Assert.assertEquals(positions.length, 2);
+	Assert.assertEquals(positions[0], new int[] { 200 });
+	Assert.assertEquals(positions[1], new int[] { 3, 4, 1000 });
+    }
+
+    @Test
+    public void restrictShouldReturnDocumentsInAllRanges() {
+	int[] documents = { 1, 3, 4, 8, 10, 15, 20 };
+
+	Assert.assertEquals(Postings.restrict(documents, new int[] { 3, 10 }), new int[] { 3, 4, 8 });
+	Assert.assertEquals(Postings.restrict(documents, new int[] { 0, 2, 9, 16, 20, 21 }), new int[] { 1, 10, 15, 20 });
+	Assert.assertEquals(Postings.restrict(documents, new int[] { 5, 8, 21, 30 }), new int[0]);
+    }
+
+    @Test
+    public void unionShouldReturnDocumentsInAnyList() {
+	Assert.assertEquals(Postings.union(new int[] { 1, 4, 8 }, new int[] { 2, 4, 9, 12 }), new int[] { 1, 2, 4, 8, 9, 12 });
+	Assert.assertEquals(Postings.union(new int[0], new int[] { 3 }), new int[] { 3 });
+    }
+
+    @Test
+    public void differenceShouldReturnDocumentsNotExcluded() {
+	Assert.assertEquals(Postings.difference(new int[] { 1, 4, 8, 9 }, new int[] { 2, 4, 9, 12 }), new int[] { 1, 8 });
+	Assert.assertEquals(Postings.difference(new int[] { 1, 4 }, new int[0]), new int[] { 1, 4 });
+    }
+
+    @Test
+    public void emptyListShouldDecodeToNoDocuments() {
+	byte[] encoded = new Postings.Writer().toByteArray();
+
+	Assert.assertEquals(Postings.decode(encoded), new int[0]);
+	Assert.assertEquals(Postings.count(encoded), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void addShouldThrowExceptionWhenDocumentsAreNotAscending() {
+	Postings.Writer writer = new Postings.Writer();
+	writer.add(5);
+	writer.add(5);
+    }
+
+}
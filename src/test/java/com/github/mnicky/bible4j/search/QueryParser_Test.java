@@ -0,0 +1,88 @@
+package com.github.mnicky.bible4j.search;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for QueryParser class.
+ */
+public class QueryParser_Test {
+
+    private final QueryParser parser = new QueryParser(new SimpleAnalyzer());
+
+    @Test
+    public void parseShouldReturnConjunctionOfWords() {
+	Query query = parser.parse("Son, of  GOD");
+	Assert.assertTrue(query instanceof ConjunctionQuery);
+	Assert.assertEquals(query.toString(), "son of god");
+    }
+
+    @Test
+    public void parseShouldReturnPhraseForQuotedWords() {
+	Assert.assertEquals(parser.parse("\"son of god\"").toString(), "\"son of god\"");
+	Assert.assertEquals(parser.parse("jesus \"son of god").toString(), "jesus \"son of god\"");
+	Assert.assertEquals(parser.parse("don't").toString(), "\"don t\"");
+    }
+
+    @Test
+    public void parseShouldReturnNearQueries() {
+	Assert.assertEquals(parser.parse("jesus NEAR/3 peter").toString(), "jesus NEAR/3 peter");
+	Assert.assertEquals(parser.parse("jesus NEAR \"son of god\"").toString(),
+			    "jesus NEAR/" + QueryParser.DEFAULT_NEAR_DISTANCE + " \"son of god\"");
+	Assert.assertEquals(parser.parse("a NEAR/1 b NEAR/2 c").toString(), "a NEAR/1 b NEAR/2 c");
+    }
+
+    @Test
+    public void parseShouldReturnPrefixQueryForWordEndingWithWildcard() {
+	Assert.assertTrue(parser.parse("Bless*") instanceof PrefixQuery);
+	Assert.assertEquals(parser.parse("Bless*").toString(), "bless*");
+	Assert.assertEquals(parser.parse("jesus NEAR/2 pet*").toString(), "jesus NEAR/2 pet*");
+	Assert.assertEquals(parser.parse("\"son of go*\"").toString(), "\"son of go\"");
+	Assert.assertEquals(parser.parse("don't*").toString(), "\"don t\"");
+    }
+
+    @Test
+    public void parseShouldReturnFuzzyQueryForWordEndingWithTilde() {
+	Assert.assertTrue(parser.parse("Beleive~") instanceof FuzzyQuery);
+	Assert.assertEquals(parser.parse("Beleive~").toString(), "beleive~2");
+	Assert.assertEquals(parser.parse("lord~").toString(), "lord~1");
+	Assert.assertEquals(parser.parse("lord~0 god~5").toString(), "lord~0 god~2");
+	Assert.assertEquals(parser.parse("jesus NEAR pter~").toString(), "jesus NEAR/" + QueryParser.DEFAULT_NEAR_DISTANCE + " pter~1");
+    }
+
+    @Test
+    public void parseShouldReturnBooleanQueries() {
+	Assert.assertTrue(parser.parse("peter OR simon") instanceof DisjunctionQuery);
+	Assert.assertEquals(parser.parse("a b OR c NOT d").toString(), "(a b OR c NOT d)");
+	Assert.assertEquals(parser.parse("(a OR b) AND c").toString(), "(a OR b) c");
+	Assert.assertEquals(parser.parse("a NOT (b OR \"c d\")").toString(), "a NOT (b OR \"c d\")");
+	Assert.assertEquals(parser.parse("NOT NOT a").toString(), "a");
+	Assert.assertEquals(parser.parse("a or b").toString(), "a or b");
+    }
+
+    @Test
+    public void parseShouldIgnoreMisplacedOperatorsAndParentheses() {
+	Assert.assertEquals(parser.parse("OR a OR").toString(), "a");
+	Assert.assertEquals(parser.parse("a ) b").toString(), "a b");
+	Assert.assertEquals(parser.parse("(a OR b").toString(), "(a OR b)");
+	Assert.assertEquals(parser.parse("a NOT").toString(), "a");
+    }
+
+    @Test
+    public void parseShouldReturnFiltersForFields() {
+	Assert.assertTrue(parser.parse("book:john") instanceof CodeRangeQuery);
+	Assert.assertTrue(parser.parse("book:song_of_songs") instanceof CodeRangeQuery);
+	Assert.assertEquals(parser.parse("book:xyzzy").toString(), "()");
+	Assert.assertTrue(parser.parse("version:kjv") instanceof CodeRangeQuery);
+	Assert.assertTrue(parser.parse("version:kjv", "KJV") instanceof CodeRangeQuery);
+	Assert.assertEquals(parser.parse("version:kjv", "asv").toString(), "()");
+	Assert.assertEquals(parser.parse("Book:john").toString(), "\"book john\"");
+    }
+
+    @Test
+    public void parseShouldIgnoreNearWithoutOperandAndLowerCaseNear() {
+	Assert.assertEquals(parser.parse("NEAR/2 peter").toString(), "peter");
+	Assert.assertEquals(parser.parse("jesus near peter").toString(), "jesus near peter");
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for TopHits class.
+ */
+public class TopHits_Test {
+
+    @Test
+    public void getHitsShouldReturnBestHitsFromBestOne() {
+	TopHits top = new TopHits(3);
+	top.add(1.0f, 0, 1);
+	top.add(5.0f, 0, 2);
+	top.add(3.0f, 1, 3);
+	top.add(0.5f, 1, 4);
+	top.add(4.0f, 0, 5);
+
+	List<TopHits.Hit> hits = top.getHits();
+	Assert.assertEquals(hits.size(), 3);
+	Assert.assertEquals(hits.get(0).getDocument(), 2);
+	Assert.assertEquals(hits.get(1).getDocument(), 5);
+	Assert.assertEquals(hits.get(2).getDocument(), 3);
+	Assert.assertEquals(hits.get(2).getSource(), 1);
+	Assert.assertEquals(hits.get(2).getScore(), 3.0f);
+    }
+
+    @Test
+    public void getHitsShouldOrderHitsWithSameScoreBySourceAndDocument() {
+	TopHits top = new TopHits(2);
+	top.add(1.0f, 1, 1);
+	top.add(1.0f, 0, 7);
+	top.add(1.0f, 0, 3);
+
+	List<TopHits.Hit> hits = top.getHits();
+	Assert.assertEquals(hits.size(), 2);
+	Assert.assertEquals(hits.get(0).getDocument(), 3);
+	Assert.assertEquals(hits.get(1).getDocument(), 7);
+    }
+
+    @Test
+    public void getHitsShouldReturnAllHitsWhenCapacityIsZero() {
+	TopHits top = new TopHits(0);
+	for (int i = 0; i < 2000; i++)
+	    top.add(i % 10, 0, i);
+
+	List<TopHits.Hit> hits = top.getHits();
+	Assert.assertEquals(hits.size(), 2000);
+	Assert.assertEquals(hits.get(0).getScore(), 9.0f);
+	Assert.assertEquals(hits.get(0).getDocument(), 9);
+	Assert.assertEquals(hits.get(1999).getScore(), 0.0f);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionWhenCapacityIsNegative() {
+	new TopHits(-1);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.github.mnicky.bible4j.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for Trigrams class.
+ */
+public class Trigrams_Test {
+
+    @Test
+    public void ofShouldReturnDistinctTrigramsIgnoringCase() {
+	Assert.assertEquals(Trigrams.of("Abab"), Trigrams.of("aBAB"));
+	Assert.assertEquals(Trigrams.of("abab").length, 2);
+	Assert.assertEquals(Trigrams.of("ab").length, 0);
+    }
+
+    @Test
+    public void getRequiredLiteralsShouldReturnLiteralsOfEveryMatch() {
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("Son of (God|man)")), Arrays.asList("Son of "));
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("[0-9]+ years?, and")), Arrays.asList(" year", ", and"));
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("^\\w+eth (not)? his\\.")), Arrays.asList("eth ", " his."));
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("(?i)lord(?: god)+\\x41bcd")), Arrays.asList("lord", " god", "bcd"));
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("a.b", Pattern.LITERAL)), Arrays.asList("a.b"));
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("\\Qa.b*\\E{0,2}c")), Arrays.asList("a.b"));
+    }
+
+    @Test
+    public void getRequiredLiteralsShouldReturnNoLiteralsForAlternationOrComments() {
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("wept|cried")), Collections.emptyList());
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("(?x) jesus wept")), Collections.emptyList());
+	Assert.assertEquals(Trigrams.getRequiredLiterals(Pattern.compile("(?=jesus)je")), Collections.emptyList());
+    }
+
+}
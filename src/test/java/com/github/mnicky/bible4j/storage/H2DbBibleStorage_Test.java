@@ -2,12 +2,18 @@ package com.github.mnicky.bible4j.storage;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -63,7 +69,7 @@ public final class H2DbBibleStorage_Test {
 
 	// expected numbers of column updates
 	// see Statement.executeBatch() javadoc for more info
-	int[] exp = { 0, 0, 0, 0, 0, 0, 0, 0};
+	int[] exp = { 0, 0, 0, 0, 0, 0};
 
 	int[] columns = null;
 
@@ -237,6 +243,34 @@ public final class H2DbBibleStorage_Test {
 	Assert.assertTrue(Arrays.deepEquals(actual, exp));
     }
     
+    @Test
+    public void insertVersesShouldInsertVersesWithTheirBooksAndPositions() {
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("test text1", new Position(BibleBook.JOHN, 1, 1), new BibleVersion("King's James Version", "KJV", "en")));
+	exp.add(new Verse("test text2", new Position(BibleBook.JOHN, 1, 2), new BibleVersion("King's James Version", "KJV", "en")));
+	exp.add(new Verse("test text3", new Position(BibleBook.ACTS, 1, 1), new BibleVersion("King's James Version", "KJV", "en")));
+
+	List<Verse> retrieved = new ArrayList<Verse>();
+
+	try {
+	    //given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("King's James Version", "KJV", "en"));
+
+	    //when
+	    bible.insertVerses(exp);
+
+	    retrieved.addAll(bible.getChapter(new Position(BibleBook.JOHN, 1, 0), new BibleVersion("King's James Version", "KJV", "en")));
+	    retrieved.addAll(bible.getChapter(new Position(BibleBook.ACTS, 1, 0), new BibleVersion("King's James Version", "KJV", "en")));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	//then
+	Assert.assertEquals(retrieved, exp);
+    }
+
     @Test
     public void getBibleVersionShoulReturnBibleVersionSpecifiedByAbbr() {
 	BibleVersion exp = new BibleVersion("King's James Version", "KJV", "en");
@@ -308,6 +342,182 @@ public final class H2DbBibleStorage_Test {
         Assert.assertEquals(retrieved, exp);
     }
 
+    @Test
+    public void getVerseShouldReturnNullForNotStoredVersionOrPosition() {
+	Verse retrievedForVersion = null;
+	Verse retrievedForPosition = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("King's James Version", "KJV", "en"));
+	    bible.insertBibleBook(BibleBook.ACTS);
+	    bible.insertPosition(new Position(BibleBook.ACTS, 11, 2));
+	    bible.insertVerse(new Verse("some little testing sample", new Position(BibleBook.ACTS, 11, 2),
+					new BibleVersion("King's James Version", "KJV", "en")));
+
+	    retrievedForVersion = bible.getVerse(new Position(BibleBook.ACTS, 11, 2), new BibleVersion("NIV", "en"));
+	    retrievedForPosition = bible.getVerse(new Position(BibleBook.ACTS, 11, 3), new BibleVersion("KJV", "en"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertNull(retrievedForVersion);
+	Assert.assertNull(retrievedForPosition);
+    }
+
+    @Test
+    public void repeatedGetVerseShouldReturnVerseForEachCall() {
+	Verse exp1 = new Verse("test text1", new Position(BibleBook.ACTS, 1, 2), new BibleVersion("King's James Version", "KJV", "en"));
+	Verse exp2 = new Verse("test text2", new Position(BibleBook.ACTS, 1, 3), new BibleVersion("King's James Version", "KJV", "en"));
+	Verse retrieved1 = null;
+	Verse retrieved2 = null;
+	Verse retrieved3 = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("King's James Version", "KJV", "en"));
+	    bible.insertBibleBook(BibleBook.ACTS);
+	    bible.insertPosition(new Position(BibleBook.ACTS, 1, 2));
+	    bible.insertPosition(new Position(BibleBook.ACTS, 1, 3));
+	    bible.insertVerse(exp1);
+	    bible.insertVerse(exp2);
+
+	    retrieved1 = bible.getVerse(new Position(BibleBook.ACTS, 1, 2), new BibleVersion("KJV", "en"));
+	    retrieved2 = bible.getVerse(new Position(BibleBook.ACTS, 1, 3), new BibleVersion("KJV", "en"));
+	    retrieved3 = bible.getVerse(new Position(BibleBook.ACTS, 1, 2), new BibleVersion("KJV", "en"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertEquals(retrieved1, exp1);
+	Assert.assertEquals(retrieved2, exp2);
+	Assert.assertEquals(retrieved3, exp1);
+    }
+
+    @Test
+    public void pooledStorageShouldServeConcurrentReaders() {
+	final Verse exp1 = new Verse("test text1", new Position(BibleBook.ACTS, 1, 2), new BibleVersion("King's James Version", "KJV", "en"));
+	final Verse exp2 = new Verse("test text2", new Position(BibleBook.ACTS, 1, 3), new BibleVersion("King's James Version", "KJV", "en"));
+	final AtomicInteger failures = new AtomicInteger();
+	BibleStorage pooled = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("King's James Version", "KJV", "en"));
+	    bible.insertBibleBook(BibleBook.ACTS);
+	    bible.insertPosition(new Position(BibleBook.ACTS, 1, 2));
+	    bible.insertPosition(new Position(BibleBook.ACTS, 1, 3));
+	    bible.insertVerse(exp1);
+	    bible.insertVerse(exp2);
+
+	    final BibleStorage storage = new H2DbBibleStorage(new H2DbConnectionPool("jdbc:h2:mem:test", "test", "", 3));
+	    pooled = storage;
+
+	    Thread[] readers = new Thread[8];
+	    for (int i = 0; i < readers.length; i++) {
+		readers[i] = new Thread() {
+		    @Override
+		    public void run() {
+			try {
+			    for (int j = 0; j < 50; j++) {
+				if (!exp1.equals(storage.getVerse(new Position(BibleBook.ACTS, 1, 2), new BibleVersion("KJV", "en"))))
+				    failures.incrementAndGet();
+				if (storage.getChapter(new Position(BibleBook.ACTS, 1, 0), new BibleVersion("KJV", "en")).size() != 2)
+				    failures.incrementAndGet();
+			    }
+			} catch (Exception e) {
+			    e.printStackTrace();
+			    failures.incrementAndGet();
+			}
+		    }
+		};
+		readers[i].start();
+	    }
+	    for (Thread reader : readers)
+		reader.join();
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	} finally {
+	    if (pooled != null)
+		pooled.close();
+	}
+	Assert.assertEquals(failures.get(), 0);
+    }
+
+    @Test
+    public void pooledStorageShouldNotKeepStaleSearchIndexWhenVersesAreInsertedDuringSearches() {
+	final BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	final AtomicInteger failures = new AtomicInteger();
+	final int inserted = 20;
+	BibleStorage pooled = null;
+	List<Integer> notFound = new ArrayList<Integer>();
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    // a longer version, so its index takes a while to build
+	    List<Verse> verses = new ArrayList<Verse>();
+	    for (int i = 1; i <= 1000; i++)
+		verses.add(new Verse("In the beginning was the word " + i + ", and the word was with text", new Position(BibleBook.JOHN, 1 + i / 100, i % 100 + 1), kjv));
+	    verses.add(new Verse("token0 text", new Position(BibleBook.ACTS, 1, 1), kjv));
+	    bible.insertVerses(verses);
+
+	    final BibleStorage storage = new H2DbBibleStorage(new H2DbConnectionPool("jdbc:h2:mem:test", "test", "", 4));
+	    pooled = storage;
+
+	    Thread writer = new Thread() {
+		@Override
+		public void run() {
+		    try {
+			for (int i = 1; i < inserted; i++)
+			    storage.insertVerses(Arrays.asList(new Verse("token" + i + " text", new Position(BibleBook.ACTS, 1, i + 1), kjv)));
+		    } catch (Exception e) {
+			e.printStackTrace();
+			failures.incrementAndGet();
+		    }
+		}
+	    };
+	    Thread[] readers = new Thread[3];
+	    for (int i = 0; i < readers.length; i++) {
+		readers[i] = new Thread() {
+		    @Override
+		    public void run() {
+			try {
+			    for (int j = 0; j < 30; j++)
+				storage.countVerses(new SearchQuery("text"));
+			} catch (Exception e) {
+			    e.printStackTrace();
+			    failures.incrementAndGet();
+			}
+		    }
+		};
+		readers[i].start();
+	    }
+	    writer.start();
+	    writer.join();
+	    for (Thread reader : readers)
+		reader.join();
+
+	    for (int i = 0; i < inserted; i++) {
+		if (storage.searchVersesForText("token" + i).size() != 1)
+		    notFound.add(i);
+	    }
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	} finally {
+	    if (pooled != null)
+		pooled.close();
+	}
+	Assert.assertEquals(failures.get(), 0);
+	Assert.assertEquals(notFound, new ArrayList<Integer>());
+    }
+
     @Test
     public void getVersesShouldRetrieveListOfAllRequestedVerses() {
 
@@ -383,6 +593,68 @@ public final class H2DbBibleStorage_Test {
 	Assert.assertEquals(retrieved, exp);
     }
     
+    @Test
+    public void getPassageShouldReturnOrderedVersesAcrossChaptersAndBooks() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	Verse acts1 = new Verse("acts 1,1", new Position(BibleBook.ACTS, 1, 1), kjv);
+	Verse acts2 = new Verse("acts 2,1", new Position(BibleBook.ACTS, 2, 1), kjv);
+	Verse john1 = new Verse("john 1,1", new Position(BibleBook.JOHN, 1, 1), kjv);
+	Verse john2 = new Verse("john 1,2", new Position(BibleBook.JOHN, 1, 2), kjv);
+	Verse john3 = new Verse("john 2,1", new Position(BibleBook.JOHN, 2, 1), kjv);
+	Verse john4 = new Verse("john 3,5", new Position(BibleBook.JOHN, 3, 5), kjv);
+
+	List<Verse> acrossBooks = null;
+	List<Verse> toEndOfBook = null;
+	List<Verse> oneVerse = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    // ACTS is inserted first, so the ids of books don't follow their order in the Bible
+	    bible.insertVerses(Arrays.asList(acts1, acts2));
+	    bible.insertVerses(Arrays.asList(john1, john2, john3, john4));
+
+	    acrossBooks = bible.getPassage(new Position(BibleBook.JOHN, 1, 2), new Position(BibleBook.ACTS, 1, 0), new BibleVersion("KJV", "en"));
+	    toEndOfBook = bible.getPassage(new Position(BibleBook.JOHN, 2, 0), new Position(BibleBook.JOHN, 0, 0), new BibleVersion("KJV", "en"));
+	    oneVerse = bible.getPassage(new Position(BibleBook.JOHN, 1, 2), new Position(BibleBook.JOHN, 1, 2), new BibleVersion("KJV", "en"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertEquals(acrossBooks, Arrays.asList(john2, john3, john4, acts1));
+	Assert.assertEquals(toEndOfBook, Arrays.asList(john3, john4));
+	Assert.assertEquals(oneVerse, Arrays.asList(john2));
+    }
+
+    @Test
+    public void getPassageWithHandlerShouldStopWhenHandlerReturnsFalse() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	Verse john1 = new Verse("john 1,1", new Position(BibleBook.JOHN, 1, 1), kjv);
+	Verse john2 = new Verse("john 1,2", new Position(BibleBook.JOHN, 1, 2), kjv);
+	Verse john3 = new Verse("john 1,3", new Position(BibleBook.JOHN, 1, 3), kjv);
+	final List<Verse> handled = new ArrayList<Verse>();
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(john1, john2, john3));
+
+	    bible.getPassage(new Position(BibleBook.JOHN, 1, 1), new Position(BibleBook.JOHN, 0, 0), kjv, new ResultHandler<Verse>() {
+		@Override
+		public boolean handle(Verse verse) {
+		    handled.add(verse);
+		    return handled.size() < 2;
+		}
+	    });
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertEquals(handled, Arrays.asList(john1, john2));
+    }
+
     @Test
     public void getChapterListShouldReturnAllChaptersInSpecifiedBibleVersion() {
 	List<Position> exp = new ArrayList<Position>();
@@ -532,6 +804,48 @@ public final class H2DbBibleStorage_Test {
 	Assert.assertEquals(retrieved, exp);
     }
 
+    @Test
+    public void compareVersesShouldReturnVersesInRequestedOrderAndSkipMissingOnes() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	BibleVersion esv = new BibleVersion("English Standard Version", "ESV", "en");
+
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("esv john 3", new Position(BibleBook.JOHN, 1, 3), esv));
+	exp.add(new Verse("esv acts 1", new Position(BibleBook.ACTS, 1, 1), esv));
+	exp.add(new Verse("esv john 1", new Position(BibleBook.JOHN, 1, 1), esv));
+	exp.add(new Verse("kjv john 3", new Position(BibleBook.JOHN, 1, 3), kjv));
+	exp.add(new Verse("kjv john 1", new Position(BibleBook.JOHN, 1, 1), kjv));
+
+	List<Verse> retrieved = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertBibleVersion(esv);
+	    bible.insertVerses(Arrays.asList(new Verse("kjv john 1", new Position(BibleBook.JOHN, 1, 1), kjv),
+					     new Verse("kjv john 3", new Position(BibleBook.JOHN, 1, 3), kjv),
+					     new Verse("esv john 1", new Position(BibleBook.JOHN, 1, 1), esv),
+					     new Verse("esv john 3", new Position(BibleBook.JOHN, 1, 3), esv),
+					     new Verse("esv acts 1", new Position(BibleBook.ACTS, 1, 1), esv)));
+
+	    List<Position> positions = new ArrayList<Position>();
+	    positions.add(new Position(BibleBook.JOHN, 1, 3));
+	    positions.add(new Position(BibleBook.ACTS, 1, 1));
+	    positions.add(new Position(BibleBook.JOHN, 1, 2));
+	    positions.add(new Position(BibleBook.JOHN, 1, 1));
+	    positions.add(new Position(BibleBook.MARK, 1, 1));
+
+	    retrieved = bible.compareVerses(positions, Arrays.asList(new BibleVersion("ESV", "en"),
+								     new BibleVersion("NIV", "en"),
+								     new BibleVersion("KJV", "en")));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertEquals(retrieved, exp);
+    }
+
     @Test
     public void insertBookmarkShouldInsertBookmark() {
 
@@ -782,4 +1096,605 @@ public final class H2DbBibleStorage_Test {
 	Assert.assertEquals(actual, exp);
     }
 
+    @Test
+    public void searchVersesForTextShouldFindVersesInsertedAfterIndexing() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("And Peter wept bitterly.", new Position(BibleBook.LUKE, 22, 62), kjv));
+	exp.add(new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv));
+	List<Verse> beforeInsert = null;
+	List<Verse> afterInsert = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv)));
+	    bible.indexBibleVersion(kjv);
+
+	    // when
+	    beforeInsert = bible.searchVersesForText("WEPT");
+	    bible.insertVerses(Arrays.asList(new Verse("And Peter wept bitterly.", new Position(BibleBook.LUKE, 22, 62), kjv)));
+	    afterInsert = bible.searchVersesForText("WEPT", kjv);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(beforeInsert, exp.subList(1, 2));
+	Assert.assertEquals(afterInsert, exp);
+    }
+
+    @Test
+    public void searchVersesForTextShouldReturnVersesContainingAllWordsInBook() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("And the third day there was a marriage in Cana", new Position(BibleBook.JOHN, 2, 1), kjv));
+	List<Verse> actual = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("And the third day there was a marriage in Cana", new Position(BibleBook.JOHN, 2, 1), kjv),
+		new Verse("And the third day he rose again", new Position(BibleBook.JOHN, 2, 19), kjv),
+		new Verse("And on the third day there was a marriage", new Position(BibleBook.ACTS, 1, 1), kjv)));
+
+	    // when
+	    actual = bible.searchVersesForText("marriage, third", BibleBook.JOHN, kjv);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(actual, exp);
+    }
+
+    @Test
+    public void searchVersesForTextShouldReturnVersesContainingPhrase() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("Truly this was the Son of God.", new Position(BibleBook.MATTHEW, 27, 54), kjv));
+	List<Verse> actual = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("Truly this was the Son of God.", new Position(BibleBook.MATTHEW, 27, 54), kjv),
+		new Verse("God saw the light, and the son of man", new Position(BibleBook.MATTHEW, 27, 55), kjv)));
+
+	    // when
+	    actual = bible.searchVersesForText("\"son of god\"");
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(actual, exp);
+    }
+
+    @Test
+    public void searchVersesForTextShouldReturnVersesMatchingBooleanQueryWithFilters() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	BibleVersion asv = new BibleVersion("American Standard Version", "ASV", "en");
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), asv));
+	exp.add(new Verse("Truly this was the Son of God.", new Position(BibleBook.MATTHEW, 27, 54), kjv));
+	List<Verse> actual = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertBibleVersion(asv);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("Truly this was the Son of God.", new Position(BibleBook.MATTHEW, 27, 54), kjv),
+		new Verse("God saw the light, and the son of man", new Position(BibleBook.MATTHEW, 27, 55), kjv),
+		new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv),
+		new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), asv)));
+
+	    // when
+	    actual = bible.searchVersesForText("(god NOT man) OR (jesus version:asv book:john)");
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(actual, exp);
+    }
+
+    @Test
+    public void searchVersesShouldReturnVersesFromAnyOfBooksTestamentsAndPassages() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	Verse genesis = new Verse("And God said, Let there be light", new Position(BibleBook.GENESIS, 1, 3), kjv);
+	Verse psalms = new Verse("The LORD is my light", new Position(BibleBook.PSALMS, 27, 1), kjv);
+	Verse john1 = new Verse("And the light shineth in darkness", new Position(BibleBook.JOHN, 1, 5), kjv);
+	Verse john8 = new Verse("I am the light of the world", new Position(BibleBook.JOHN, 8, 12), kjv);
+	Verse james = new Verse("Every good gift cometh down from the Father of lights", new Position(BibleBook.JAMES, 1, 17), kjv);
+	Verse revelation = new Verse("And the city had no need of the sun, for the Lamb is the light thereof", new Position(BibleBook.REVELATION, 21, 23), kjv);
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(genesis);
+	exp.add(psalms);
+	exp.add(john8);
+	exp.add(revelation);
+	List<Verse> actual = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(genesis, psalms, john1, john8, james, revelation));
+
+	    // when
+	    SearchQuery query = new SearchQuery("light");
+	    query.addTestament(BibleBook.Testament.OLD);
+	    query.addPassage(new Position(BibleBook.JOHN, 8, 1), new Position(BibleBook.JOHN, 8, 59));
+	    query.addBibleBook(BibleBook.REVELATION);
+	    actual = bible.searchVerses(query);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(actual, exp);
+    }
+
+    @Test
+    public void countVersesShouldCountMatchingVersesByVersionsBooksAndTestaments() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	BibleVersion asv = new BibleVersion("American Standard Version", "ASV", "en");
+	SearchCounts counts = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertBibleVersion(asv);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("And God said, Let there be light", new Position(BibleBook.GENESIS, 1, 3), kjv),
+		new Verse("And God saw the light, that it was good", new Position(BibleBook.GENESIS, 1, 4), kjv),
+		new Verse("I am the light of the world", new Position(BibleBook.JOHN, 8, 12), kjv),
+		new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv),
+		new Verse("I am the light of the world", new Position(BibleBook.JOHN, 8, 12), asv)));
+
+	    // when
+	    counts = bible.countVerses(new SearchQuery("light"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Map<BibleVersion, Integer> versions = new LinkedHashMap<BibleVersion, Integer>();
+	versions.put(asv, 1);
+	versions.put(kjv, 3);
+	Map<BibleBook, Integer> books = new EnumMap<BibleBook, Integer>(BibleBook.class);
+	books.put(BibleBook.GENESIS, 2);
+	books.put(BibleBook.JOHN, 2);
+	Map<BibleBook.Testament, Integer> testaments = new EnumMap<BibleBook.Testament, Integer>(BibleBook.Testament.class);
+	testaments.put(BibleBook.Testament.OLD, 2);
+	testaments.put(BibleBook.Testament.NEW, 2);
+
+	Assert.assertEquals(counts.getTotal(), 4);
+	Assert.assertEquals(counts.getVersionCounts(), versions);
+	Assert.assertEquals(counts.getBookCounts(), books);
+	Assert.assertEquals(counts.getTestamentCounts(), testaments);
+    }
+
+    @Test
+    public void suggestSearchTextShouldCorrectMisspelledWords() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	String suggestion = null;
+	String noSuggestion = "";
+	List<Verse> fuzzyFound = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("Lord, I believe; help thou mine unbelief.", new Position(BibleBook.MARK, 9, 24), kjv),
+		new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv)));
+
+	    // when
+	    suggestion = bible.suggestSearchText(new SearchQuery("lord beleive"));
+	    noSuggestion = bible.suggestSearchText(new SearchQuery("lord believe"));
+	    fuzzyFound = bible.searchVersesForText("beleive~");
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(suggestion, "lord believe");
+	Assert.assertNull(noSuggestion);
+	Assert.assertEquals(fuzzyFound.size(), 1);
+	Assert.assertEquals(fuzzyFound.get(0).getPosition(), new Position(BibleBook.MARK, 9, 24));
+    }
+
+    @Test
+    public void completeSearchTermShouldReturnMostFrequentTermsOfVersionsOrLanguage() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	BibleVersion bkr = new BibleVersion("Bible kralická", "BKR", "cz");
+	List<String> all = null;
+	List<String> english = null;
+	List<String> czech = null;
+	List<String> ofVersion = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertBibleVersion(bkr);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("Lord, I believe; help thou mine unbelief.", new Position(BibleBook.MARK, 9, 24), kjv),
+		new Verse("Lord, help me.", new Position(BibleBook.MATTHEW, 15, 25), kjv),
+		new Verse("Věřím, Pane, pomoz nevěře mé.", new Position(BibleBook.MARK, 9, 24), bkr),
+		new Verse("Pane, pomoz mi.", new Position(BibleBook.MATTHEW, 15, 25), bkr)));
+
+	    // when
+	    all = bible.completeSearchTerm("P", 10, Collections.<BibleVersion>emptyList());
+	    english = bible.completeSearchTerm("l", 10, "EN");
+	    czech = bible.completeSearchTerm("l", 10, "cz");
+	    ofVersion = bible.completeSearchTerm("p", 1, Arrays.asList(bkr));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(all, Arrays.asList("pan", "pomoh"));
+	Assert.assertEquals(english, Arrays.asList("lord"));
+	Assert.assertEquals(czech, Collections.emptyList());
+	Assert.assertEquals(ofVersion, Arrays.asList("pan"));
+    }
+
+    @Test
+    public void searchVersesShouldReturnMostRelevantVersesFirst() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	Verse patient = new Verse("Charity suffereth long, and is kind; love envieth not, love vaunteth not itself", new Position(BibleBook.CORINTHIANS_1, 13, 4), kjv);
+	Verse greater = new Verse("Greater love hath no man than this, that a man lay down his life for his friends", new Position(BibleBook.JOHN, 15, 13), kjv);
+	Verse god = new Verse("God is love", new Position(BibleBook.JOHN_1, 4, 8), kjv);
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(god);
+	exp.add(patient);
+	List<Verse> actual = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(greater, patient, god));
+
+	    // when
+	    SearchQuery query = new SearchQuery("love");
+	    query.setRanked(true);
+	    query.setLimit(2);
+	    actual = bible.searchVerses(query);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(actual, exp);
+    }
+
+    @Test
+    public void searchVersesShouldReturnVersesFromOffsetUpToLimit() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	BibleVersion asv = new BibleVersion("American Standard Version", "ASV", "en");
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv));
+	exp.add(new Verse("And Peter wept bitterly.", new Position(BibleBook.MATTHEW, 26, 75), asv));
+	List<Verse> actual = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertBibleVersion(asv);
+	    bible.insertVerses(Arrays.asList(
+		new Verse("And Peter wept bitterly.", new Position(BibleBook.MATTHEW, 26, 75), kjv),
+		new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv),
+		new Verse("And Peter wept bitterly.", new Position(BibleBook.MATTHEW, 26, 75), asv),
+		new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), asv)));
+
+	    // when
+	    SearchQuery query = new SearchQuery("wept");
+	    query.addBibleVersion(kjv);
+	    query.addBibleVersion(asv);
+	    query.setOffset(1);
+	    query.setLimit(2);
+	    actual = bible.searchVerses(query);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(actual, exp);
+    }
+
+    @Test
+    public void searchMatchesShouldReturnOffsetsOfMatches() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	Verse wept = new Verse("Jesus wept.", new Position(BibleBook.JOHN, 11, 35), kjv);
+	Verse peter = new Verse("And Peter went out, and wept bitterly.", new Position(BibleBook.LUKE, 22, 62), kjv);
+	List<VerseMatch> found = null;
+	List<VerseMatch> ranked = null;
+	List<VerseMatch> substring = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(peter, wept));
+
+	    // when
+	    found = bible.searchMatches(new SearchQuery("wept"));
+	    SearchQuery rankedQuery = new SearchQuery("peter wept");
+	    rankedQuery.setRanked(true);
+	    ranked = bible.searchMatches(rankedQuery);
+	    SearchQuery substringQuery = new SearchQuery("EPT");
+	    substringQuery.setMode(SearchQuery.Mode.SUBSTRING);
+	    substring = bible.searchMatches(substringQuery);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(found.size(), 2);
+	Assert.assertEquals(found.get(0).getVerse(), peter);
+	Assert.assertEquals(found.get(0).getMatchCount(), 1);
+	Assert.assertEquals(found.get(0).getMatchStart(0), 24);
+	Assert.assertEquals(found.get(0).getMatchEnd(0), 28);
+	Assert.assertEquals(found.get(1).getMatchStart(0), 6);
+
+	Assert.assertEquals(ranked.size(), 1);
+	Assert.assertEquals(ranked.get(0).getMatchCount(), 2);
+	Assert.assertEquals(ranked.get(0).getMatchStart(0), 4);
+	Assert.assertEquals(ranked.get(0).getMatchEnd(0), 9);
+
+	Assert.assertEquals(substring.size(), 2);
+	Assert.assertEquals(substring.get(0).getMatchStart(0), 25);
+	Assert.assertEquals(substring.get(0).getMatchEnd(0), 28);
+    }
+
+    @Test
+    public void searchVersesShouldReturnVersesContainingSubstringOrMatchingRegex() {
+	BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+	Verse abimelech = new Verse("And Abimelech said, What is this thou hast done unto us?", new Position(BibleBook.GENESIS, 26, 10), kjv);
+	Verse melchizedek = new Verse("And Melchizedek king of Salem brought forth bread and wine", new Position(BibleBook.GENESIS, 14, 18), kjv);
+	Verse methuselah = new Verse("And all the days of Methuselah were nine hundred sixty and nine years: and he died.", new Position(BibleBook.GENESIS, 5, 27), kjv);
+	List<Verse> substringFound = null;
+	List<Verse> regexFound = null;
+	SearchCounts counts = null;
+
+	try {
+	    // given
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(kjv);
+	    bible.insertVerses(Arrays.asList(methuselah, melchizedek, abimelech));
+
+	    // when
+	    SearchQuery substring = new SearchQuery("MELCH");
+	    substring.setMode(SearchQuery.Mode.SUBSTRING);
+	    substringFound = bible.searchVerses(substring);
+	    SearchQuery regex = new SearchQuery("(nine|sixty) years:");
+	    regex.setMode(SearchQuery.Mode.REGEX);
+	    regexFound = bible.searchVerses(regex);
+	    SearchQuery question = new SearchQuery("\\?$");
+	    question.setMode(SearchQuery.Mode.REGEX);
+	    counts = bible.countVerses(question);
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	// then
+	Assert.assertEquals(substringFound, Arrays.asList(melchizedek));
+	Assert.assertEquals(regexFound, Arrays.asList(methuselah));
+	Assert.assertEquals(counts.getTotal(), 1);
+    }
+
+    @Test
+    public void lookupsShouldUseIndexes() {
+	H2DbQuery[] lookups = { H2DbQuery.BOOK_ID, H2DbQuery.VERSION_ID, H2DbQuery.GET_VERSION_LANG, H2DbQuery.COORD_ID, H2DbQuery.COORD_IDS_FOR_BOOK,
+				H2DbQuery.GET_VERSION, H2DbQuery.GET_VERSE, H2DbQuery.GET_VERSES, H2DbQuery.GET_VERSES_BY_IDS,
+				H2DbQuery.GET_PASSAGE, H2DbQuery.GET_CHAPTER_LIST,
+				H2DbQuery.INSERT_BOOKMARK, H2DbQuery.DELETE_BOOKMARK, H2DbQuery.GET_BOOKMARKS_FOR_VERSION,
+				H2DbQuery.DELETE_NOTE, H2DbQuery.GET_NOTES, H2DbQuery.GET_NOTES_FOR_CHAPTER };
+	List<String> scanning = new ArrayList<String>();
+	String versePlan = null;
+	String versesPlan = null;
+	String bookmarkPlan = null;
+
+	try {
+	    bible.initializeStorage();
+
+	    for (H2DbQuery lookup : lookups) {
+		String plan = explain(lookup);
+		if (plan.contains("tableScan"))
+		    scanning.add(lookup + ": " + plan);
+		if (lookup == H2DbQuery.GET_VERSE)
+		    versePlan = plan;
+		if (lookup == H2DbQuery.GET_VERSES)
+		    versesPlan = plan;
+		if (lookup == H2DbQuery.DELETE_BOOKMARK)
+		    bookmarkPlan = plan;
+	    }
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertTrue(scanning.isEmpty(), scanning.toString());
+	Assert.assertTrue(versePlan.contains(VERSES_VERSION_CODE_IDX.replace("`", "").toUpperCase()), versePlan);
+	// the index is sought by both its columns only when the version is its first condition
+	Assert.assertTrue(versesPlan.contains(VERSES_VERSION_CODE_IDX.replace("`", "").toUpperCase() + ": " + VERSE_VERSION.replace("`", "").toUpperCase() + " = "), versesPlan);
+	Assert.assertTrue(bookmarkPlan.contains(BKMARKS_NAME_IDX.replace("`", "").toUpperCase()), bookmarkPlan);
+    }
+
+    @Test
+    public void initializeStorageShouldCreateMissingIndexesInInitializedStorage() {
+	int[] columns = null;
+	int indexes = 0;
+
+	try {
+	    bible.initializeStorage();
+
+	    Statement st = conn.createStatement();
+	    st.execute("DROP INDEX " + VERSES_VERSION_CODE_IDX);
+	    st.execute("DROP INDEX " + COORDS_CODE_IDX);
+	    st.execute("DROP INDEX " + BKMARKS_NAME_IDX);
+
+	    columns = bible.initializeStorage();
+
+	    ResultSet rs = st.executeQuery("SELECT COUNT(DISTINCT INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN ('"
+					   + VERSES_VERSION_CODE_IDX.replace("`", "").toUpperCase() + "', '"
+					   + COORDS_CODE_IDX.replace("`", "").toUpperCase() + "', '"
+					   + BKMARKS_NAME_IDX.replace("`", "").toUpperCase() + "')");
+	    while (rs.next())
+		indexes = rs.getInt(1);
+	    rs.close();
+	    st.close();
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertNull(columns);
+	Assert.assertEquals(indexes, 3);
+    }
+
+    @Test
+    public void initializeStorageShouldAddPositionCodesToInitializedStorage() {
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("first", new Position(BibleBook.GENESIS, 1, 1), new BibleVersion("KJV", "en")));
+	exp.add(new Verse("second", new Position(BibleBook.GENESIS, 1, 2), new BibleVersion("KJV", "en")));
+	exp.add(new Verse("third", new Position(BibleBook.EXODUS, 2, 1), new BibleVersion("KJV", "en")));
+	List<Verse> retrieved = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("KJV", "en"));
+	    bible.insertVerses(exp);
+
+	    // storage created before the position codes were introduced
+	    Statement st = conn.createStatement();
+	    st.execute("DROP INDEX " + VERSES_VERSION_CODE_IDX);
+	    st.execute("DROP INDEX " + COORDS_CODE_IDX);
+	    st.execute("ALTER TABLE " + VERSES + " DROP COLUMN " + VERSE_CODE);
+	    st.execute("ALTER TABLE " + COORDS + " DROP COLUMN " + COORD_CODE);
+	    st.close();
+
+	    bible.initializeStorage();
+	    retrieved = bible.getPassage(new Position(BibleBook.GENESIS, 1, 0), new Position(BibleBook.EXODUS, 0, 0),
+					 new BibleVersion("KJV", "en"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertEquals(retrieved, exp);
+    }
+
+    @Test
+    public void initializeStorageShouldFinishInterruptedAddingOfPositionCodes() {
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("first", new Position(BibleBook.GENESIS, 1, 1), new BibleVersion("KJV", "en")));
+	exp.add(new Verse("second", new Position(BibleBook.GENESIS, 1, 2), new BibleVersion("KJV", "en")));
+	exp.add(new Verse("third", new Position(BibleBook.EXODUS, 2, 1), new BibleVersion("KJV", "en")));
+	List<Verse> retrieved = null;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("KJV", "en"));
+	    bible.insertVerses(exp);
+
+	    // storage whose upgrade added the columns of the codes, but was interrupted before filling them all in
+	    Statement st = conn.createStatement();
+	    st.execute("ALTER TABLE " + COORDS + " ALTER COLUMN " + COORD_CODE + " SET NULL");
+	    st.execute("ALTER TABLE " + VERSES + " ALTER COLUMN " + VERSE_CODE + " SET NULL");
+	    st.execute("UPDATE " + COORDS + " SET " + COORD_CODE + " = NULL WHERE " + COORD_CHAPT + " = 2");
+	    st.execute("UPDATE " + VERSES + " SET " + VERSE_CODE + " = NULL WHERE " + VERSE_TEXT + " <> 'first'");
+	    st.close();
+
+	    bible.initializeStorage();
+	    retrieved = bible.getPassage(new Position(BibleBook.GENESIS, 1, 0), new Position(BibleBook.EXODUS, 0, 0),
+					 new BibleVersion("KJV", "en"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertEquals(retrieved, exp);
+    }
+
+    @Test
+    public void initializeStorageShouldRepeatFailedAddingOfPositionCodes() {
+	List<Verse> exp = new ArrayList<Verse>();
+	exp.add(new Verse("first", new Position(BibleBook.GENESIS, 1, 1), new BibleVersion("KJV", "en")));
+	exp.add(new Verse("second", new Position(BibleBook.EXODUS, 2, 1), new BibleVersion("KJV", "en")));
+	List<Verse> retrieved = null;
+	boolean failed = false;
+
+	try {
+	    bible.initializeStorage();
+	    bible.insertBibleVersion(new BibleVersion("KJV", "en"));
+	    bible.insertVerses(exp);
+
+	    // storage created before the position codes were introduced, with a book of unknown name
+	    Statement st = conn.createStatement();
+	    st.execute("DROP INDEX " + VERSES_VERSION_CODE_IDX);
+	    st.execute("DROP INDEX " + COORDS_CODE_IDX);
+	    st.execute("ALTER TABLE " + VERSES + " DROP COLUMN " + VERSE_CODE);
+	    st.execute("ALTER TABLE " + COORDS + " DROP COLUMN " + COORD_CODE);
+	    st.execute("UPDATE " + BOOKS + " SET " + BOOK_NAME + " = 'unknown' WHERE " + BOOK_NAME + " = '"
+		       + BibleBook.EXODUS.getName() + "'");
+
+	    try {
+		new H2DbBibleStorage(conn).initializeStorage();
+	    } catch (BibleStorageException e) {
+		failed = true;
+	    }
+
+	    // the upgrade is finished once the book is known
+	    st.execute("UPDATE " + BOOKS + " SET " + BOOK_NAME + " = '" + BibleBook.EXODUS.getName() + "' WHERE "
+		       + BOOK_NAME + " = 'unknown'");
+	    st.close();
+	    bible = new H2DbBibleStorage(conn);
+	    bible.initializeStorage();
+	    retrieved = bible.getPassage(new Position(BibleBook.GENESIS, 1, 0), new Position(BibleBook.EXODUS, 0, 0),
+					 new BibleVersion("KJV", "en"));
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	Assert.assertTrue(failed);
+	Assert.assertEquals(retrieved, exp);
+    }
+
+    private String explain(H2DbQuery query) throws SQLException {
+	PreparedStatement st = conn.prepareStatement("EXPLAIN " + query.getSql());
+	for (int i = 1; i <= st.getParameterMetaData().getParameterCount(); i++)
+	    st.setInt(i, 1);
+	ResultSet rs = st.executeQuery();
+	String plan = rs.next() ? rs.getString(1) : "";
+	rs.close();
+	st.close();
+	return plan;
+    }
+
 }
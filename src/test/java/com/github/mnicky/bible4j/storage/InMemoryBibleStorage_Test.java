@@ -0,0 +1,202 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+
+/**
+ * Unit tests for InMemoryBibleStorage class.
+ */
+public final class InMemoryBibleStorage_Test {
+
+    private Connection conn;
+    private InMemoryBibleStorage bible;
+
+    private final BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+    private final BibleVersion niv = new BibleVersion("New International Version", "NIV", "en");
+
+    private final Verse john1 = new Verse("john 1,1", new Position(BibleBook.JOHN, 1, 1), kjv);
+    private final Verse john2 = new Verse("john 1,2", new Position(BibleBook.JOHN, 1, 2), kjv);
+    private final Verse john3 = new Verse("john 2,1", new Position(BibleBook.JOHN, 2, 1), kjv);
+    private final Verse acts1 = new Verse("acts 1,1", new Position(BibleBook.ACTS, 1, 1), kjv);
+    private final Verse johnNiv = new Verse("john 1,1 niv", new Position(BibleBook.JOHN, 1, 1), niv);
+
+    @BeforeMethod
+    public void setUpTest() {
+	try {
+	    conn = DriverManager.getConnection("jdbc:h2:mem:test", "test", "");
+	} catch (SQLException e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	bible = new InMemoryBibleStorage(new H2DbBibleStorage(conn));
+	bible.initializeStorage();
+	bible.insertBibleVersion(kjv);
+	bible.insertBibleVersion(niv);
+	bible.insertVerses(Arrays.asList(acts1, john3, john1, john2, johnNiv));
+    }
+
+    @AfterMethod
+    public void tearDownTest() {
+	try {
+	    conn.close();
+	} catch (SQLException e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+    }
+
+    @Test
+    public void getVerseShouldReturnStoredVerseOrNull() {
+	Assert.assertEquals(bible.getVerse(new Position(BibleBook.JOHN, 1, 2), new BibleVersion("KJV", "en")), john2);
+	Assert.assertNull(bible.getVerse(new Position(BibleBook.JOHN, 1, 3), kjv));
+	Assert.assertNull(bible.getVerse(new Position(BibleBook.JOHN, 1, 1), new BibleVersion("ASV", "en")));
+    }
+
+    @Test
+    public void getChapterShouldReturnAllVersesOfChapter() {
+	Assert.assertEquals(bible.getChapter(new Position(BibleBook.JOHN, 1, 0), kjv), Arrays.asList(john1, john2));
+	Assert.assertTrue(bible.getChapter(new Position(BibleBook.JOHN, 3, 0), kjv).isEmpty());
+    }
+
+    @Test
+    public void getChapterListShouldReturnOrderedChapters() {
+	List<Position> exp = Arrays.asList(new Position(BibleBook.JOHN, 1, 0), new Position(BibleBook.JOHN, 2, 0),
+					   new Position(BibleBook.ACTS, 1, 0));
+	Assert.assertEquals(bible.getChapterList(kjv), exp);
+    }
+
+    @Test
+    public void getPassageShouldReturnVersesAcrossBooks() {
+	Assert.assertEquals(bible.getPassage(new Position(BibleBook.JOHN, 1, 2), new Position(BibleBook.ACTS, 0, 0), kjv),
+			    Arrays.asList(john2, john3, acts1));
+	Assert.assertEquals(bible.getPassage(new Position(BibleBook.JOHN, 2, 0), new Position(BibleBook.JOHN, 2, 0), kjv),
+			    Arrays.asList(john3));
+    }
+
+    @Test
+    public void compareVersesShouldReturnVersesOfAllVersions() {
+	Assert.assertEquals(bible.compareVerses(new Position(BibleBook.JOHN, 1, 1), Arrays.asList(niv, kjv)),
+			    Arrays.asList(johnNiv, john1));
+    }
+
+    @Test
+    public void insertVerseShouldReloadTheVersion() {
+	Verse john4 = new Verse("john 1,3", new Position(BibleBook.JOHN, 1, 3), kjv);
+
+	bible.getChapter(new Position(BibleBook.JOHN, 1, 0), kjv);
+	bible.insertVerses(Arrays.asList(john4));
+
+	Assert.assertEquals(bible.getChapter(new Position(BibleBook.JOHN, 1, 0), kjv), Arrays.asList(john1, john2, john4));
+    }
+
+    @Test
+    public void scanVersesShouldReturnAcceptedVersesInOrderOfVersionsAndPositions() {
+	VerseFilter firstVerses = new VerseFilter() {
+	    @Override
+	    public boolean accept(Verse verse) {
+		return verse.getPosition().getVerseNum() == 1;
+	    }
+	};
+
+	Assert.assertEquals(bible.scanVerses(firstVerses, Arrays.asList(niv, kjv)), Arrays.asList(johnNiv, john1, john3, acts1));
+	Assert.assertEquals(bible.scanVerses(firstVerses, Collections.<BibleVersion>emptyList()).size(), 4);
+    }
+
+    @Test
+    public void scanVersesShouldStopWhenHandlerReturnsFalse() {
+	final List<Verse> handled = new ArrayList<Verse>();
+	VerseFilter all = new VerseFilter() {
+	    @Override
+	    public boolean accept(Verse verse) {
+		return true;
+	    }
+	};
+
+	InMemoryBibleStorage twoThreads = new InMemoryBibleStorage(new H2DbBibleStorage(conn), 2);
+	twoThreads.scanVerses(all, Arrays.asList(kjv), new ResultHandler<Verse>() {
+	    @Override
+	    public boolean handle(Verse verse) {
+		handled.add(verse);
+		return handled.size() < 2;
+	    }
+	});
+
+	Assert.assertEquals(handled, Arrays.asList(john1, john2));
+    }
+
+    @Test
+    public void shouldNotKeepStaleVersionWhenVersesAreInsertedDuringLoading() {
+	final CountDownLatch loaded = new CountDownLatch(1);
+	final CountDownLatch inserted = new CountDownLatch(1);
+	final BibleStorage h2 = new H2DbBibleStorage(conn);
+	final Verse acts2 = new Verse("acts 2,1", new Position(BibleBook.ACTS, 2, 1), kjv);
+
+	// the first load of a version waits for an insert, after the texts were read
+	BibleStorage delayed = (BibleStorage) Proxy.newProxyInstance(BibleStorage.class.getClassLoader(), new Class<?>[] { BibleStorage.class },
+								   new InvocationHandler() {
+	    @Override
+	    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Object result;
+		try {
+		    result = method.invoke(h2, args);
+		} catch (InvocationTargetException e) {
+		    throw e.getCause();
+		}
+		if (method.getName().equals("getPassage") && loaded.getCount() > 0) {
+		    loaded.countDown();
+		    inserted.await(500, TimeUnit.MILLISECONDS);
+		}
+		return result;
+	    }
+	});
+	final InMemoryBibleStorage storage = new InMemoryBibleStorage(delayed);
+
+	try {
+	    Thread reader = new Thread() {
+		@Override
+		public void run() {
+		    storage.getVerse(acts1.getPosition(), kjv);
+		}
+	    };
+	    reader.start();
+	    loaded.await();
+	    Thread writer = new Thread() {
+		@Override
+		public void run() {
+		    storage.insertVerses(Arrays.asList(acts2));
+		    inserted.countDown();
+		}
+	    };
+	    writer.start();
+	    writer.join();
+	    reader.join();
+	} catch (InterruptedException e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+
+	Assert.assertEquals(storage.getVerse(acts2.getPosition(), kjv), acts2);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.github.mnicky.bible4j.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.mnicky.bible4j.data.BibleBook;
+import com.github.mnicky.bible4j.data.BibleVersion;
+import com.github.mnicky.bible4j.data.Position;
+import com.github.mnicky.bible4j.data.Verse;
+import com.github.mnicky.bible4j.parsers.BinaryBibleExporter;
+
+/**
+ * Unit tests for MappedBibleStorage class.
+ */
+public final class MappedBibleStorage_Test {
+
+    private File file;
+    private MappedBibleStorage bible;
+
+    private final BibleVersion kjv = new BibleVersion("King's James Version", "KJV", "en");
+
+    private final Verse john1 = new Verse("In the beginning was the Word", new Position(BibleBook.JOHN, 1, 1), kjv);
+    private final Verse john2 = new Verse("The same was in the beginning with God.", new Position(BibleBook.JOHN, 1, 2), kjv);
+    private final Verse john3 = new Verse("And the third day there was a marriage", new Position(BibleBook.JOHN, 2, 1), kjv);
+    private final Verse acts1 = new Verse("The former treatise have I made, \u00f3 Theophilus", new Position(BibleBook.ACTS, 1, 1), kjv);
+
+    @BeforeMethod
+    public void setUpTest() {
+	try {
+	    Connection conn = DriverManager.getConnection("jdbc:h2:mem:test", "test", "");
+	    H2DbBibleStorage storage = new H2DbBibleStorage(conn);
+	    storage.initializeStorage();
+	    storage.insertBibleVersion(kjv);
+	    storage.insertVerses(Arrays.asList(acts1, john3, john1, john2));
+
+	    file = File.createTempFile("bible4j", BinaryBibleFormat.FILE_EXTENSION);
+	    OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+	    new BinaryBibleExporter(storage).exportBible(new BibleVersion("KJV", "en"), output);
+	    output.close();
+
+	    conn.close();
+	} catch (SQLException e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	} catch (IOException e) {
+	    e.printStackTrace();
+	    Assert.fail();
+	}
+	bible = new MappedBibleStorage(file);
+    }
+
+    @AfterMethod
+    public void tearDownTest() {
+	bible.close();
+	file.delete();
+    }
+
+    @Test
+    public void getBibleVersionShouldReturnVersionOfTheFile() {
+	Assert.assertEquals(bible.getBibleVersion("kjv"), kjv);
+	Assert.assertEquals(bible.getAllBibleVersions(), Arrays.asList(kjv));
+	Assert.assertNull(bible.getBibleVersion("niv"));
+    }
+
+    @Test
+    public void getVerseShouldReturnStoredVerseOrNull() {
+	Assert.assertEquals(bible.getVerse(new Position(BibleBook.ACTS, 1, 1), kjv), acts1);
+	Assert.assertNull(bible.getVerse(new Position(BibleBook.ACTS, 1, 2), kjv));
+    }
+
+    @Test
+    public void getChapterAndPassageShouldReturnOrderedVerses() {
+	Assert.assertEquals(bible.getChapter(new Position(BibleBook.JOHN, 1, 0), kjv), Arrays.asList(john1, john2));
+	Assert.assertEquals(bible.getPassage(new Position(BibleBook.JOHN, 1, 2), new Position(BibleBook.ACTS, 0, 0), kjv),
+			    Arrays.asList(john2, john3, acts1));
+    }
+
+    @Test
+    public void getChapterListShouldReturnOrderedChapters() {
+	List<Position> exp = Arrays.asList(new Position(BibleBook.JOHN, 1, 0), new Position(BibleBook.JOHN, 2, 0),
+					   new Position(BibleBook.ACTS, 1, 0));
+	Assert.assertEquals(bible.getChapterList(kjv), exp);
+    }
+
+    @Test
+    public void searchVersesForTextShouldReturnVersesContainingAllWords() {
+	Assert.assertEquals(bible.searchVersesForText("BEGINNING was"), Arrays.asList(john1, john2));
+	Assert.assertEquals(bible.searchVersesForText("beginning god", BibleBook.JOHN, kjv), Arrays.asList(john2));
+	Assert.assertTrue(bible.searchVersesForText("beginning", BibleBook.ACTS).isEmpty());
+    }
+
+    @Test(expectedExceptions = BibleStorageException.class)
+    public void insertVerseShouldThrowException() {
+	bible.insertVerse(john1);
+    }
+
+}